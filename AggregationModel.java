@@ -0,0 +1,116 @@
+// File: AggregationModel.java
+import java.util.List;
+
+/**
+ * How a relay fuses an incoming packet with the data it already holds. Every alive node starts
+ * a round holding one DATA_PACKET_SIZE_BITS reading; each chain hop transmits the sender's
+ * payload and the receiver's payload becomes {@link #fuse} of the two. The payload a leader
+ * finally sends is what the sink receives.
+ */
+public interface AggregationModel {
+
+    int MODEL_PERFECT = 0;
+    int MODEL_CONCATENATION = 1;
+    int MODEL_FIXED_RATIO = 2;
+    int MODEL_CORRELATION_DISTANCE = 3;
+
+    /**
+     * @param heldBits Payload the receiver holds before this hop.
+     * @param incomingBits Payload the sender transmitted.
+     * @param separation Distance between sender and receiver (m), a proxy for how far apart the readings were taken.
+     * @return The receiver's payload after fusion.
+     */
+    int fuse(int heldBits, int incomingBits, double separation);
+
+    String getName();
+
+    /**
+     * Sets each alive node's payload to what it holds once everything upstream of it on the chain
+     * has been fused in, with data flowing from both chain ends towards the leader. Protocols call
+     * this before gathering, so each hop's packet size is known whatever order the hops are
+     * simulated in. A dead node or a lost hop breaks the flow, so the nodes inside it start from their own data.
+     * @param hopDistances hopDistances[i] = distance(chain[i], chain[i+1]), or null to compute them here.
+     * @param hopAttempts ARQ outcome per hop from LinkQualityModel.sampleChain (0 = lost), or null if every hop delivers.
+     */
+    default void planChainPayloads(List<SensorNode> chain, int leaderIndex, double[] hopDistances, int[] hopAttempts) {
+        for (int i = 0; i < leaderIndex; i++) fuseHop(chain.get(i), chain.get(i + 1), hopDistances, hopAttempts, i);
+        for (int i = chain.size() - 1; i > leaderIndex; i--) fuseHop(chain.get(i), chain.get(i - 1), hopDistances, hopAttempts, i - 1);
+    }
+
+    private void fuseHop(SensorNode sender, SensorNode receiver, double[] hopDistances, int[] hopAttempts, int hop) {
+        if (!sender.isAlive() || !receiver.isAlive()) return;
+        if (hopAttempts != null && hopAttempts[hop] == 0) return; // Lost after the ARQ retry limit
+        double d = hopDistances != null ? hopDistances[hop]
+                 : Math.sqrt(Math.pow(sender.getX() - receiver.getX(), 2) + Math.pow(sender.getY() - receiver.getY(), 2));
+        fuseInto(receiver, sender, d);
+    }
+
+    /** Folds the sender's payload (bits and readings) into the receiver's after a delivered hop. */
+    default void fuseInto(SensorNode receiver, SensorNode sender, double separation) {
+        receiver.setPayloadBits(fuse(receiver.getPayloadBits(), sender.getPayloadBits(), separation));
+        receiver.setPayloadReadings(receiver.getPayloadReadings() + sender.getPayloadReadings());
+    }
+
+    /** Builds the model selected by PEGASISConfig.AGGREGATION_MODEL. */
+    static AggregationModel fromConfig() {
+        switch (PEGASISConfig.AGGREGATION_MODEL) {
+            case MODEL_CONCATENATION:
+                return new Concatenation();
+            case MODEL_FIXED_RATIO:
+                return new FixedRatio(PEGASISConfig.AGGREGATION_COMPRESSION_RATIO);
+            case MODEL_CORRELATION_DISTANCE:
+                return new CorrelationDistance(PEGASISConfig.AGGREGATION_CORRELATION_DISTANCE);
+            default:
+                return new Perfect();
+        }
+    }
+
+    // --- Implementations ---
+
+    /** Perfect fusion: any number of readings collapse into one packet (the classic PEGASIS assumption). */
+    class Perfect implements AggregationModel {
+        @Override public int fuse(int heldBits, int incomingBits, double separation) { return Math.max(heldBits, incomingBits); }
+        @Override public String getName() { return "perfect"; }
+    }
+
+    /** No fusion: the relay appends the incoming packet to its own. */
+    class Concatenation implements AggregationModel {
+        @Override public int fuse(int heldBits, int incomingBits, double separation) { return heldBits + incomingBits; }
+        @Override public String getName() { return "concatenation"; }
+    }
+
+    /** The concatenated payload compressed by a fixed ratio, but never below the larger input. */
+    class FixedRatio implements AggregationModel {
+        private final double ratio;
+
+        FixedRatio(double ratio) { this.ratio = Math.max(0.0, Math.min(1.0, ratio)); }
+
+        @Override
+        public int fuse(int heldBits, int incomingBits, double separation) {
+            return Math.max(Math.max(heldBits, incomingBits), (int) Math.ceil(ratio * (heldBits + incomingBits)));
+        }
+
+        @Override public String getName() { return String.format("fixed-ratio(%.2f)", ratio); }
+    }
+
+    /**
+     * Spatial-correlation model: the smaller payload contributes d / (d + c) of its bits as new
+     * information, where d is the separation and c the correlation distance. Co-located readings
+     * fuse perfectly and widely separated ones approach concatenation.
+     */
+    class CorrelationDistance implements AggregationModel {
+        private final double correlationDistance;
+
+        CorrelationDistance(double correlationDistance) { this.correlationDistance = Math.max(0.0, correlationDistance); }
+
+        @Override
+        public int fuse(int heldBits, int incomingBits, double separation) {
+            int larger = Math.max(heldBits, incomingBits), smaller = Math.min(heldBits, incomingBits);
+            double d = Math.max(0.0, separation);
+            double novelFraction = (d + correlationDistance) > 0 ? d / (d + correlationDistance) : 1.0;
+            return larger + (int) Math.round(smaller * novelFraction);
+        }
+
+        @Override public String getName() { return String.format("correlation(c=%.1fm)", correlationDistance); }
+    }
+}
@@ -7,9 +7,14 @@ public class BaseStation {
     private double currentY;
     private long totalDataBitsReceived;
     private long totalPacketsReceived;
+    private boolean mobile;
 
-    // For simple linear movement pattern
-    private boolean movingRight = true;
+    // Movement: a trajectory plus an optional precomputed path (index = round, 0 = initial position)
+    private SinkTrajectory trajectory;
+    private double[] pathX;
+    private double[] pathY;
+    private int currentRound = 0;
+    private final double[] stepBuffer = new double[2];
 
     public BaseStation(int id, double x, double y) {
         this.id = id;
@@ -19,6 +24,49 @@ public class BaseStation {
         this.currentY = y;
         this.totalDataBitsReceived = 0;
         this.totalPacketsReceived = 0;
+        this.mobile = PEGASISConfig.IS_SINK_MOBILE;
+        this.trajectory = new SinkTrajectory.Linear(true);
+    }
+
+    public BaseStation(int id, double x, double y, boolean mobile) {
+        this(id, x, y);
+        this.mobile = mobile;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isMobile() {
+        return mobile;
+    }
+
+    public void setTrajectory(SinkTrajectory trajectory) {
+        this.trajectory = trajectory;
+        this.pathX = null;
+        this.pathY = null;
+    }
+
+    public SinkTrajectory getTrajectory() {
+        return trajectory;
+    }
+
+    /**
+     * Precomputes the sink position for every round up to maxRounds, so move() becomes an
+     * array lookup. Rounds beyond the precomputed range fall back to stepping the trajectory,
+     * which is left in its state at the end of the path so it continues from the path's tail.
+     */
+    public void precomputePath(int maxRounds) {
+        trajectory.reset();
+        double[] xs = new double[maxRounds + 1];
+        double[] ys = new double[maxRounds + 1];
+        xs[0] = initialX; ys[0] = initialY;
+        for (int r = 1; r <= maxRounds; r++) {
+            trajectory.step(r, xs[r - 1], ys[r - 1], stepBuffer);
+            xs[r] = stepBuffer[0]; ys[r] = stepBuffer[1];
+        }
+        this.pathX = xs;
+        this.pathY = ys;
     }
 
     // Getters for CURRENT position
@@ -50,48 +98,29 @@ public class BaseStation {
         if (metrics != null) {
             metrics.incrementSuccessfulTransmissionsToBS();
             metrics.addDataDeliveredToBS(dataSizeBits);
+            metrics.logSinkDelivery(this.id, dataSizeBits);
+            metrics.addReadingsDelivered(Math.max(1, sender.getPayloadReadings()));
         }
         // Optional: Debug print
         // System.out.println("Sink received " + dataSizeBits + " bits from Node " + sender.getId());
     }
 
     /**
-     * Moves the sink based on the configured pattern and speed in PEGASISConfig.
-     * This method should be called once per round by the SimulationRunner if IS_SINK_MOBILE is true.
+     * Moves the sink one round along its trajectory (see PEGASISConfig.SINK_MOVEMENT_PATTERN).
+     * This method should be called once per round by the SimulationRunner; static sinks ignore it.
      */
     public void move() {
-        if (!PEGASISConfig.IS_SINK_MOBILE) {
-            return; // Do not move if mobility is disabled
+        if (!this.mobile) {
+            return; // Do not move if mobility is disabled for this sink
         }
-
-        switch (PEGASISConfig.SINK_MOVEMENT_PATTERN) {
-            case 1: // Horizontal Linear Movement (back and forth)
-                if (movingRight) {
-                    currentX += PEGASISConfig.SINK_SPEED_PER_ROUND;
-                    if (currentX >= PEGASISConfig.SINK_MAX_X) {
-                        currentX = PEGASISConfig.SINK_MAX_X;
-                        movingRight = false;
-                    }
-                } else { // Moving left
-                    currentX -= PEGASISConfig.SINK_SPEED_PER_ROUND;
-                    if (currentX <= PEGASISConfig.SINK_MIN_X) {
-                        currentX = PEGASISConfig.SINK_MIN_X;
-                        movingRight = true;
-                    }
-                }
-                // For this horizontal pattern, Y coordinate remains fixed based on initial setup or SINK_MIN_Y
-                currentY = PEGASISConfig.SINK_MIN_Y;
-                break;
-            case 2: // Vertical Linear Movement (example, implement if needed)
-                // Add similar logic for currentY, moving between SINK_MIN_Y and SINK_MAX_Y
-                // currentX would be fixed.
-                System.err.println("Warning: Vertical sink movement pattern not fully implemented in BaseStation.move().");
-                break;
-            // case 3: // Circular Movement (example, implement if needed)
-            //    break;
-            default: // Static or unknown pattern
-                // No movement, currentX and currentY remain unchanged
-                break;
+        currentRound++;
+        if (pathX != null && currentRound < pathX.length) {
+            currentX = pathX[currentRound];
+            currentY = pathY[currentRound];
+        } else {
+            trajectory.step(currentRound, currentX, currentY, stepBuffer);
+            currentX = stepBuffer[0];
+            currentY = stepBuffer[1];
         }
     }
 
@@ -99,11 +128,16 @@ public class BaseStation {
      * Resets the sink to its initial state (position and received data counts).
      */
     public void reset() {
+        if (pathX == null) {
+            this.trajectory.reset(); // Reset movement state (direction, waypoint index)
+        } else if (currentRound >= pathX.length) {
+            precomputePath(pathX.length - 1); // Stepped past the path: park the trajectory at its end again
+        }
         this.currentX = this.initialX;
         this.currentY = this.initialY;
         this.totalDataBitsReceived = 0;
         this.totalPacketsReceived = 0;
-        this.movingRight = true; // Reset movement direction for linear pattern
+        this.currentRound = 0;
     }
 
     @Override
@@ -0,0 +1,59 @@
+// File: BinaryCombining.java
+import java.util.List;
+
+/**
+ * PEGASIS binary-combining gathering schedule. Positions are counted from the leader outwards on
+ * both sides of the chain. At the level with step s (1, 2, 4, ...), every node at offset s, 3s,
+ * 5s, ... from the leader sends its fused data s positions towards the leader, where a node at an
+ * even multiple of s is waiting. All sends of a level happen in parallel (one slot per attempt),
+ * so a chain with m nodes on its longer side gathers in ceil(log2(m + 1)) levels instead of one
+ * slot per hop. Partners are up to s positions apart, so hops get longer as levels go up.
+ */
+final class BinaryCombining {
+
+    /** One sender-to-receiver exchange; returns whether the receiver got the packet. */
+    interface Hop {
+        boolean transmit(SensorNode sender, SensorNode receiver, double distance, int linkOutcome);
+    }
+
+    private BinaryCombining() { }
+
+    /** @return Chain index that position i sends to at the given step, or -1 if i does not send at that level. */
+    static int receiverOf(int i, int leaderIndex, int step) {
+        int offset = Math.abs(i - leaderIndex);
+        if (offset % (2 * step) != step) return -1;
+        return i < leaderIndex ? i + step : i - step;
+    }
+
+    /** @return Number of combining levels for an n-node chain whose leader is at leaderIndex. */
+    static int levels(int n, int leaderIndex) {
+        int span = Math.max(leaderIndex, n - 1 - leaderIndex), levels = 0;
+        while ((1L << levels) <= span) levels++;
+        return levels;
+    }
+
+    /**
+     * Runs the schedule over the chain's alive nodes. Each delivered packet is fused into the
+     * receiver's payload; a node that dies or loses its packet takes the data it held with it.
+     * @return Round delay of the gathering phase in slots: per level, the most ARQ attempts any
+     *         of its parallel exchanges needed.
+     */
+    static int gather(List<SensorNode> chain, int leaderIndex, AggregationModel aggregation, LinkQualityModel linkModel, Hop hop) {
+        int n = chain.size(), delaySlots = 0;
+        for (int level = 0, step = 1; level < levels(n, leaderIndex); level++, step <<= 1) {
+            int levelSlots = 0;
+            for (int i = 0; i < n; i++) {
+                int j = receiverOf(i, leaderIndex, step);
+                if (j < 0) continue;
+                SensorNode sender = chain.get(i), receiver = chain.get(j);
+                if (!sender.isAlive() || !receiver.isAlive()) continue;
+                double d = Math.sqrt(Math.pow(sender.getX() - receiver.getX(), 2) + Math.pow(sender.getY() - receiver.getY(), 2));
+                int linkOutcome = linkModel.sampleAttempts(linkModel.per(d));
+                levelSlots = Math.max(levelSlots, linkModel.attemptsUsed(linkOutcome));
+                if (hop.transmit(sender, receiver, d, linkOutcome)) aggregation.fuseInto(receiver, sender, d);
+            }
+            delaySlots += levelSlots;
+        }
+        return delaySlots;
+    }
+}
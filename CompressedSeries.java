@@ -0,0 +1,209 @@
+// File: CompressedSeries.java
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Append-only per-round series stored compressed in one growable byte array, for the round
+ * logs in MetricsCollector. Values are encoded in blocks of BLOCK; each block starts from a
+ * zero predecessor and its byte offset goes into a sparse index, so get(i) decodes at most one
+ * block. A cursor remembers where the last get() stopped, which makes ascending access (CSV
+ * export, stream()) O(1) per value. The trailing run is kept unencoded until it ends, so
+ * appends never rewrite bytes. Decoding is lossless: get(i) returns exactly what was added.
+ * Not thread-safe, like the collector that owns it.
+ */
+abstract class CompressedSeries {
+
+    static final int BLOCK = 256;
+
+    protected byte[] buf = new byte[64];
+    protected int len = 0;
+    protected int size = 0;
+    private int[] blockOffsets = new int[8];
+
+    // Decoder cursor: the value at cursorIndex has been decoded; pos is the next unread byte
+    protected int cursorIndex = -1;
+    protected int pos = 0;
+
+    int size() { return size; }
+    boolean isEmpty() { return size == 0; }
+
+    /** Bytes held by the encoding and its index (array capacity, not just the used part). */
+    long storageBytes() { return buf.length + 4L * blockOffsets.length; }
+
+    /** Called before each add: starts a new block (and index entry) every BLOCK values. */
+    protected boolean startBlockIfDue() {
+        if (size % BLOCK != 0) return false;
+        flushPending();
+        int block = size / BLOCK;
+        if (block == blockOffsets.length) blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+        blockOffsets[block] = len;
+        return true;
+    }
+
+    /** Positions the cursor at or before value i within its block (i must be encoded, not pending). */
+    protected void seek(int i) {
+        if (cursorIndex >= 0 && i > cursorIndex && i / BLOCK == cursorIndex / BLOCK) return;
+        int block = i / BLOCK;
+        pos = blockOffsets[block];
+        cursorIndex = block * BLOCK - 1;
+        resetCursor();
+    }
+
+    protected void clearBase() {
+        len = 0; size = 0; cursorIndex = -1; pos = 0;
+    }
+
+    protected abstract void flushPending();
+    protected abstract void resetCursor();
+
+    protected void writeByte(int b) {
+        if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+        buf[len++] = (byte) b;
+    }
+
+    protected void writeVarLong(long v) {
+        while ((v & ~0x7FL) != 0) { writeByte((int) ((v & 0x7F) | 0x80)); v >>>= 7; }
+        writeByte((int) v);
+    }
+
+    protected long readVarLong() {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    /**
+     * Integer-valued series (counts, ids, flags as 0/1): runs of equal deltas, each written as a
+     * zigzag varint delta and a varint length. Constant stretches and steady progressions cost a
+     * few bytes per run; anything else costs about one varint per value.
+     */
+    static final class Longs extends CompressedSeries {
+        private long last;           // Last value added
+        private long runDelta;       // Delta shared by the pending run
+        private int runCount = 0;    // Values in the pending run (the newest ones, not yet encoded)
+        private long cursorValue, cursorDelta;
+        private int cursorRunLeft;
+
+        void add(long value) {
+            if (startBlockIfDue()) last = 0;
+            long delta = value - last;
+            if (runCount > 0 && delta == runDelta) {
+                runCount++;
+            } else {
+                flushPending();
+                runDelta = delta;
+                runCount = 1;
+            }
+            last = value;
+            size++;
+        }
+
+        long get(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of " + size);
+            if (i >= size - runCount) return last - (size - 1 - i) * runDelta;
+            if (i == cursorIndex) return cursorValue;
+            seek(i);
+            while (cursorIndex < i) {
+                if (cursorRunLeft == 0) {
+                    long zz = readVarLong();
+                    cursorDelta = (zz >>> 1) ^ -(zz & 1);
+                    cursorRunLeft = (int) readVarLong();
+                }
+                cursorValue += cursorDelta;
+                cursorRunLeft--;
+                cursorIndex++;
+            }
+            return cursorValue;
+        }
+
+        long getLast() { return get(size - 1); }
+
+        LongStream stream() { return IntStream.range(0, size).mapToLong(this::get); }
+
+        void clear() { clearBase(); runCount = 0; last = 0; }
+
+        @Override
+        protected void flushPending() {
+            if (runCount == 0) return;
+            writeVarLong((runDelta << 1) ^ (runDelta >> 63));
+            writeVarLong(runCount);
+            runCount = 0;
+        }
+
+        @Override
+        protected void resetCursor() { cursorValue = 0; cursorDelta = 0; cursorRunLeft = 0; }
+    }
+
+    /**
+     * Real-valued series: each value's bits are XORed with the previous value's. Repeats become
+     * a zero-run token (0x00 + varint count); otherwise one header byte gives the number of zero
+     * leading and trailing bytes of the XOR and only the bytes between are written, which is
+     * short when sign, exponent and high mantissa bits stay the same between rounds.
+     */
+    static final class Doubles extends CompressedSeries {
+        private long lastBits;
+        private int zeroRun = 0;     // Pending repeats of lastBits at the end of the series
+        private long cursorBits;
+        private int cursorZerosLeft;
+
+        void add(double value) {
+            if (startBlockIfDue()) lastBits = 0;
+            long bits = Double.doubleToRawLongBits(value);
+            long x = bits ^ lastBits;
+            if (x == 0) {
+                zeroRun++;
+            } else {
+                flushPending();
+                int lead = Long.numberOfLeadingZeros(x) / 8, trail = Long.numberOfTrailingZeros(x) / 8;
+                writeByte(0x80 | (lead << 3) | trail);
+                for (int b = 7 - lead; b >= trail; b--) writeByte((int) (x >>> (8 * b)));
+            }
+            lastBits = bits;
+            size++;
+        }
+
+        double get(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of " + size);
+            if (i >= size - zeroRun) return Double.longBitsToDouble(lastBits);
+            if (i == cursorIndex) return Double.longBitsToDouble(cursorBits);
+            seek(i);
+            while (cursorIndex < i) {
+                if (cursorZerosLeft > 0) {
+                    cursorZerosLeft--;
+                } else {
+                    int header = buf[pos++] & 0xFF;
+                    if (header == 0) {
+                        cursorZerosLeft = (int) readVarLong() - 1;
+                    } else {
+                        int lead = (header >>> 3) & 7, trail = header & 7;
+                        long x = 0;
+                        for (int b = 7 - lead; b >= trail; b--) x |= (buf[pos++] & 0xFFL) << (8 * b);
+                        cursorBits ^= x;
+                    }
+                }
+                cursorIndex++;
+            }
+            return Double.longBitsToDouble(cursorBits);
+        }
+
+        DoubleStream stream() { return IntStream.range(0, size).mapToDouble(this::get); }
+
+        void clear() { clearBase(); zeroRun = 0; lastBits = 0; }
+
+        @Override
+        protected void flushPending() {
+            if (zeroRun == 0) return;
+            writeByte(0);
+            writeVarLong(zeroRun);
+            zeroRun = 0;
+        }
+
+        @Override
+        protected void resetCursor() { cursorBits = 0; cursorZerosLeft = 0; }
+    }
+}
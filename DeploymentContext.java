@@ -0,0 +1,197 @@
+// File: DeploymentContext.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Structures derived from node positions alone, built once per deployment and shared read-only
+ * by every run on it (both protocols, seeds, autotuner candidates), including runs on other
+ * threads. Runs still get their own SensorNode objects for energy, role and counters; this
+ * class never sees that state and takes liveness as an argument where it matters.
+ *
+ * Nodes are addressed by deployment index: node i has id i + 1 and sits at (xs[i], ys[i]),
+ * matching the order of SimulationRunner.createNodesFromInitialConfig.
+ *
+ * Holds:
+ *  - k-nearest-neighbour lists (flat int array, K per node, nearest first, ties by index),
+ *    which let the greedy chain step in O(K) instead of scanning every unchained node;
+ *  - zone assignments per zone grid;
+ *  - greedy chains (and their hop distances) for the full deployment and for full zones,
+ *    keyed by start node, so runs that start from the same node share one chain.
+ * Distances use the protocols' own formula, so chains are identical to their scans.
+ */
+final class DeploymentContext {
+
+    static final int K = 16;
+
+    /** A greedy chain as deployment indices, with hopDistances[i] = distance(order[i], order[i + 1]). */
+    static final class ChainPlan {
+        final int[] order;
+        final double[] hopDistances;
+
+        ChainPlan(int[] order, double[] hopDistances) { this.order = order; this.hopDistances = hopDistances; }
+    }
+
+    private final int n;
+    private final double[] xs, ys;
+    private final double areaWidth, areaHeight;
+    private final int k;
+    private final int[] neighbours; // neighbours[i * k + j]: j-th nearest node to i
+    private final ConcurrentHashMap<Long, int[]> zoneAssignments = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ChainPlan> chains = new ConcurrentHashMap<>();
+
+    DeploymentContext(List<SimulationRunner.NodeInitialConfig> deployment) {
+        this.n = deployment.size();
+        this.xs = new double[n];
+        this.ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            SimulationRunner.NodeInitialConfig c = deployment.get(i);
+            if (c.id != i + 1) throw new IllegalArgumentException("Deployment ids must be 1..n in order (index " + i + " has id " + c.id + ")");
+            xs[i] = c.x; ys[i] = c.y;
+        }
+        this.areaWidth = PEGASISConfig.AREA_WIDTH;
+        this.areaHeight = PEGASISConfig.AREA_HEIGHT;
+        this.k = Math.min(K, Math.max(0, n - 1));
+        this.neighbours = buildNeighbourLists();
+    }
+
+    int size() { return n; }
+
+    private double distance(int a, int b) {
+        return Math.sqrt(Math.pow(xs[a] - xs[b], 2) + Math.pow(ys[a] - ys[b], 2));
+    }
+
+    /** Grid-bucketed k-NN: rings of cells are searched outward until no unseen cell can hold a closer node. */
+    private int[] buildNeighbourLists() {
+        int[] result = new int[n * k];
+        if (k == 0) return result;
+        double minX = Arrays.stream(xs).min().getAsDouble(), minY = Arrays.stream(ys).min().getAsDouble();
+        double spanX = Math.max(Arrays.stream(xs).max().getAsDouble() - minX, 1e-9);
+        double spanY = Math.max(Arrays.stream(ys).max().getAsDouble() - minY, 1e-9);
+        double cell = Math.max(Math.sqrt(spanX * spanY * 2.0 / n), 1e-9); // About two nodes per cell
+        int cols = (int) (spanX / cell) + 1, rows = (int) (spanY / cell) + 1;
+        int[] cellStart = new int[rows * cols + 1], cellNodes = new int[n], cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = (int) ((ys[i] - minY) / cell) * cols + (int) ((xs[i] - minX) / cell);
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) cellStart[c + 1] += cellStart[c];
+        int[] fill = Arrays.copyOf(cellStart, rows * cols);
+        for (int i = 0; i < n; i++) cellNodes[fill[cellOf[i]]++] = i;
+
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int[] best = new int[k];
+            double[] bestDist = new double[k];
+            int found = 0;
+            int cr = cellOf[i] / cols, cc = cellOf[i] % cols;
+            for (int ring = 0; ; ring++) {
+                if (found == k && (ring - 1) * cell > bestDist[k - 1]) break;
+                if (ring > rows && ring > cols) break;
+                for (int r = cr - ring; r <= cr + ring; r++) {
+                    if (r < 0 || r >= rows) continue;
+                    boolean edgeRow = r == cr - ring || r == cr + ring;
+                    for (int c = cc - ring; c <= cc + ring; c += edgeRow ? 1 : 2 * ring) {
+                        if (c >= 0 && c < cols) {
+                            for (int p = cellStart[r * cols + c]; p < cellStart[r * cols + c + 1]; p++) {
+                                int j = cellNodes[p];
+                                if (j == i) continue;
+                                double d = distance(i, j);
+                                if (found == k && (d > bestDist[k - 1] || (d == bestDist[k - 1] && j > best[k - 1]))) continue;
+                                int pos = found < k ? found++ : k - 1;
+                                while (pos > 0 && (bestDist[pos - 1] > d || (bestDist[pos - 1] == d && best[pos - 1] > j))) {
+                                    best[pos] = best[pos - 1]; bestDist[pos] = bestDist[pos - 1]; pos--;
+                                }
+                                best[pos] = j; bestDist[pos] = d;
+                            }
+                        }
+                        if (ring == 0) break;
+                    }
+                }
+            }
+            System.arraycopy(best, 0, result, i * k, k);
+        });
+        return result;
+    }
+
+    /**
+     * Zone of each node for a rows x cols grid over the area, as HALEM's formZones computes it
+     * (zone index r * cols + c).
+     */
+    int[] zoneAssignment(int rows, int cols) {
+        return zoneAssignments.computeIfAbsent(((long) rows << 32) | cols, key -> {
+            double zoneWidth = areaWidth / cols, zoneHeight = areaHeight / rows;
+            int[] zone = new int[n];
+            for (int i = 0; i < n; i++) {
+                int c = Math.max(0, Math.min((int) (xs[i] / zoneWidth), cols - 1));
+                int r = Math.max(0, Math.min((int) (ys[i] / zoneHeight), rows - 1));
+                zone[i] = r * cols + c;
+            }
+            return zone;
+        });
+    }
+
+    /** Deployment indices of zone z's nodes in a rows x cols grid, ascending. */
+    int[] zoneMembers(int rows, int cols, int z) {
+        int[] zone = zoneAssignment(rows, cols);
+        return IntStream.range(0, n).filter(i -> zone[i] == z).toArray();
+    }
+
+    /**
+     * Greedy chain over all nodes from start, cached. Only valid while every node is alive.
+     */
+    ChainPlan fullChain(int start) {
+        return chains.computeIfAbsent("all:" + start, key -> greedyChain(IntStream.range(0, n).toArray(), start));
+    }
+
+    /** Greedy chain over all of zone z's nodes from start, cached. Only valid while every node in the zone is alive. */
+    ChainPlan zoneChain(int rows, int cols, int z, int start) {
+        return chains.computeIfAbsent(rows + "x" + cols + ":" + z + ":" + start, key -> greedyChain(zoneMembers(rows, cols, z), start));
+    }
+
+    /**
+     * Greedy nearest-neighbour chain over members (deployment indices, ascending) from start: the
+     * same chain as the protocols' scan, where ties go to the lower index. Each step takes the
+     * first unchained member on the chain end's neighbour list and falls back to scanning the
+     * members only when all K neighbours are taken or outside the member set.
+     */
+    ChainPlan greedyChain(int[] members, int start) {
+        int m = members.length;
+        boolean[] available = new boolean[n];
+        for (int i : members) available[i] = true;
+        int[] order = new int[m];
+        order[0] = start;
+        available[start] = false;
+        int end = start;
+        for (int len = 1; len < m; len++) {
+            int next = -1;
+            for (int j = end * k; j < end * k + k; j++) {
+                if (available[neighbours[j]]) { next = neighbours[j]; break; }
+            }
+            if (next < 0) {
+                double min = Double.MAX_VALUE;
+                for (int candidate : members) {
+                    if (!available[candidate]) continue;
+                    double d = distance(end, candidate);
+                    if (d < min) { min = d; next = candidate; }
+                }
+            }
+            order[len] = next;
+            available[next] = false;
+            end = next;
+        }
+        double[] cx = new double[m], cy = new double[m];
+        for (int i = 0; i < m; i++) { cx[i] = xs[order[i]]; cy[i] = ys[order[i]]; }
+        double[] hops = new double[Math.max(0, m - 1)];
+        EnergyKernels.hopDistances(cx, cy, m, hops);
+        return new ChainPlan(order, hops);
+    }
+
+    /** Maps a chain of deployment indices onto one run's nodes. */
+    static List<SensorNode> toNodes(int[] order, List<SensorNode> runNodes) {
+        List<SensorNode> chain = new ArrayList<>(order.length);
+        for (int i : order) chain.add(runNodes.get(i));
+        return chain;
+    }
+}
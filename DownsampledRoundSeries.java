@@ -0,0 +1,103 @@
+// File: DownsampledRoundSeries.java
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded-size min-max summary of a run's per-round series, built while the run streams.
+ * Rounds are grouped into buckets of equal width; each bucket keeps the min, max and last (or
+ * sum) of every tracked value. When maxBuckets buckets are full, neighbours are merged in pairs
+ * and the width doubles, so memory and the exported row count stay at most maxBuckets however
+ * many rounds are simulated, while min/max envelopes keep spikes (e.g. a burst of deaths) visible.
+ */
+final class DownsampledRoundSeries {
+
+    static final String CSV_HEADER = "Protocol,RoundStart,Round,AliveMin,AliveMax,TotalRemainingEnergy," +
+                                     "EnergyPerRoundMin,EnergyPerRoundMax,EnergyPerRoundMean,CumulativeEnergy," +
+                                     "NodesDied,NodesDiedInWindowMax,RollingEnergyAvg";
+
+    private static final class Bucket {
+        int roundStart, roundEnd, rounds;
+        int aliveMin = Integer.MAX_VALUE, aliveMax = Integer.MIN_VALUE;
+        double remainingLast;
+        double energyMin = Double.MAX_VALUE, energyMax = -Double.MAX_VALUE, energySum;
+        double cumulativeEnergyLast;
+        int nodesDied, deathsInWindowMax;
+        double rollingEnergyAvgLast;
+
+        void add(int round, int alive, double remaining, double energy, double cumulativeEnergy,
+                 int died, int deathsInWindow, double rollingEnergyAvg) {
+            if (rounds == 0) roundStart = round;
+            roundEnd = round; rounds++;
+            aliveMin = Math.min(aliveMin, alive); aliveMax = Math.max(aliveMax, alive);
+            remainingLast = remaining;
+            energyMin = Math.min(energyMin, energy); energyMax = Math.max(energyMax, energy); energySum += energy;
+            cumulativeEnergyLast = cumulativeEnergy;
+            nodesDied += died;
+            deathsInWindowMax = Math.max(deathsInWindowMax, deathsInWindow);
+            rollingEnergyAvgLast = rollingEnergyAvg;
+        }
+
+        /** Folds the following bucket into this one. */
+        void merge(Bucket next) {
+            roundEnd = next.roundEnd; rounds += next.rounds;
+            aliveMin = Math.min(aliveMin, next.aliveMin); aliveMax = Math.max(aliveMax, next.aliveMax);
+            remainingLast = next.remainingLast;
+            energyMin = Math.min(energyMin, next.energyMin); energyMax = Math.max(energyMax, next.energyMax); energySum += next.energySum;
+            cumulativeEnergyLast = next.cumulativeEnergyLast;
+            nodesDied += next.nodesDied;
+            deathsInWindowMax = Math.max(deathsInWindowMax, next.deathsInWindowMax);
+            rollingEnergyAvgLast = next.rollingEnergyAvgLast;
+        }
+    }
+
+    private final int maxBuckets;
+    private final List<Bucket> closed = new ArrayList<>();
+    private Bucket open = new Bucket();
+    private int bucketWidth = 1;
+
+    DownsampledRoundSeries(int maxBuckets) {
+        this.maxBuckets = Math.max(2, maxBuckets - maxBuckets % 2); // Even, so buckets merge in pairs
+    }
+
+    void add(int round, int alive, double remaining, double energy, double cumulativeEnergy,
+             int died, int deathsInWindow, double rollingEnergyAvg) {
+        open.add(round, alive, remaining, energy, cumulativeEnergy, died, deathsInWindow, rollingEnergyAvg);
+        if (open.rounds < bucketWidth) return;
+        closed.add(open);
+        open = new Bucket();
+        if (closed.size() < maxBuckets) return;
+        List<Bucket> merged = new ArrayList<>(maxBuckets / 2);
+        for (int i = 0; i + 1 < closed.size(); i += 2) {
+            Bucket b = closed.get(i);
+            b.merge(closed.get(i + 1));
+            merged.add(b);
+        }
+        closed.clear();
+        closed.addAll(merged);
+        bucketWidth *= 2;
+    }
+
+    /** Rows the export would write: closed buckets plus the partly filled one. */
+    int size() { return closed.size() + (open.rounds > 0 ? 1 : 0); }
+
+    int getBucketWidth() { return bucketWidth; }
+
+    void clear() { closed.clear(); open = new Bucket(); bucketWidth = 1; }
+
+    void exportToCSV(String protocolName, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println(CSV_HEADER);
+            List<Bucket> rows = new ArrayList<>(closed);
+            if (open.rounds > 0) rows.add(open);
+            for (Bucket b : rows) {
+                writer.printf("%s,%d,%d,%d,%d,%.4f,%.6f,%.6f,%.6f,%.6f,%d,%d,%.6f%n",
+                        protocolName, b.roundStart, b.roundEnd, b.aliveMin, b.aliveMax, b.remainingLast,
+                        b.energyMin, b.energyMax, b.energySum / b.rounds, b.cumulativeEnergyLast,
+                        b.nodesDied, b.deathsInWindowMax, b.rollingEnergyAvgLast);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+// File: DrainRateEstimator.java
+import java.util.List;
+
+/**
+ * Per-node estimate of the energy drained per round, as an exponentially weighted moving
+ * average of each round's drop in residual energy (leader rounds included, so nodes that lead
+ * often or sit on expensive hops show a higher rate). The protocol calls {@link #update} once at
+ * the end of every round; it costs one pass over two primitive arrays indexed by node id. The
+ * first update seeds every rate with that round's drain, so the average is not biased towards 0.
+ *
+ * Leader choice uses {@link #predictedRounds}: the rounds a node would last if it kept its usual
+ * drain and also paid a leader's sink uplink every round. That ranks a central node close to
+ * death, or one far from the sink, below a node that would still survive the role.
+ */
+final class DrainRateEstimator {
+
+    private final double alpha;
+    private final double[] rate;        // J per round, by node id
+    private final double[] lastEnergy;  // Residual energy at the previous update, by node id
+    private boolean seeded = false;
+
+    DrainRateEstimator(List<SensorNode> nodes, double alpha) {
+        if (!(alpha > 0 && alpha <= 1)) throw new IllegalArgumentException("Drain-rate EWMA alpha must be in (0, 1], got " + alpha);
+        this.alpha = alpha;
+        int size = nodes.stream().mapToInt(SensorNode::getId).max().orElse(0) + 1;
+        this.rate = new double[size];
+        this.lastEnergy = new double[size];
+        for (SensorNode node : nodes) lastEnergy[node.getId()] = node.getEnergy();
+    }
+
+    static DrainRateEstimator fromConfig(List<SensorNode> nodes) {
+        return new DrainRateEstimator(nodes, PEGASISConfig.DRAIN_RATE_EWMA_ALPHA);
+    }
+
+    /** Folds in the energy each node lost since the previous call. */
+    void update(List<SensorNode> nodes) {
+        for (SensorNode node : nodes) {
+            int id = node.getId();
+            double energy = node.getEnergy();
+            double drained = lastEnergy[id] - energy;
+            rate[id] = seeded ? rate[id] + alpha * (drained - rate[id]) : drained;
+            lastEnergy[id] = energy;
+        }
+        seeded = true;
+    }
+
+    double getRate(SensorNode node) { return rate[node.getId()]; }
+
+    /**
+     * Rounds the node lasts at its estimated drain plus extraPerRound (e.g. the expected sink
+     * uplink energy if it leads). Infinite only if both are zero.
+     */
+    double predictedRounds(SensorNode node, double extraPerRound) {
+        double perRound = Math.max(0.0, rate[node.getId()]) + extraPerRound;
+        return perRound > 0 ? node.getEnergy() / perRound : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,84 @@
+// File: EnergyKernels.java
+
+/**
+ * Batch kernels for the first-order radio model over primitive arrays (whole chains or zones
+ * at once). Loops are branch-free and unit-stride so HotSpot's SuperWord pass can compile them
+ * to SIMD; the arithmetic is written in exactly the same order as the per-node code in the
+ * protocols, so results are bit-identical to the scalar path.
+ */
+public final class EnergyKernels {
+
+    private EnergyKernels() { }
+
+    /** out[i] = distance from (xs[i], ys[i]) to (px, py), for i in [0, n). */
+    public static void distancesTo(double[] xs, double[] ys, int n, double px, double py, double[] out) {
+        for (int i = 0; i < n; i++) {
+            double dx = xs[i] - px;
+            double dy = ys[i] - py;
+            out[i] = Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    /** out[i] = distance between consecutive chain members i and i+1, for i in [0, n-1). */
+    public static void hopDistances(double[] xs, double[] ys, int n, double[] out) {
+        for (int i = 0; i < n - 1; i++) {
+            double dx = xs[i] - xs[i + 1];
+            double dy = ys[i] - ys[i + 1];
+            out[i] = Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    /** Transmit energy for one packet over a single distance: E_ELEC*k + E_AMP*k*d^2. */
+    public static double txEnergy(int bits, double dist) {
+        return (PEGASISConfig.E_ELEC * bits) + (PEGASISConfig.E_AMP * bits * dist * dist);
+    }
+
+    /**
+     * energy[i] -= cost[i], clamping at zero. Entries already at or below zero are left alone.
+     * For drivers that keep energies in arrays (OutOfCoreSimulation); the protocols spend energy
+     * hop by hop through SensorNode, since a death mid-chain decides whether later hops happen.
+     * @return Number of entries that reached zero in this call (newly dead nodes).
+     */
+    public static int decrementEnergy(double[] energy, double[] cost, int n) {
+        int deaths = 0;
+        for (int i = 0; i < n; i++) {
+            double before = energy[i];
+            double after = before - cost[i];
+            boolean alive = before > 0;
+            boolean dies = alive & after <= 0;
+            energy[i] = alive ? (after > 0 ? after : 0.0) : before;
+            deaths += dies ? 1 : 0;
+        }
+        return deaths;
+    }
+
+    /**
+     * out[i] += w * values[i] / max(values) for i in [0, n): adds a score term measured in
+     * unbounded units (e.g. predicted rounds), scaled to [0, w] across the candidates. Nothing is
+     * added when w is 0 or the maximum is not positive; an infinite maximum counts only its own entries.
+     */
+    public static void addRelativeTerm(double[] values, int n, double w, double[] out) {
+        if (w == 0) return;
+        double max = 0.0;
+        for (int i = 0; i < n; i++) max = Math.max(max, values[i]);
+        if (!(max > 0)) return;
+        boolean infinite = Double.isInfinite(max);
+        for (int i = 0; i < n; i++) {
+            out[i] += infinite ? (Double.isInfinite(values[i]) ? w : 0.0) : w * (values[i] / max);
+        }
+    }
+
+    /**
+     * HALEM leader score: w1 * (energy/initial) + w2 * max(0, 1 - dist/maxDist).
+     * Matches Zone.selectZoneLeaders, including the zero-initial-energy and zero-maxDist cases.
+     */
+    public static void leaderScores(double[] energy, double[] initialEnergy, double[] distToRef, int n,
+                                    double maxDistToRef, double w1, double w2, double[] out) {
+        boolean hasSpread = maxDistToRef > 0;
+        for (int i = 0; i < n; i++) {
+            double nEgy = (initialEnergy[i] > 0) ? (energy[i] / initialEnergy[i]) : 0.0;
+            double nCent = hasSpread ? Math.max(0, 1.0 - (distToRef[i] / maxDistToRef)) : 1.0;
+            out[i] = (w1 * nEgy) + (w2 * nCent);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// File: EnergyKernelsBenchmark.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing EnergyKernels against the per-SensorNode code they replace.
+ * Usage: java EnergyKernelsBenchmark [chainLength] [iterations]
+ * Each case is warmed up first, then timed; the scalar and kernel results are checked for
+ * bit-identical output before any timing is printed.
+ */
+public class EnergyKernelsBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length >= 1 ? Integer.parseInt(args[0]) : 4096;
+        int iterations = args.length >= 2 ? Integer.parseInt(args[1]) : 20000;
+
+        Random rnd = new Random(42);
+        List<SensorNode> nodes = new ArrayList<>();
+        double[] xs = new double[n], ys = new double[n], egy = new double[n], initEgy = new double[n];
+        for (int i = 0; i < n; i++) {
+            SensorNode node = new SensorNode(i + 1, rnd.nextDouble() * 100, rnd.nextDouble() * 100, 0.5);
+            node.consumeEnergy(rnd.nextDouble() * 0.4);
+            nodes.add(node);
+            xs[i] = node.getX(); ys[i] = node.getY(); egy[i] = node.getEnergy(); initEgy[i] = node.getInitialEnergy();
+        }
+        int bits = PEGASISConfig.DATA_PACKET_SIZE_BITS;
+        double w1 = PEGASISConfig.HALEM_LEADER_SCORE_W1_ENERGY, w2 = PEGASISConfig.HALEM_LEADER_SCORE_W2_CENTRALITY;
+        double[] dist = new double[n], cost = new double[n], scores = new double[n];
+        double[] refCost = new double[n], refScores = new double[n];
+
+        // --- Correctness: kernels vs. per-node scalar code ---
+        scalarHopCosts(nodes, bits, refCost);
+        EnergyKernels.hopDistances(xs, ys, n, dist);
+        hopCosts(dist, n - 1, bits, cost);
+        scalarScores(nodes, 50, 50, w1, w2, refScores);
+        EnergyKernels.distancesTo(xs, ys, n, 50, 50, dist);
+        double maxDist = 0; for (int i = 0; i < n; i++) maxDist = Math.max(maxDist, dist[i]);
+        EnergyKernels.leaderScores(egy, initEgy, dist, n, maxDist, w1, w2, scores);
+        for (int i = 0; i < n - 1; i++) {
+            if (Double.doubleToLongBits(cost[i]) != Double.doubleToLongBits(refCost[i]))
+                throw new IllegalStateException("Hop cost mismatch at " + i + ": " + cost[i] + " vs " + refCost[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            if (Double.doubleToLongBits(scores[i]) != Double.doubleToLongBits(refScores[i]))
+                throw new IllegalStateException("Score mismatch at " + i + ": " + scores[i] + " vs " + refScores[i]);
+        }
+        System.out.println("Kernels match scalar results for " + n + " nodes.");
+
+        // --- Timing ---
+        double[] energyScratch = new double[n];
+        report("hop costs      (per-node)", n, iterations, () -> scalarHopCosts(nodes, bits, refCost));
+        report("hop costs      (kernel)  ", n, iterations, () -> {
+            EnergyKernels.hopDistances(xs, ys, n, dist);
+            hopCosts(dist, n - 1, bits, cost);
+        });
+        report("leader scores  (per-node)", n, iterations, () -> scalarScores(nodes, 50, 50, w1, w2, refScores));
+        report("leader scores  (kernel)  ", n, iterations, () -> {
+            EnergyKernels.distancesTo(xs, ys, n, 50, 50, dist);
+            double m = 0; for (int i = 0; i < n; i++) m = Math.max(m, dist[i]);
+            EnergyKernels.leaderScores(egy, initEgy, dist, n, m, w1, w2, scores);
+        });
+        report("decrement+death (kernel) ", n, iterations, () -> {
+            System.arraycopy(egy, 0, energyScratch, 0, n);
+            sink += EnergyKernels.decrementEnergy(energyScratch, cost, n - 1);
+        });
+        System.out.println("(ignore) " + sink);
+    }
+
+    private static double sink; // Keeps results observable so the JIT cannot drop the work
+
+    private static void scalarHopCosts(List<SensorNode> chain, int bits, double[] out) {
+        for (int i = 0; i < chain.size() - 1; i++) {
+            SensorNode a = chain.get(i), b = chain.get(i + 1);
+            double d = Math.sqrt(Math.pow(a.getX() - b.getX(), 2) + Math.pow(a.getY() - b.getY(), 2));
+            out[i] = (PEGASISConfig.E_ELEC * bits) + (PEGASISConfig.E_AMP * bits * d * d);
+        }
+    }
+
+    /** Per-hop txEnergy over precomputed hop distances, as the protocols do with their cached chain hops. */
+    private static void hopCosts(double[] dist, int n, int bits, double[] out) {
+        for (int i = 0; i < n; i++) out[i] = EnergyKernels.txEnergy(bits, dist[i]);
+    }
+
+    private static void scalarScores(List<SensorNode> cands, double refX, double refY, double w1, double w2, double[] out) {
+        double maxDist = cands.stream().mapToDouble(c -> Math.sqrt(Math.pow(c.getX() - refX, 2) + Math.pow(c.getY() - refY, 2))).max().orElse(0.0);
+        for (int i = 0; i < cands.size(); i++) {
+            SensorNode c = cands.get(i);
+            double nEgy = (c.getInitialEnergy() > 0) ? (c.getEnergy() / c.getInitialEnergy()) : 0.0;
+            double d = Math.sqrt(Math.pow(c.getX() - refX, 2) + Math.pow(c.getY() - refY, 2));
+            double nCent = (maxDist > 0) ? Math.max(0, 1.0 - (d / maxDist)) : 1.0;
+            out[i] = (w1 * nEgy) + (w2 * nCent);
+        }
+    }
+
+    private static void report(String label, int n, int iterations, Runnable body) {
+        for (int i = 0; i < iterations / 4; i++) body.run(); // Warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) body.run();
+        double nsPerNode = (System.nanoTime() - start) / (double) iterations / n;
+        System.out.printf("  %s: %.3f ns/node%n", label, nsPerNode);
+    }
+}
@@ -0,0 +1,202 @@
+// File: HALEMAutotuner.java
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches HALEM's tunable parameters (zone grid, score weights including the lifetime term,
+ * cooldown, hierarchy threshold)
+ * for the current deployment using successive halving: every candidate gets a small round
+ * budget, the best 1/ETA advance to a budget ETA times larger, and so on up to MAX_ROUNDS.
+ * Survivors resume their simulation where they stopped, so no rounds are re-run, and
+ * candidates within a rung are simulated in parallel.
+ *
+ * Usage: java HALEMAutotuner [FND|HND|LND|BITS] [numCandidates] [standard SimulationRunner args...]
+ */
+public class HALEMAutotuner {
+
+    public enum Objective { FND, HND, LND, BITS }
+
+    private static final int ETA = 3;
+    private static final long SEARCH_SEED = 7L;
+    private static final int[] ZONE_GRID_CHOICES = { 1, 2, 3, 4, 5, 6, 8 };
+    private static final double MAX_SAMPLED_W3 = 0.5;
+    private static final String RESULTS_CSV_FILENAME = "halem_autotune_results.csv";
+
+    /** One parameter set plus its live simulation, which can be advanced rung by rung. */
+    private static class Candidate {
+        final int index;
+        final HALEMPegasisProtocol.Parameters params;
+        final HALEMPegasisProtocol protocol;
+        final List<BaseStation> sinks;
+        final MetricsCollector metrics;
+        int roundsSimulated = 0;
+        int rungReached = 0;
+        double score = Double.NEGATIVE_INFINITY;
+
+        Candidate(int index, HALEMPegasisProtocol.Parameters params, List<SimulationRunner.NodeInitialConfig> deployment,
+                  DeploymentContext context) {
+            this.index = index;
+            this.params = params;
+            this.protocol = new HALEMPegasisProtocol(params);
+            this.protocol.setDeploymentContext(context);
+            List<SensorNode> nodes = SimulationRunner.createNodesFromInitialConfig(deployment);
+            this.sinks = SimulationRunner.createSinks(nodes);
+            this.metrics = new MetricsCollector(PEGASISConfig.NUM_NODES);
+            // Same protocol seed for every candidate so differences come from the parameters only
+            this.protocol.setup(nodes, sinks, metrics, new Random(SEARCH_SEED));
+        }
+
+        boolean isFinished() { return protocol.getAliveNodesCount() == 0 || roundsSimulated >= PEGASISConfig.MAX_ROUNDS; }
+
+        /** Runs rounds until the budget is reached, the network dies, or the objective is already decided. */
+        void advanceTo(int budget, Objective objective) {
+            while (roundsSimulated < budget && !isFinished() && !objectiveReached(objective)) {
+                roundsSimulated++;
+                for (BaseStation s : sinks) s.move();
+                protocol.runSingleRound(roundsSimulated);
+            }
+            score = score(objective, budget);
+        }
+
+        private boolean objectiveReached(Objective objective) {
+            switch (objective) {
+                case FND: return metrics.getFndRound() != -1;
+                case HND: return metrics.getHndRound() != -1;
+                case LND: return metrics.getLndRound() != -1;
+                default: return false;
+            }
+        }
+
+        /**
+         * Higher is better. Lifetime objectives score the round the event happened; if it has not
+         * happened within the budget the candidate scores the budget plus its remaining energy
+         * fraction, so it ranks above every candidate that already hit the event.
+         */
+        private double score(Objective objective, int budget) {
+            if (objective == Objective.BITS) return metrics.getTotalDataDeliveredToBS_bits();
+            int eventRound = objective == Objective.FND ? metrics.getFndRound()
+                           : objective == Objective.HND ? metrics.getHndRound() : metrics.getLndRound();
+            if (eventRound != -1) return eventRound;
+            double remaining = 0.0, initial = 0.0;
+            for (SensorNode n : protocol.getNodes()) { remaining += n.getEnergy(); initial += n.getInitialEnergy(); }
+            return budget + (initial > 0 ? remaining / initial : 0.0);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Objective objective = args.length >= 1 ? Objective.valueOf(args[0].toUpperCase()) : Objective.HND;
+        int numCandidates = args.length >= 2 ? Integer.parseInt(args[1]) : 27;
+        PEGASISConfig.parseArgs(args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : new String[0]);
+
+        List<SimulationRunner.NodeInitialConfig> deployment = SimulationRunner.generateInitialNodeDeployments();
+        DeploymentContext context = new DeploymentContext(deployment); // Candidates with the same zone grid share its zones and chains
+        List<Candidate> all = new ArrayList<>();
+        Random searchRandom = new Random(SEARCH_SEED);
+        for (int i = 0; i < numCandidates; i++) {
+            HALEMPegasisProtocol.Parameters p = (i == 0) ? HALEMPegasisProtocol.Parameters.fromConfig() : sample(searchRandom);
+            all.add(new Candidate(i, p, deployment, context));
+        }
+
+        int numRungs = 1 + (int) Math.floor(Math.log(Math.max(1, numCandidates)) / Math.log(ETA));
+        int minBudget = Math.max(1, (int) (PEGASISConfig.MAX_ROUNDS / Math.pow(ETA, numRungs - 1)));
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        System.out.println();
+        System.out.println("Autotuning HALEM for " + objective + ": " + numCandidates + " candidates, " + numRungs +
+                           " rungs, min budget " + minBudget + " rounds, " + threads + " threads.");
+
+        List<Candidate> survivors = new ArrayList<>(all);
+        long start = System.nanoTime();
+        try {
+            for (int rung = 0; rung < numRungs && !survivors.isEmpty(); rung++) {
+                final int budget = (rung == numRungs - 1) ? PEGASISConfig.MAX_ROUNDS
+                                 : (int) Math.min(PEGASISConfig.MAX_ROUNDS, minBudget * (long) Math.pow(ETA, rung));
+                List<Future<?>> futures = new ArrayList<>();
+                final int rungNumber = rung + 1;
+                for (Candidate c : survivors) {
+                    c.rungReached = rungNumber;
+                    futures.add(pool.submit(() -> c.advanceTo(budget, objective)));
+                }
+                for (Future<?> f : futures) f.get();
+
+                survivors.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+                System.out.printf("  Rung %d (budget %d rounds): best %.2f, %d evaluated%n",
+                                  rung + 1, budget, survivors.get(0).score, survivors.size());
+                if (rung < numRungs - 1) {
+                    int keep = Math.max(1, survivors.size() / ETA);
+                    survivors = new ArrayList<>(survivors.subList(0, keep));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+
+        // Rank: candidates that survived to deeper rungs first, then by score.
+        all.sort(Comparator.comparingInt((Candidate c) -> c.rungReached).reversed()
+                           .thenComparing(Comparator.comparingDouble((Candidate c) -> c.score).reversed()));
+        printRankedTable(all, objective, elapsedSec);
+        exportRankedTable(all, objective, RESULTS_CSV_FILENAME);
+    }
+
+    private static HALEMPegasisProtocol.Parameters sample(Random rnd) {
+        HALEMPegasisProtocol.Parameters p = new HALEMPegasisProtocol.Parameters();
+        p.zoneRows = ZONE_GRID_CHOICES[rnd.nextInt(ZONE_GRID_CHOICES.length)];
+        p.zoneCols = ZONE_GRID_CHOICES[rnd.nextInt(ZONE_GRID_CHOICES.length)];
+        p.scoreW1Energy = Math.round(rnd.nextDouble() * 100) / 100.0;
+        p.scoreW2Centrality = Math.round((1.0 - p.scoreW1Energy) * 100) / 100.0;
+        p.scoreW3Lifetime = Math.round(rnd.nextDouble() * MAX_SAMPLED_W3 * 100) / 100.0; // Added on top of w1 + w2, so sampled separately
+        p.leaderCooldownRounds = rnd.nextInt(31);
+        p.sinkDistanceThresholdForHierarchy = Math.round(rnd.nextDouble() * 2.0 * Math.max(PEGASISConfig.AREA_WIDTH, PEGASISConfig.AREA_HEIGHT));
+        return p;
+    }
+
+    private static void printRankedTable(List<Candidate> ranked, Objective objective, double elapsedSec) {
+        System.out.println();
+        System.out.println("--- HALEM Autotune Results (" + objective + ", " + String.format("%.1f", elapsedSec) + " s) ---");
+        System.out.printf("%-5s %-5s %-9s %-7s %-7s %-7s %-9s %-10s %-8s %s%n",
+                          "Rank", "Cand", "Zones", "W1", "W2", "W3", "Cooldown", "Threshold", "Rounds", objective);
+        for (int i = 0; i < ranked.size(); i++) {
+            Candidate c = ranked.get(i);
+            System.out.printf("%-5d %-5d %-9s %-7.2f %-7.2f %-7.2f %-9d %-10.1f %-8d %.2f%n",
+                              i + 1, c.index, c.params.zoneRows + "x" + c.params.zoneCols, c.params.scoreW1Energy,
+                              c.params.scoreW2Centrality, c.params.scoreW3Lifetime, c.params.leaderCooldownRounds,
+                              c.params.sinkDistanceThresholdForHierarchy, c.roundsSimulated, c.score);
+        }
+        HALEMPegasisProtocol.Parameters best = ranked.get(0).params;
+        System.out.println();
+        System.out.println("Best configuration (" + best + "):");
+        System.out.println("  HALEM_ZONE_ROWS = " + best.zoneRows);
+        System.out.println("  HALEM_ZONE_COLS = " + best.zoneCols);
+        System.out.println("  HALEM_LEADER_SCORE_W1_ENERGY = " + best.scoreW1Energy);
+        System.out.println("  HALEM_LEADER_SCORE_W2_CENTRALITY = " + best.scoreW2Centrality);
+        System.out.println("  HALEM_LEADER_SCORE_W3_LIFETIME = " + best.scoreW3Lifetime);
+        System.out.println("  HALEM_LEADER_COOLDOWN_ROUNDS = " + best.leaderCooldownRounds);
+        System.out.println("  HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY = " + best.sinkDistanceThresholdForHierarchy);
+    }
+
+    private static void exportRankedTable(List<Candidate> ranked, Objective objective, String filename) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("Rank,Candidate,ZoneRows,ZoneCols,W1Energy,W2Centrality,W3Lifetime,CooldownRounds,HierarchyThreshold,RoundsSimulated,Objective,Score");
+            for (int i = 0; i < ranked.size(); i++) {
+                Candidate c = ranked.get(i);
+                writer.printf("%d,%d,%d,%d,%.2f,%.2f,%.2f,%d,%.1f,%d,%s,%.4f%n", i + 1, c.index,
+                              c.params.zoneRows, c.params.zoneCols, c.params.scoreW1Energy, c.params.scoreW2Centrality, c.params.scoreW3Lifetime,
+                              c.params.leaderCooldownRounds, c.params.sinkDistanceThresholdForHierarchy,
+                              c.roundsSimulated, objective, c.score);
+            }
+            System.out.println("SUCCESS: Autotune ranking exported to " + filename);
+        } catch (IOException e) {
+            System.err.println("ERROR: Writing autotune ranking to " + filename + ": " + e.getMessage());
+        }
+    }
+}
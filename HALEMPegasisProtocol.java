@@ -3,23 +3,40 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 public class HALEMPegasisProtocol implements Protocol {
 
     private List<SensorNode> allNodes;
-    private BaseStation sinkNode;
+    private BaseStation sinkNode; // Primary sink
+    private SinkDistanceCache sinkDistances; // Nearest-sink distances and routing over all sinks
     private MetricsCollector metrics;
+    private PhaseProfiler phases = PhaseProfiler.DISABLED;
+    private TraceRecorder trace = TraceRecorder.DISABLED;
+    private boolean lastUpperHopDelivered;
+    private int[] upperForward = new int[0]; // By node id: who the node's upper-tier hop delivered to this round, 0 if nobody
+    private DrainRateEstimator drainRates;
     private Random protocolRandom;
+    private AggregationModel aggregation;
+    private LinkQualityModel linkModel;
 
     private List<Zone> zones;
     private Map<Integer, Integer> leaderCooldownMap;
 
     private List<SensorNode> upperChainOfZoneLeaders;
     private SensorNode superLeader;
+    private int lastUpperChainDelaySlots; // Slots the most recent upper-tier gather took
+    private UpperChainCache upperChainCache; // Orderings of recently seen opting-leader sets
+    private final Parameters params;
+    private int quadtreeDepth; // Finest quadtree level for HALEM_HIERARCHY_QUADTREE (level 0 = whole field)
+    private int nextZoneId; // Ids for zones created by rebalancing splits
+    private DeploymentContext deploymentContext; // Shared zone assignments and chains, or null
+    private int gridRows, gridCols;
 
     private static final String OP_TX_ZONE_CHAIN = "tx_zone_chain";
     private static final String OP_RX_ZONE_CHAIN = "rx_zone_chain";
@@ -31,24 +48,71 @@ public class HALEMPegasisProtocol implements Protocol {
     private static final String OP_AGGREGATE_SUPER_LEADER = "agg_super_leader";
     private static final String OP_TX_SUPER_LEADER_TO_SINK = "tx_sl_to_sink";
 
+    /**
+     * The tunable HALEM parameters, held per protocol instance so that differently configured
+     * runs (e.g. autotuner candidates) can execute concurrently. Defaults come from PEGASISConfig.
+     */
+    public static class Parameters {
+        public int zoneRows, zoneCols;
+        public double scoreW1Energy, scoreW2Centrality, scoreW3Lifetime;
+        public int leaderCooldownRounds;
+        public double sinkDistanceThresholdForHierarchy;
+
+        public static Parameters fromConfig() {
+            Parameters p = new Parameters();
+            p.zoneRows = PEGASISConfig.HALEM_ZONE_ROWS; p.zoneCols = PEGASISConfig.HALEM_ZONE_COLS;
+            p.scoreW1Energy = PEGASISConfig.HALEM_LEADER_SCORE_W1_ENERGY;
+            p.scoreW2Centrality = PEGASISConfig.HALEM_LEADER_SCORE_W2_CENTRALITY;
+            p.scoreW3Lifetime = PEGASISConfig.HALEM_LEADER_SCORE_W3_LIFETIME;
+            p.leaderCooldownRounds = PEGASISConfig.HALEM_LEADER_COOLDOWN_ROUNDS;
+            p.sinkDistanceThresholdForHierarchy = PEGASISConfig.HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY;
+            return p;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("zones=%dx%d w1=%.3f w2=%.3f w3=%.3f cooldown=%d threshold=%.1fm",
+                    zoneRows, zoneCols, scoreW1Energy, scoreW2Centrality, scoreW3Lifetime, leaderCooldownRounds, sinkDistanceThresholdForHierarchy);
+        }
+    }
+
     public HALEMPegasisProtocol() {
+        this(Parameters.fromConfig());
+    }
+
+    public HALEMPegasisProtocol(Parameters params) {
+        this.params = params;
         this.zones = new ArrayList<>();
         this.leaderCooldownMap = new HashMap<>();
         this.upperChainOfZoneLeaders = new ArrayList<>();
     }
 
     @Override
-    public void setup(List<SensorNode> initialNodes, BaseStation currentSink, MetricsCollector mc, Random protocolRandomSeed) {
-        // ... (setup logic remains the same as previous version) ...
-        this.allNodes = initialNodes; this.sinkNode = currentSink; this.metrics = mc; this.protocolRandom = protocolRandomSeed;
+    public void setup(List<SensorNode> initialNodes, List<BaseStation> sinks, MetricsCollector mc, Random protocolRandomSeed) {
+        this.allNodes = initialNodes; this.sinkNode = sinks.get(0); this.metrics = mc; this.protocolRandom = protocolRandomSeed;
+        this.phases = mc.getPhaseProfiler();
+        this.trace = mc.getTraceRecorder();
+        this.upperForward = new int[initialNodes.stream().mapToInt(SensorNode::getId).max().orElse(0) + 1];
+        this.drainRates = DrainRateEstimator.fromConfig(initialNodes);
+        this.aggregation = AggregationModel.fromConfig();
+        this.linkModel = LinkQualityModel.fromConfig();
+        this.sinkDistances = new SinkDistanceCache(initialNodes, sinks);
         this.metrics.setCurrentProtocolName(getProtocolName());
         System.out.println(getProtocolName() + " setup started...");
         formZones();
-        formIntraZoneChains(this.sinkNode);
+        formIntraZoneChains();
+        this.upperChainCache = PEGASISConfig.HALEM_UPPER_CHAIN_CACHE_SIZE > 0
+                             ? new UpperChainCache(PEGASISConfig.HALEM_UPPER_CHAIN_CACHE_SIZE, PEGASISConfig.HALEM_UPPER_CHAIN_INCREMENTAL_MAX_CHANGES)
+                             : null;
+        this.quadtreeDepth = PEGASISConfig.HALEM_QUADTREE_DEPTH >= 0 ? PEGASISConfig.HALEM_QUADTREE_DEPTH
+                           : autoQuadtreeDepth(Math.min(this.zones.size(), this.allNodes.size()));
         System.out.println(getProtocolName() + " setup complete. Zones: " + this.zones.size());
         // (Optional: detailed zone printout)
     }
 
+    @Override
+    public void setDeploymentContext(DeploymentContext context) { this.deploymentContext = context; }
+
     @Override
     public String getProtocolName() { return "HALEM-PEGASIS"; }
     @Override
@@ -62,15 +126,28 @@ public class HALEMPegasisProtocol implements Protocol {
     }
     private double distance(SensorNode n, BaseStation bs) { /* ... same ... */ 
         if (n == null || bs == null) return Double.MAX_VALUE;
+        if (bs == nearestSink(n)) return distanceToSink(n); // Cached for the current sink positions
         return Math.sqrt(Math.pow(n.getX() - bs.getX(), 2) + Math.pow(n.getY() - bs.getY(), 2));
     }
+    /** Distance from the node to its nearest (cheapest) sink. */
+    private double distanceToSink(SensorNode n) {
+        if (n == null) return Double.MAX_VALUE;
+        return this.sinkDistances.distanceToSink(n);
+    }
+    private BaseStation nearestSink(SensorNode n) { return this.sinkDistances.nearestSink(n); }
+
+    /** Expected energy of one fused packet from n to its nearest sink, retransmissions included. */
+    private double expectedUplinkEnergy(SensorNode n) {
+        double d = distanceToSink(n);
+        return EnergyKernels.txEnergy(PEGASISConfig.DATA_PACKET_SIZE_BITS, d) * this.linkModel.expectedAttempts(this.linkModel.per(d));
+    }
     private double distance(SensorNode n, double x, double y) { /* ... same ... */ 
         if (n == null) return Double.MAX_VALUE;
         return Math.sqrt(Math.pow(n.getX() - x, 2) + Math.pow(n.getY() - y, 2));
     }
     private void formZones() { /* ... same ... */ 
         this.zones.clear();
-        int numRows = PEGASISConfig.HALEM_ZONE_ROWS; int numCols = PEGASISConfig.HALEM_ZONE_COLS;
+        int numRows = params.zoneRows; int numCols = params.zoneCols;
         if (numRows <= 0 || numCols <= 0) { numRows = 1; numCols = 1; }
         int totalZones = numRows * numCols;
         double zoneWidth = PEGASISConfig.AREA_WIDTH / numCols; double zoneHeight = PEGASISConfig.AREA_HEIGHT / numRows;
@@ -78,6 +155,17 @@ public class HALEMPegasisProtocol implements Protocol {
             int r = i / numCols; int c = i % numCols;
             this.zones.add(new Zone(i + 1, (c + 0.5) * zoneWidth, (r + 0.5) * zoneHeight, this));
         }
+        this.nextZoneId = totalZones + 1;
+        this.gridRows = numRows; this.gridCols = numCols;
+        if (this.deploymentContext != null && this.deploymentContext.size() == this.allNodes.size()) {
+            int[] assignment = this.deploymentContext.zoneAssignment(numRows, numCols);
+            for (int i = 0; i < assignment.length; i++) {
+                SensorNode node = this.allNodes.get(i);
+                if (node.isAlive()) this.zones.get(assignment[i]).addNode(node);
+            }
+            this.zones.forEach(Zone::updateActualCenter);
+            return;
+        }
         for (SensorNode node : this.allNodes) {
             if (!node.isAlive()) continue;
             int c = Math.max(0, Math.min((int) (node.getX() / zoneWidth), numCols - 1));
@@ -86,37 +174,62 @@ public class HALEMPegasisProtocol implements Protocol {
         }
         this.zones.forEach(Zone::updateActualCenter);
     }
-    private void formIntraZoneChains(BaseStation referencePoint) { /* ... same ... */
+    private void formIntraZoneChains() {
         long totalChainTime = this.zones.stream()
             .filter(zone -> zone.getNodesInZone().stream().anyMatch(SensorNode::isAlive))
             .mapToLong(zone -> {
                 long start = System.nanoTime();
-                zone.formInternalChain(referencePoint);
+                zone.formInternalChain();
                 return System.nanoTime() - start;
             }).sum();
-        if (this.metrics != null && totalChainTime > 0) this.metrics.addChainFormationTime(totalChainTime);
+        if (this.metrics != null && totalChainTime > 0) {
+            this.metrics.addChainFormationTime(totalChainTime);
+            this.metrics.addChainCost(this.zones.stream().mapToDouble(zone -> HilbertChainBuilder.chainCost(zone.chainHopDistances)).sum());
+        }
      }
 
     @Override
     public Map<String, Object> runSingleRound(int roundNumber) {
         // ... (start of runSingleRound logic remains same: metrics.logRoundStart, energy accumulator, cooldown decrement, role reset)
         if (this.metrics != null) this.metrics.logRoundStart(roundNumber);
+        trace.beginRound(roundNumber);
         double totalEnergyConsumedThisRoundGlobally = 0.0;
         Map<String, Object> roundStats = new HashMap<>();
         roundStats.put("roundNumber", roundNumber); roundStats.put("protocolName", getProtocolName());
 
+        phases.enter(PhaseProfiler.Phase.COOLDOWN_UPDATE);
         leaderCooldownMap.keySet().removeIf(nodeId -> (leaderCooldownMap.merge(nodeId, -1, Integer::sum) <= 0));
-        allNodes.stream().filter(SensorNode::isAlive).forEach(node -> node.setRole(SensorNode.Role.FOLLOWER));
+        if (PEGASISConfig.HALEM_REBALANCE_ENABLED && roundNumber % PEGASISConfig.HALEM_REBALANCE_CHECK_INTERVAL == 0) {
+            phases.enter(PhaseProfiler.Phase.ZONE_REBALANCE);
+            rebalanceZones();
+        }
+        phases.enter(PhaseProfiler.Phase.ROLE_RESET);
+        int readingsThisRound = 0;
+        for (SensorNode node : allNodes) {
+            if (!node.isAlive()) continue;
+            node.setRole(SensorNode.Role.FOLLOWER);
+            node.resetPayload(PEGASISConfig.DATA_PACKET_SIZE_BITS); // One fresh reading per node
+            readingsThisRound++;
+        }
+        if (this.metrics != null) this.metrics.addReadingsGenerated(readingsThisRound);
 
         List<SensorNode> actingZoneLeadersThisRound = new ArrayList<>();
         List<SensorNode> zoneLeadersOptingForHierarchy = new ArrayList<>();
+        boolean costBasedRouting = PEGASISConfig.HALEM_ENABLE_UPPER_HIERARCHY && PEGASISConfig.HALEM_ROUTING_MODE == PEGASISConfig.HALEM_ROUTING_COST;
+        List<SensorNode> routingCandidates = new ArrayList<>(); // Cost mode: decided after all zones have a leader
+        List<Zone> routingCandidateZones = new ArrayList<>();
         List<String> currentRoundLeaderInfo = new ArrayList<>();
         boolean anyDirectSinkTransmissionSuccessful = false;
+        // Round delay: zones gather concurrently, then direct leader uplinks run alongside the upper tier
+        int zoneDelaySlots = 0, directDelaySlots = 0, upperDelaySlots = 0;
 
         // Phase 1: Intra-zone operations and leader decisions
+        phases.enter(PhaseProfiler.Phase.LEADER_ELECTION);
         for (Zone zone : this.zones) {
             zone.setEffectiveLeaderForRound(null);
+            zone.resetDeliveryRound();
             if (zone.getNodesInZone().stream().noneMatch(SensorNode::isAlive)) continue;
+            zone.roundActive = true;
 
             zone.selectZoneLeaders(roundNumber, this.metrics, this.sinkNode, this.leaderCooldownMap);
             SensorNode primaryLeader = zone.getZoneLeader();
@@ -128,8 +241,11 @@ public class HALEMPegasisProtocol implements Protocol {
                 // Primary leader's role set after checking if it will act
             }
 
+            phases.enter(PhaseProfiler.Phase.GATHER);
             double energyGathering = zone.gatherDataToLeaderAndConsumeEnergy(this.metrics, primaryLeader); // Gather towards primary
             totalEnergyConsumedThisRoundGlobally += energyGathering;
+            zoneDelaySlots = Math.max(zoneDelaySlots, zone.lastGatherDelaySlots);
+            phases.enter(PhaseProfiler.Phase.LEADER_ELECTION);
 
             if (currentActingLeader == null || !currentActingLeader.isAlive()) {
                 if (PEGASISConfig.HALEM_ENABLE_BACKUP_LEADERS && backupLeader != null && backupLeader.isAlive()) {
@@ -146,67 +262,134 @@ public class HALEMPegasisProtocol implements Protocol {
             }
             
             zone.setEffectiveLeaderForRound(currentActingLeader);
+            if (currentActingLeader != null) zone.roundBits = currentActingLeader.getPayloadBits(); // The zone's fused packet
 
             if (currentActingLeader != null && currentActingLeader.isAlive()) {
                 currentActingLeader.setRole(SensorNode.Role.LEADER); // Set role for the one ACTING
                 actingZoneLeadersThisRound.add(currentActingLeader);
-                if (PEGASISConfig.HALEM_ENABLE_UPPER_HIERARCHY &&
-                    distance(currentActingLeader, this.sinkNode) > PEGASISConfig.HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY) {
+                if (costBasedRouting) {
+                    routingCandidates.add(currentActingLeader);
+                    routingCandidateZones.add(zone);
+                } else if (PEGASISConfig.HALEM_ENABLE_UPPER_HIERARCHY &&
+                    distanceToSink(currentActingLeader) > params.sinkDistanceThresholdForHierarchy) {
                     zoneLeadersOptingForHierarchy.add(currentActingLeader);
+                    zone.roundOptedUp = true;
                 } else {
-                    Zone.LeaderTransmissionResult txResult = zone.leaderTransmitsDataToSink(currentActingLeader, this.sinkNode, this.metrics);
+                    phases.enter(PhaseProfiler.Phase.SINK_TRANSMISSION);
+                    Zone.LeaderTransmissionResult txResult = zone.leaderTransmitsDataToSink(currentActingLeader, nearestSink(currentActingLeader), this.metrics);
                     totalEnergyConsumedThisRoundGlobally += txResult.energyConsumed;
+                    directDelaySlots = Math.max(directDelaySlots, txResult.attempts);
                     if (txResult.successful) anyDirectSinkTransmissionSuccessful = true;
                     if (txResult.energyConsumed >= 0 || !currentActingLeader.isAlive())
-                        this.leaderCooldownMap.put(currentActingLeader.getId(), PEGASISConfig.HALEM_LEADER_COOLDOWN_ROUNDS);
+                        this.leaderCooldownMap.put(currentActingLeader.getId(), params.leaderCooldownRounds);
+                    phases.enter(PhaseProfiler.Phase.LEADER_ELECTION);
                 }
             }
         }
 
+        // Phase 1b (cost mode): route each leader by comparing direct vs. marginal upper-chain energy
+        double routingEnergySaved = 0.0;
+        if (costBasedRouting && !routingCandidates.isEmpty()) {
+            phases.enter(PhaseProfiler.Phase.ROUTING);
+            int n = routingCandidates.size(), bits = PEGASISConfig.DATA_PACKET_SIZE_BITS;
+            double[] xs = new double[n], ys = new double[n], sinkDist = new double[n];
+            for (int i = 0; i < n; i++) {
+                SensorNode zl = routingCandidates.get(i);
+                xs[i] = zl.getX(); ys[i] = zl.getY(); sinkDist[i] = distanceToSink(zl);
+            }
+            boolean[] join = LeaderRoutingPlanner.decide(xs, ys, sinkDist, n, bits);
+            boolean[] thresholdJoin = LeaderRoutingPlanner.thresholdPolicy(sinkDist, n, params.sinkDistanceThresholdForHierarchy);
+            int minLeaders = PEGASISConfig.HALEM_MIN_LEADERS_FOR_UPPER_CHAIN;
+            routingEnergySaved = LeaderRoutingPlanner.modeledEnergy(xs, ys, sinkDist, thresholdJoin, n, bits, minLeaders)
+                               - LeaderRoutingPlanner.modeledEnergy(xs, ys, sinkDist, join, n, bits, minLeaders);
+            for (int i = 0; i < n; i++) {
+                SensorNode zl = routingCandidates.get(i);
+                if (join[i]) { zoneLeadersOptingForHierarchy.add(zl); routingCandidateZones.get(i).roundOptedUp = true; continue; }
+                phases.enter(PhaseProfiler.Phase.SINK_TRANSMISSION);
+                Zone.LeaderTransmissionResult txResult = routingCandidateZones.get(i).leaderTransmitsDataToSink(zl, nearestSink(zl), this.metrics);
+                totalEnergyConsumedThisRoundGlobally += txResult.energyConsumed;
+                directDelaySlots = Math.max(directDelaySlots, txResult.attempts);
+                if (txResult.successful) anyDirectSinkTransmissionSuccessful = true;
+                if (txResult.energyConsumed >= 0 || !zl.isAlive())
+                    this.leaderCooldownMap.put(zl.getId(), params.leaderCooldownRounds);
+            }
+        }
+        roundStats.put("routingEnergySavedJ", routingEnergySaved);
+
         // Phase 2: Upper Hierarchy operations
+        phases.enter(PhaseProfiler.Phase.UPPER_CHAIN_FORMATION);
         this.superLeader = null;
         this.upperChainOfZoneLeaders.clear();
+        this.lastUpperChainDelaySlots = 0;
         boolean superLeaderTransmittedSuccessfully = false;
 
         if (PEGASISConfig.HALEM_ENABLE_UPPER_HIERARCHY && zoneLeadersOptingForHierarchy.size() >= PEGASISConfig.HALEM_MIN_LEADERS_FOR_UPPER_CHAIN) {
-            this.upperChainOfZoneLeaders = formUpperChain(zoneLeadersOptingForHierarchy, this.sinkNode);
-            if (!this.upperChainOfZoneLeaders.isEmpty()) {
-                this.superLeader = selectSuperLeader(this.upperChainOfZoneLeaders, roundNumber);
-                if (this.superLeader != null) {
-                    currentRoundLeaderInfo.add(this.superLeader.getId() + "(SL)");
-                    this.superLeader.setRole(SensorNode.Role.LEADER);
-                    if(metrics!=null) metrics.incrementLeaderSelectionCount(this.superLeader.getId());
-                    this.superLeader.incrementTimesAsLeader();
-
-                    double energyUpperChainTx = transmitDataAlongUpperChainToSuperLeader(
-                                                    this.upperChainOfZoneLeaders, this.superLeader, this.metrics);
-                    totalEnergyConsumedThisRoundGlobally += energyUpperChainTx;
-
-                    if (this.superLeader.isAlive()) {
-                        Zone.LeaderTransmissionResult slTxResult = transmitFromSuperLeaderToSink(
-                                                                    this.superLeader, this.sinkNode, this.metrics);
-                        totalEnergyConsumedThisRoundGlobally += slTxResult.energyConsumed;
-                        if (slTxResult.successful) superLeaderTransmittedSuccessfully = true;
-                        if(slTxResult.energyConsumed >=0 || !this.superLeader.isAlive())
-                            this.leaderCooldownMap.put(this.superLeader.getId(), PEGASISConfig.HALEM_LEADER_COOLDOWN_ROUNDS);
-                    }
+            boolean quadtree = PEGASISConfig.HALEM_HIERARCHY_MODE == PEGASISConfig.HALEM_HIERARCHY_QUADTREE;
+            for (SensorNode zl : zoneLeadersOptingForHierarchy) this.upperForward[zl.getId()] = 0;
+            double energyUpperChainTx = 0.0;
+            if (quadtree) {
+                // Gathers level by level and leaves the root head in this.superLeader
+                energyUpperChainTx = gatherThroughQuadtreeHierarchy(zoneLeadersOptingForHierarchy, roundNumber, roundStats);
+            } else {
+                this.upperChainOfZoneLeaders = formUpperChain(zoneLeadersOptingForHierarchy);
+                if (!this.upperChainOfZoneLeaders.isEmpty()) {
+                    this.superLeader = selectSuperLeader(this.upperChainOfZoneLeaders, roundNumber);
+                }
+            }
+            if (this.superLeader != null) {
+                currentRoundLeaderInfo.add(this.superLeader.getId() + "(SL)");
+                this.superLeader.setRole(SensorNode.Role.LEADER);
+                if(metrics!=null) metrics.incrementLeaderSelectionCount(this.superLeader.getId());
+                this.superLeader.incrementTimesAsLeader();
+
+                if (!quadtree) {
+                    phases.enter(PhaseProfiler.Phase.UPPER_CHAIN_TRANSMISSION);
+                    energyUpperChainTx = transmitDataAlongUpperChainToSuperLeader(
+                                                this.upperChainOfZoneLeaders, this.superLeader, this.metrics);
                 }
             }
+            totalEnergyConsumedThisRoundGlobally += energyUpperChainTx;
+            upperDelaySlots = this.lastUpperChainDelaySlots;
+
+            if (this.superLeader != null && this.superLeader.isAlive()) {
+                phases.enter(PhaseProfiler.Phase.SINK_TRANSMISSION);
+                Zone.LeaderTransmissionResult slTxResult = transmitFromSuperLeaderToSink(
+                                                            this.superLeader, nearestSink(this.superLeader), this.metrics);
+                totalEnergyConsumedThisRoundGlobally += slTxResult.energyConsumed;
+                upperDelaySlots += slTxResult.attempts;
+                if (slTxResult.successful) superLeaderTransmittedSuccessfully = true;
+                if(slTxResult.energyConsumed >=0 || !this.superLeader.isAlive())
+                    this.leaderCooldownMap.put(this.superLeader.getId(), params.leaderCooldownRounds);
+            }
         } else if (PEGASISConfig.HALEM_ENABLE_UPPER_HIERARCHY) {
+            phases.enter(PhaseProfiler.Phase.SINK_TRANSMISSION);
             for (SensorNode zl : zoneLeadersOptingForHierarchy) {
                 if (zl.isAlive() && !this.leaderCooldownMap.containsKey(zl.getId())) {
                     Zone zone = findZoneForLeader(zl);
                     if (zone != null) {
-                        Zone.LeaderTransmissionResult txResult = zone.leaderTransmitsDataToSink(zl, this.sinkNode, this.metrics);
+                        Zone.LeaderTransmissionResult txResult = zone.leaderTransmitsDataToSink(zl, nearestSink(zl), this.metrics);
                         totalEnergyConsumedThisRoundGlobally += txResult.energyConsumed;
+                        directDelaySlots = Math.max(directDelaySlots, txResult.attempts);
                         if (txResult.successful) anyDirectSinkTransmissionSuccessful = true;
                          if (txResult.energyConsumed >= 0 || !zl.isAlive())
-                            this.leaderCooldownMap.put(zl.getId(), PEGASISConfig.HALEM_LEADER_COOLDOWN_ROUNDS);
+                            this.leaderCooldownMap.put(zl.getId(), params.leaderCooldownRounds);
                     }
                 }
             }
         }
         
+        phases.enter(PhaseProfiler.Phase.METRICS_FINALIZATION);
+        if (this.metrics != null) {
+            for (Zone zone : this.zones) {
+                if (!zone.roundActive) continue;
+                if (zone.roundPath == ZoneDeliveryStats.PATH_NONE && zone.roundOptedUp && superLeaderTransmittedSuccessfully
+                        && reachesSuperLeader(zone.getEffectiveLeaderForRound())) {
+                    zone.roundPath = ZoneDeliveryStats.PATH_SUPER_LEADER;
+                }
+                metrics.logZoneDelivery(zone.getId(), roundNumber, zone.roundPath, zone.roundPath == ZoneDeliveryStats.PATH_NONE ? 0 : zone.roundBits);
+            }
+            metrics.endZoneDeliveryRound();
+        }
         boolean overallSinkSuccess = anyDirectSinkTransmissionSuccessful || superLeaderTransmittedSuccessfully;
         roundStats.put("leaderInfo", currentRoundLeaderInfo.isEmpty() ? "N/A" : String.join(", ", currentRoundLeaderInfo));
         roundStats.put("bsTransmissionSuccess", overallSinkSuccess);
@@ -227,6 +410,7 @@ public class HALEMPegasisProtocol implements Protocol {
         }
 
         // ... (rest of runSingleRound: aliveCount, energy logging, FND/HND/LND checks remain the same) ...
+        this.drainRates.update(allNodes);
         long aliveCount = getAliveNodesCount();
         double totalRemainingNetworkEnergy = allNodes.stream().filter(SensorNode::isAlive).mapToDouble(SensorNode::getEnergy).sum();
 
@@ -234,13 +418,69 @@ public class HALEMPegasisProtocol implements Protocol {
             metrics.logAliveNodes((int) aliveCount);
             metrics.logTotalRemainingEnergy(totalRemainingNetworkEnergy);
             metrics.logEnergyConsumedThisRound(totalEnergyConsumedThisRoundGlobally);
+            metrics.logRoundDelay(zoneDelaySlots + Math.max(directDelaySlots, upperDelaySlots));
+            metrics.logRoutingEnergySaved(routingEnergySaved);
+            metrics.logRoundLinkStats();
             if (metrics.getFndRound() == -1 && aliveCount < PEGASISConfig.NUM_NODES) metrics.setFndRound(roundNumber);
             if (metrics.getHndRound() == -1 && aliveCount <= (PEGASISConfig.NUM_NODES / 2.0)) metrics.setHndRound(roundNumber);
             if (aliveCount == 0 && metrics.getLndRound() == -1) metrics.setLndRound(roundNumber);
         }
+        phases.endRound();
         return roundStats;
     }
 
+    /**
+     * Adjusts the zoning in place when alive populations have drifted apart. Populated zones
+     * below mean / HALEM_REBALANCE_SKEW_THRESHOLD are merged, sparsest first, into the zone whose
+     * alive centroid is nearest; zones above mean * threshold are split at the median of their
+     * wider extent. Nodes keep their current zone unless their zone is merged or split, and only
+     * those zones get new centroids and chains.
+     */
+    private void rebalanceZones() {
+        long start = System.nanoTime();
+        List<Zone> populated = this.zones.stream().filter(z -> z.aliveCount() > 0).collect(Collectors.toCollection(ArrayList::new));
+        if (populated.isEmpty()) return;
+        double mean = populated.stream().mapToInt(Zone::aliveCount).average().orElse(0);
+        double threshold = PEGASISConfig.HALEM_REBALANCE_SKEW_THRESHOLD;
+        if (populated.stream().allMatch(z -> z.aliveCount() >= mean / threshold && z.aliveCount() <= mean * threshold)) return;
+
+        List<Zone> touched = new ArrayList<>();
+        int merges = 0, splits = 0;
+        populated.sort(Comparator.comparingInt(Zone::aliveCount));
+        for (Zone zone : new ArrayList<>(populated)) {
+            if (populated.size() < 2 || zone.aliveCount() >= mean / threshold) continue;
+            populated.remove(zone);
+            Zone target = Collections.min(populated, Comparator.comparingDouble(z ->
+                    Math.hypot(z.getActualCenterX() - zone.getActualCenterX(), z.getActualCenterY() - zone.getActualCenterY())));
+            target.absorb(zone);
+            this.zones.remove(zone);
+            touched.remove(zone);
+            if (!touched.contains(target)) touched.add(target);
+            merges++;
+        }
+        for (Zone zone : new ArrayList<>(populated)) {
+            if (zone.aliveCount() <= mean * threshold || zone.aliveCount() < 4) continue;
+            Zone half = zone.splitOff(this.nextZoneId++);
+            this.zones.add(half);
+            if (!touched.contains(zone)) touched.add(zone);
+            touched.add(half);
+            splits++;
+        }
+        for (Zone zone : touched) {
+            zone.updateActualCenter();
+            zone.formInternalChain();
+        }
+        if (this.metrics != null) this.metrics.logZoneRebalance(System.nanoTime() - start, merges, splits);
+    }
+
+    /** Whether a zone leader's upper-tier data got to this round's super leader: every hop from it on was delivered. */
+    private boolean reachesSuperLeader(SensorNode zoneLeader) {
+        if (zoneLeader == null || this.superLeader == null) return false;
+        int id = zoneLeader.getId(), target = this.superLeader.getId();
+        for (int hops = 0; id != target && id != 0 && hops < this.upperForward.length; hops++) id = this.upperForward[id];
+        return id == target;
+    }
+
     private Zone findZoneForLeader(SensorNode leaderNode) { /* ... same as before ... */ 
         if (leaderNode == null) return null;
         for (Zone zone : this.zones) {
@@ -254,20 +494,103 @@ public class HALEMPegasisProtocol implements Protocol {
         return null;
     }
 
-    private List<SensorNode> formUpperChain(List<SensorNode> ZLs, BaseStation sinkRef) {
+    /**
+     * Depth for the quadtree hierarchy: the smallest L with 4^L >= leaves, so that the finest
+     * cells hold about one zone leader each and every level chains at most four siblings.
+     * Both CPU work and sequential on-air hops then grow with log4 of the leader count.
+     */
+    static int autoQuadtreeDepth(int leaves) {
+        int depth = 0;
+        while ((1L << (2 * depth)) < leaves) depth++;
+        return depth;
+    }
+
+    /**
+     * Recursive alternative to the single upper chain. Opting leaders are bucketed into the
+     * cells of the finest quadtree level; in each cell they form a greedy chain, elect a head
+     * (round-robin, as for the super leader) and gather to it. Heads then repeat the process
+     * among their siblings one level up, until the root cell's head remains as super leader.
+     * Cells at the same level operate in parallel, so a round's upper-tier delay is the sum of
+     * the longest sibling chain per level rather than the length of one long chain.
+     * @return Energy consumed by all upper-tier hops. Sets this.superLeader (null if none survives)
+     *         and this.lastUpperChainDelaySlots.
+     */
+    private double gatherThroughQuadtreeHierarchy(List<SensorNode> optingLeaders, int roundNumber, Map<String, Object> roundStats) {
         long startTime = System.nanoTime();
-        List<SensorNode> upperChain = new ArrayList<>();
-        if (ZLs.isEmpty()) {
-            if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
-            return upperChain;
+        long chainTime = 0;
+        double energy = 0.0;
+        int sequentialHops = 0, delaySlots = 0;
+        List<SensorNode> level = optingLeaders.stream().filter(SensorNode::isAlive).collect(Collectors.toList());
+        for (int l = this.quadtreeDepth; l >= 0 && level.size() > 1; l--) {
+            int cellsPerSide = 1 << l;
+            double cellWidth = PEGASISConfig.AREA_WIDTH / cellsPerSide, cellHeight = PEGASISConfig.AREA_HEIGHT / cellsPerSide;
+            Map<Integer, List<SensorNode>> cells = new TreeMap<>();
+            for (SensorNode n : level) {
+                int cx = Math.max(0, Math.min((int) (n.getX() / cellWidth), cellsPerSide - 1));
+                int cy = Math.max(0, Math.min((int) (n.getY() / cellHeight), cellsPerSide - 1));
+                cells.computeIfAbsent(cy * cellsPerSide + cx, k -> new ArrayList<>()).add(n);
+            }
+            List<SensorNode> heads = new ArrayList<>();
+            int longestChainHops = 0, longestChainSlots = 0;
+            for (List<SensorNode> members : cells.values()) {
+                phases.enter(PhaseProfiler.Phase.UPPER_CHAIN_FORMATION);
+                long chainStart = System.nanoTime();
+                List<SensorNode> cellChain = buildGreedyChain(members);
+                chainTime += System.nanoTime() - chainStart;
+                SensorNode head = selectSuperLeader(cellChain, roundNumber);
+                if (head == null) continue;
+                phases.enter(PhaseProfiler.Phase.UPPER_CHAIN_TRANSMISSION);
+                energy += transmitDataAlongUpperChainToSuperLeader(cellChain, head, this.metrics);
+                longestChainHops = Math.max(longestChainHops, cellChain.size() - 1);
+                longestChainSlots = Math.max(longestChainSlots, this.lastUpperChainDelaySlots);
+                if (head.isAlive()) heads.add(head);
+            }
+            sequentialHops += longestChainHops;
+            delaySlots += longestChainSlots;
+            level = heads;
+        }
+        this.lastUpperChainDelaySlots = delaySlots;
+        this.superLeader = level.isEmpty() ? null : level.get(0);
+        if (this.metrics != null) this.metrics.addChainFormationTime(chainTime);
+        roundStats.put("upperHierarchyDepth", this.quadtreeDepth);
+        roundStats.put("upperHierarchySequentialHops", sequentialHops);
+        roundStats.put("upperHierarchyCpuNanos", System.nanoTime() - startTime);
+        return energy;
+    }
+
+    private List<SensorNode> formUpperChain(List<SensorNode> ZLs) {
+        long startTime = System.nanoTime();
+        List<SensorNode> upperChain;
+        if (this.upperChainCache == null) {
+            upperChain = buildGreedyChain(ZLs);
+        } else {
+            List<SensorNode> aliveZLs = ZLs.stream().filter(SensorNode::isAlive).collect(Collectors.toList());
+            upperChain = this.upperChainCache.getOrBuild(aliveZLs, currentSinkPositions(), this::buildGreedyChain, this::distance);
+            int outcome = this.upperChainCache.getLastOutcome();
+            if (this.metrics != null) this.metrics.logUpperChainCacheLookup(outcome);
+            if (outcome == UpperChainCache.HIT) return upperChain; // Nothing was formed; the hit rate is reported separately
         }
+        if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
+        return upperChain;
+    }
+
+    /** x0, y0, x1, y1, ... of every sink; part of the upper-chain cache key since the chain start depends on it. */
+    private double[] currentSinkPositions() {
+        List<BaseStation> sinks = this.sinkDistances.getSinks();
+        double[] positions = new double[2 * sinks.size()];
+        for (int s = 0; s < sinks.size(); s++) { positions[2 * s] = sinks.get(s).getX(); positions[2 * s + 1] = sinks.get(s).getY(); }
+        return positions;
+    }
+
+    /** Greedy nearest-neighbour chain over the alive nodes, starting from the one farthest from its sink. */
+    private List<SensorNode> buildGreedyChain(List<SensorNode> ZLs) {
+        List<SensorNode> upperChain = new ArrayList<>();
         List<SensorNode> availableZLs = new ArrayList<>(ZLs.stream().filter(SensorNode::isAlive).collect(Collectors.toList()));
         if (availableZLs.isEmpty()) {
-            if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
             return upperChain;
         }
 
-        SensorNode startNode = Collections.max(availableZLs, Comparator.comparingDouble(n -> distance(n, sinkRef)));
+        SensorNode startNode = Collections.max(availableZLs, Comparator.comparingDouble(this::distanceToSink));
         upperChain.add(startNode);
         availableZLs.remove(startNode);
 
@@ -290,7 +613,6 @@ public class HALEMPegasisProtocol implements Protocol {
                 break;
             }
         }
-        if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
         return upperChain;
     }
 
@@ -303,6 +625,7 @@ public class HALEMPegasisProtocol implements Protocol {
     }
 
     private double transmitDataAlongUpperChainToSuperLeader(List<SensorNode> chainOfZLs, SensorNode superLeader, MetricsCollector metrics) { /* ... same as before ... */ 
+        this.lastUpperChainDelaySlots = 0;
         if (superLeader == null || !superLeader.isAlive() || chainOfZLs.isEmpty() || chainOfZLs.size() < 1 || (chainOfZLs.size() == 1 && chainOfZLs.get(0).getId() == superLeader.getId())) {
              // If only SL is in chain, no transmission along chain needed.
             return 0.0;
@@ -313,32 +636,66 @@ public class HALEMPegasisProtocol implements Protocol {
             if (chainOfZLs.get(i).getId() == superLeader.getId()) { superLeaderChainIndex = i; break; }
         }
         if (superLeaderChainIndex == -1) { System.err.println("HALEM Error: Super Leader " + superLeader.getId() + " not in its upper chain."); return 0.0; }
+        int[] hopAttempts = null; // Lossless unless the link model is enabled
+        if (this.linkModel.isEnabled()) {
+            int n = chainOfZLs.size();
+            double[] xs = new double[n], ys = new double[n], hopDist = new double[Math.max(0, n - 1)], hopPer = new double[hopDist.length];
+            for (int i = 0; i < n; i++) { xs[i] = chainOfZLs.get(i).getX(); ys[i] = chainOfZLs.get(i).getY(); }
+            EnergyKernels.hopDistances(xs, ys, n, hopDist);
+            this.linkModel.pers(hopDist, hopDist.length, hopPer);
+            hopAttempts = this.linkModel.sampleChain(hopPer, hopDist.length);
+        }
+        this.aggregation.planChainPayloads(chainOfZLs, superLeaderChainIndex, null, hopAttempts);
         for (int i = superLeaderChainIndex - 1; i >= 0; i--) {
             SensorNode senderZL = chainOfZLs.get(i); SensorNode receiverZL = chainOfZLs.get(i + 1);
-            energyConsumedThisPhase += transmitReceiveAggregateOneHopUpper(senderZL, receiverZL, (receiverZL.getId() == superLeader.getId()), metrics);
+            if (senderZL.isAlive() && receiverZL.isAlive()) this.lastUpperChainDelaySlots += this.linkModel.attemptsUsed(hopAttempts == null ? 1 : hopAttempts[i]);
+            energyConsumedThisPhase += transmitReceiveAggregateOneHopUpper(senderZL, receiverZL, (receiverZL.getId() == superLeader.getId()),
+                                                                           hopAttempts == null ? 1 : hopAttempts[i], metrics);
             if (!senderZL.isAlive() || !receiverZL.isAlive()) break;
         }
         for (int i = superLeaderChainIndex + 1; i < chainOfZLs.size(); i++) {
             SensorNode senderZL = chainOfZLs.get(i); SensorNode receiverZL = chainOfZLs.get(i - 1);
-            energyConsumedThisPhase += transmitReceiveAggregateOneHopUpper(senderZL, receiverZL, (receiverZL.getId() == superLeader.getId()), metrics);
+            if (senderZL.isAlive() && receiverZL.isAlive()) this.lastUpperChainDelaySlots += this.linkModel.attemptsUsed(hopAttempts == null ? 1 : hopAttempts[i - 1]);
+            energyConsumedThisPhase += transmitReceiveAggregateOneHopUpper(senderZL, receiverZL, (receiverZL.getId() == superLeader.getId()),
+                                                                           hopAttempts == null ? 1 : hopAttempts[i - 1], metrics);
             if (!senderZL.isAlive() || !receiverZL.isAlive()) break;
         }
         return energyConsumedThisPhase;
     }
 
-    private double transmitReceiveAggregateOneHopUpper(SensorNode senderZL, SensorNode receiverZL, boolean isReceiverSuperLeader, MetricsCollector metrics) { /* ... same as before ... */ 
+    private double transmitReceiveAggregateOneHopUpper(SensorNode senderZL, SensorNode receiverZL, boolean isReceiverSuperLeader, int linkOutcome, MetricsCollector metrics) {
+        boolean attempted = senderZL.isAlive() && receiverZL.isAlive();
+        double senderBefore = senderZL.getEnergy(), receiverBefore = receiverZL.getEnergy();
+        int bits = senderZL.getPayloadBits();
+        double hopEnergy = upperChainHop(senderZL, receiverZL, isReceiverSuperLeader, linkOutcome, metrics);
+        this.upperForward[senderZL.getId()] = this.lastUpperHopDelivered ? receiverZL.getId() : 0;
+        if (attempted && trace.isEnabled()) {
+            trace.hop(TraceRecorder.Op.UPPER_CHAIN_HOP, 0, senderZL.getId(), receiverZL.getId(), bits, distance(senderZL, receiverZL),
+                      senderBefore - senderZL.getEnergy(), receiverBefore - receiverZL.getEnergy(), this.lastUpperHopDelivered);
+        }
+        return hopEnergy;
+    }
+
+    private double upperChainHop(SensorNode senderZL, SensorNode receiverZL, boolean isReceiverSuperLeader, int linkOutcome, MetricsCollector metrics) { /* ... same as before ... */ 
+        this.lastUpperHopDelivered = false;
         if (!senderZL.isAlive() || !receiverZL.isAlive()) return 0.0;
-        double hopEnergy = 0.0; double dist = distance(senderZL, receiverZL); int packetSize = PEGASISConfig.DATA_PACKET_SIZE_BITS;
-        double energyTx = (PEGASISConfig.E_ELEC * packetSize) + (PEGASISConfig.E_AMP * packetSize * dist * dist);
-        if (senderZL.getEnergy() >= energyTx) {
-            senderZL.consumeEnergy(energyTx); senderZL.incrementPacketsSent(); hopEnergy += energyTx;
-            if (metrics != null) { metrics.logNodeEnergyConsumption(senderZL.getId(), energyTx); metrics.logDataOperation(senderZL.getId(), OP_TX_ZONE_LEADER_TO_UPPER_CHAIN); }
-        } else { double rem = senderZL.getEnergy(); senderZL.consumeEnergy(rem); hopEnergy += rem; if (metrics != null) metrics.logNodeEnergyConsumption(senderZL.getId(), rem); return hopEnergy; }
+        double hopEnergy = 0.0; double dist = distance(senderZL, receiverZL); int packetSize = senderZL.getPayloadBits();
+        double energyTx = EnergyKernels.txEnergy(packetSize, dist);
         double energyRx = PEGASISConfig.E_ELEC * packetSize;
-        if (receiverZL.getEnergy() >= energyRx) {
-            receiverZL.consumeEnergy(energyRx); receiverZL.incrementPacketsReceived(); hopEnergy += energyRx;
-            if (metrics != null) { metrics.logNodeEnergyConsumption(receiverZL.getId(), energyRx); metrics.logDataOperation(receiverZL.getId(), OP_RX_UPPER_CHAIN); }
-        } else { double rem = receiverZL.getEnergy(); receiverZL.consumeEnergy(rem); hopEnergy += rem; if (metrics != null) metrics.logNodeEnergyConsumption(receiverZL.getId(), rem); return hopEnergy; }
+        int attempts = this.linkModel.attemptsUsed(linkOutcome);
+        for (int attempt = 1; attempt <= attempts; attempt++) { // Each retransmission costs Tx and Rx again
+            if (senderZL.getEnergy() >= energyTx) {
+                senderZL.consumeEnergy(energyTx); senderZL.incrementPacketsSent(); hopEnergy += energyTx;
+                if (metrics != null) { metrics.logNodeEnergyConsumption(senderZL.getId(), energyTx); metrics.logDataOperation(senderZL.getId(), OP_TX_ZONE_LEADER_TO_UPPER_CHAIN); metrics.logHopBits(packetSize); }
+            } else { double rem = senderZL.getEnergy(); senderZL.consumeEnergy(rem); hopEnergy += rem; if (metrics != null) { metrics.logNodeEnergyConsumption(senderZL.getId(), rem); metrics.logLinkAttempts(attempt, false); } return hopEnergy; }
+            if (receiverZL.getEnergy() >= energyRx) {
+                receiverZL.consumeEnergy(energyRx); receiverZL.incrementPacketsReceived(); hopEnergy += energyRx;
+                if (metrics != null) { metrics.logNodeEnergyConsumption(receiverZL.getId(), energyRx); metrics.logDataOperation(receiverZL.getId(), OP_RX_UPPER_CHAIN); }
+            } else { double rem = receiverZL.getEnergy(); receiverZL.consumeEnergy(rem); hopEnergy += rem; if (metrics != null) { metrics.logNodeEnergyConsumption(receiverZL.getId(), rem); metrics.logLinkAttempts(attempt, false); } return hopEnergy; }
+        }
+        if (metrics != null) metrics.logLinkAttempts(attempts, linkOutcome > 0);
+        if (linkOutcome == 0) return hopEnergy; // Dropped after the retry limit
+        this.lastUpperHopDelivered = true;
         double energyDa = PEGASISConfig.E_DA * packetSize;
         if (receiverZL.getEnergy() >= energyDa) {
             receiverZL.consumeEnergy(energyDa); hopEnergy += energyDa;
@@ -348,38 +705,81 @@ public class HALEMPegasisProtocol implements Protocol {
         return hopEnergy;
     }
 
-    private Zone.LeaderTransmissionResult transmitFromSuperLeaderToSink(SensorNode sl, BaseStation sink, MetricsCollector metrics) { /* ... same as before ... */ 
-        if (sl == null || !sl.isAlive() || sink == null) return new Zone.LeaderTransmissionResult(false, 0.0);
-        double energyConsumedBySLTx = 0.0; boolean transmissionSuccessful = false;
-        double distToSink = distance(sl, sink); int packetSize = PEGASISConfig.DATA_PACKET_SIZE_BITS;
-        double energyTxToSink = (PEGASISConfig.E_ELEC * packetSize) + (PEGASISConfig.E_AMP * packetSize * distToSink * distToSink);
-        if (sl.getEnergy() >= energyTxToSink) {
-            sl.consumeEnergy(energyTxToSink); sl.incrementPacketsSent();
-            energyConsumedBySLTx = energyTxToSink; transmissionSuccessful = true;
-            if (metrics != null) {
-                metrics.logNodeEnergyConsumption(sl.getId(), energyTxToSink);
-                metrics.logNodeEnergyConsumptionAsLeader(sl.getId(), energyTxToSink);
-                metrics.logDataOperation(sl.getId(), OP_TX_SUPER_LEADER_TO_SINK);
-            }
-            sink.receiveData(sl, packetSize, metrics);
-        } else {
-            energyConsumedBySLTx = sl.getEnergy(); sl.consumeEnergy(energyConsumedBySLTx); transmissionSuccessful = false;
-            if (metrics != null && energyConsumedBySLTx > 0) {
-                metrics.logNodeEnergyConsumption(sl.getId(), energyConsumedBySLTx);
-                metrics.logNodeEnergyConsumptionAsLeader(sl.getId(), energyConsumedBySLTx);
-                metrics.logDataOperation(sl.getId(), OP_TX_SUPER_LEADER_TO_SINK);
+    private Zone.LeaderTransmissionResult transmitFromSuperLeaderToSink(SensorNode sl, BaseStation sink, MetricsCollector metrics) {
+        return tracedTransmitToSink(sl, sink, OP_TX_SUPER_LEADER_TO_SINK, TraceRecorder.Op.SUPER_LEADER_TO_SINK, 0, metrics);
+    }
+
+    /** transmitToSink, recorded in the trace (under the given zone, 0 for none) when one is open. */
+    private Zone.LeaderTransmissionResult tracedTransmitToSink(SensorNode leader, BaseStation sink, String txOp, TraceRecorder.Op traceOp,
+                                                               int zoneId, MetricsCollector metrics) {
+        if (!trace.isEnabled() || leader == null || sink == null) return transmitToSink(leader, sink, txOp, metrics);
+        double before = leader.getEnergy();
+        int bits = leader.getPayloadBits();
+        Zone.LeaderTransmissionResult result = transmitToSink(leader, sink, txOp, metrics);
+        if (result.attempts > 0) {
+            trace.hop(traceOp, zoneId, leader.getId(), -1 - sink.getId(), bits, distance(leader, sink),
+                      before - leader.getEnergy(), 0.0, result.successful);
+        }
+        return result;
+    }
+
+    /**
+     * A zone leader or the super leader sends its fused payload to a sink, retransmitting up to
+     * the link model's retry limit. A leader that cannot afford a transmission spends what it has left.
+     */
+    private Zone.LeaderTransmissionResult transmitToSink(SensorNode leader, BaseStation sink, String txOp, MetricsCollector metrics) {
+        if (leader == null || !leader.isAlive() || sink == null) return new Zone.LeaderTransmissionResult(false, 0.0);
+        double energyConsumed = 0.0; boolean transmissionSuccessful = false;
+        double distToSink = distance(leader, sink); int packetSize = leader.getPayloadBits();
+        double energyTxToSink = EnergyKernels.txEnergy(packetSize, distToSink);
+        int linkOutcome = this.linkModel.sampleAttempts(this.linkModel.per(distToSink));
+        int attempts = this.linkModel.attemptsUsed(linkOutcome), made = 0;
+        boolean drained = false;
+        while (made < attempts && !drained) { // Each retransmission costs a full Tx; the sink's Rx is free
+            made++;
+            if (leader.getEnergy() >= energyTxToSink) {
+                leader.consumeEnergy(energyTxToSink); leader.incrementPacketsSent();
+                energyConsumed += energyTxToSink;
+                if (metrics != null) {
+                    metrics.logNodeEnergyConsumption(leader.getId(), energyTxToSink);
+                    metrics.logNodeEnergyConsumptionAsLeader(leader.getId(), energyTxToSink);
+                    metrics.logDataOperation(leader.getId(), txOp);
+                    metrics.logHopBits(packetSize);
+                }
+            } else {
+                double rem = leader.getEnergy(); leader.consumeEnergy(rem); energyConsumed += rem; drained = true;
+                if (metrics != null && rem > 0) {
+                    metrics.logNodeEnergyConsumption(leader.getId(), rem);
+                    metrics.logNodeEnergyConsumptionAsLeader(leader.getId(), rem);
+                    metrics.logDataOperation(leader.getId(), txOp);
+                }
             }
         }
-        return new Zone.LeaderTransmissionResult(transmissionSuccessful, energyConsumedBySLTx);
+        if (metrics != null) metrics.logLinkAttempts(made, !drained && linkOutcome > 0);
+        if (!drained && linkOutcome > 0) {
+            sink.receiveData(leader, packetSize, metrics);
+            transmissionSuccessful = true;
+        }
+        return new Zone.LeaderTransmissionResult(transmissionSuccessful, energyConsumed, made);
     }
 
     // --- Inner Class for Zone ---
     private static class Zone {
         final int id; List<SensorNode> nodesInZone; List<SensorNode> chain;
+        double[] chainHopDistances = new double[0]; // chainHopDistances[i] = distance(chain[i], chain[i+1])
+        double[] chainHopPer = new double[0]; // Packet error rate of each chain hop
         SensorNode zoneLeader; SensorNode backupZoneLeader; SensorNode effectiveLeaderForRound;
         final double definedCenterX, definedCenterY; double actualCenterX, actualCenterY;
+        boolean gridAligned = true; // Still exactly grid cell id - 1 (no rebalancing merge or split)
         private HALEMPegasisProtocol parentProtocol;
-        static class LeaderTransmissionResult { /* ... same ... */ boolean successful; double energyConsumed; LeaderTransmissionResult(boolean s, double e){successful=s; energyConsumed=e;} }
+        static class LeaderTransmissionResult { /* ... same ... */ boolean successful; double energyConsumed; int attempts; // Transmission slots used
+            LeaderTransmissionResult(boolean s, double e){this(s, e, 0);}
+            LeaderTransmissionResult(boolean s, double e, int a){successful=s; energyConsumed=e; attempts=a;} }
+        int lastGatherDelaySlots; // Slots the most recent gather took
+        // This round's delivery, reported to ZoneDeliveryStats
+        boolean roundActive, roundOptedUp;
+        int roundPath, roundBits;
+        private boolean lastHopDelivered;
 
         Zone(int id, double dX, double dY, HALEMPegasisProtocol p) { /* ... same ... */ 
             this.id=id; this.definedCenterX=dX; this.definedCenterY=dY; this.parentProtocol=p;
@@ -387,6 +787,26 @@ public class HALEMPegasisProtocol implements Protocol {
             this.actualCenterX=dX; this.actualCenterY=dY;
         }
         void addNode(SensorNode n) { this.nodesInZone.add(n); }
+        int aliveCount() { return (int) nodesInZone.stream().filter(SensorNode::isAlive).count(); }
+        /** Takes over the other zone's alive nodes; the other zone is discarded by the caller. */
+        void absorb(Zone other) {
+            this.gridAligned = false;
+            other.nodesInZone.stream().filter(SensorNode::isAlive).forEach(this.nodesInZone::add);
+        }
+        /** Moves the upper half of the alive nodes, along the wider extent, into a new zone centred on them. */
+        Zone splitOff(int newId) {
+            List<SensorNode> alive = nodesInZone.stream().filter(SensorNode::isAlive).collect(Collectors.toCollection(ArrayList::new));
+            double spanX = alive.stream().mapToDouble(SensorNode::getX).max().orElse(0) - alive.stream().mapToDouble(SensorNode::getX).min().orElse(0);
+            double spanY = alive.stream().mapToDouble(SensorNode::getY).max().orElse(0) - alive.stream().mapToDouble(SensorNode::getY).min().orElse(0);
+            alive.sort(Comparator.comparingDouble(spanX >= spanY ? SensorNode::getX : SensorNode::getY));
+            List<SensorNode> moved = alive.subList(alive.size() / 2, alive.size());
+            Zone half = new Zone(newId, moved.stream().mapToDouble(SensorNode::getX).average().orElse(definedCenterX),
+                                 moved.stream().mapToDouble(SensorNode::getY).average().orElse(definedCenterY), parentProtocol);
+            moved.forEach(half::addNode);
+            this.gridAligned = false; half.gridAligned = false;
+            this.nodesInZone.removeAll(new HashSet<>(half.nodesInZone));
+            return half;
+        }
         void updateActualCenter() { /* ... same ... */ 
             List<SensorNode> aliveInZone = nodesInZone.stream().filter(SensorNode::isAlive).collect(Collectors.toList());
             if (aliveInZone.isEmpty()) { this.actualCenterX=this.definedCenterX; this.actualCenterY=this.definedCenterY; return; }
@@ -394,18 +814,32 @@ public class HALEMPegasisProtocol implements Protocol {
             this.actualCenterY = aliveInZone.stream().mapToDouble(SensorNode::getY).average().orElse(this.definedCenterY);
         }
         
-        void formInternalChain(BaseStation refPt) {
+        void formInternalChain() {
             this.chain.clear();
             List<SensorNode> alive = this.nodesInZone.stream()
                                        .filter(SensorNode::isAlive)
                                        .collect(Collectors.toCollection(ArrayList::new));
             if (alive.isEmpty()) return;
 
-            SensorNode startNode = Collections.max(alive, Comparator.comparingDouble(n -> parentProtocol.distance(n, refPt)));
-            this.chain.add(startNode);
-            alive.remove(startNode);
+            if (PEGASISConfig.HALEM_CHAIN_BUILDER == PEGASISConfig.CHAIN_BUILDER_HILBERT) {
+                this.chain.addAll(HilbertChainBuilder.build(alive, parentProtocol::distanceToSink, PEGASISConfig.CHAIN_FIXUP_WINDOW));
+                alive.clear();
+            } else {
+                SensorNode startNode = Collections.max(alive, Comparator.comparingDouble(parentProtocol::distanceToSink));
+                DeploymentContext context = parentProtocol.deploymentContext;
+                if (context != null && this.gridAligned && alive.size() == this.nodesInZone.size()
+                        && context.size() == parentProtocol.allNodes.size()) {
+                    // Untouched grid zone with nobody dead: the shared chain is exactly what the scan below builds
+                    DeploymentContext.ChainPlan plan = context.zoneChain(parentProtocol.gridRows, parentProtocol.gridCols, this.id - 1, startNode.getId() - 1);
+                    this.chain.addAll(DeploymentContext.toNodes(plan.order, parentProtocol.allNodes));
+                    alive.clear();
+                } else {
+                    this.chain.add(startNode);
+                    alive.remove(startNode);
+                }
+            }
 
-            SensorNode currentChainEndLocal = startNode; // Use local var for loop
+            SensorNode currentChainEndLocal = this.chain.get(0); // Use local var for loop
             while (!alive.isEmpty()) {
                 SensorNode closest = null;
                 double minDistance = Double.MAX_VALUE;
@@ -424,6 +858,13 @@ public class HALEMPegasisProtocol implements Protocol {
                     break;
                 }
             }
+            int n = this.chain.size();
+            double[] xs = new double[n], ys = new double[n];
+            for (int i = 0; i < n; i++) { xs[i] = this.chain.get(i).getX(); ys[i] = this.chain.get(i).getY(); }
+            this.chainHopDistances = new double[Math.max(0, n - 1)];
+            EnergyKernels.hopDistances(xs, ys, n, this.chainHopDistances);
+            this.chainHopPer = new double[this.chainHopDistances.length];
+            parentProtocol.linkModel.pers(this.chainHopDistances, this.chainHopDistances.length, this.chainHopPer);
         }
 
         void selectZoneLeaders(int roundNum, MetricsCollector mets, BaseStation currentSink, Map<Integer,Integer> cooldownMap) { /* ... same, but use mets.incrementLeaderSelectionCount ... */
@@ -436,17 +877,29 @@ public class HALEMPegasisProtocol implements Protocol {
                 if (candidates.isEmpty()) return;
             }
             List<NodeScore> scoredCandidates = new ArrayList<>();
-            final double centralityRefX = this.actualCenterX; final double centralityRefY = this.actualCenterY;
-            double maxDistToRef = candidates.stream().mapToDouble(n -> parentProtocol.distance(n, centralityRefX, centralityRefY)).max().orElse(0.0);
+            int n = candidates.size();
+            double[] egy = new double[n], initEgy = new double[n], xs = new double[n], ys = new double[n];
+            double[] distToRef = new double[n], scores = new double[n];
+            for (int i = 0; i < n; i++) {
+                SensorNode cand = candidates.get(i);
+                egy[i] = cand.getEnergy(); initEgy[i] = cand.getInitialEnergy(); xs[i] = cand.getX(); ys[i] = cand.getY();
+            }
+            EnergyKernels.distancesTo(xs, ys, n, this.actualCenterX, this.actualCenterY, distToRef);
+            double maxDistToRef = 0.0;
+            for (int i = 0; i < n; i++) maxDistToRef = Math.max(maxDistToRef, distToRef[i]);
             if (maxDistToRef == 0.0 && candidates.size() > 1) maxDistToRef = 0.001;
 
-            for (SensorNode cand : candidates) {
-                double nEgy = (cand.getInitialEnergy()>0) ? (cand.getEnergy()/cand.getInitialEnergy()) : 0.0;
-                double distToRef = parentProtocol.distance(cand, centralityRefX, centralityRefY);
-                double nCent = (maxDistToRef>0) ? Math.max(0,1.0-(distToRef/maxDistToRef)) : 1.0;
-                double score = (PEGASISConfig.HALEM_LEADER_SCORE_W1_ENERGY*nEgy) + (PEGASISConfig.HALEM_LEADER_SCORE_W2_CENTRALITY*nCent);
-                scoredCandidates.add(new NodeScore(cand, score));
+            EnergyKernels.leaderScores(egy, initEgy, distToRef, n, maxDistToRef,
+                    parentProtocol.params.scoreW1Energy, parentProtocol.params.scoreW2Centrality, scores);
+            if (parentProtocol.params.scoreW3Lifetime != 0) {
+                double[] lifetime = new double[n];
+                for (int i = 0; i < n; i++) {
+                    SensorNode cand = candidates.get(i);
+                    lifetime[i] = parentProtocol.drainRates.predictedRounds(cand, parentProtocol.expectedUplinkEnergy(cand));
+                }
+                EnergyKernels.addRelativeTerm(lifetime, n, parentProtocol.params.scoreW3Lifetime, scores);
             }
+            for (int i = 0; i < n; i++) scoredCandidates.add(new NodeScore(candidates.get(i), scores[i]));
             if (scoredCandidates.isEmpty()) return;
             scoredCandidates.sort(Comparator.comparingDouble(NodeScore::getScore).reversed());
             this.zoneLeader = scoredCandidates.get(0).getNode();
@@ -461,59 +914,75 @@ public class HALEMPegasisProtocol implements Protocol {
         private static class NodeScore { /* ... same ... */ SensorNode node; double score; NodeScore(SensorNode n, double s){node=n;score=s;} SensorNode getNode(){return node;} double getScore(){return score;}}
         
         public double gatherDataToLeaderAndConsumeEnergy(MetricsCollector metrics, SensorNode designatedLeader) { /* ... same ... */ 
+            this.lastGatherDelaySlots = 0;
             if (designatedLeader==null || !designatedLeader.isAlive() || this.chain.isEmpty()) return 0.0;
+            if (PEGASISConfig.GATHERING_MODE == PEGASISConfig.GATHERING_BINARY) return gatherByBinaryCombining(metrics, designatedLeader);
             double energyConsumed = 0.0; int leaderIdx = -1;
             for(int i=0; i<this.chain.size(); i++) if(this.chain.get(i).getId() == designatedLeader.getId()) leaderIdx = i;
             if (leaderIdx == -1) { System.err.println("Zone " + this.id + " GATHER Error: Leader " + designatedLeader.getId() + " not in chain."); return 0.0;}
+            int[] hopAttempts = parentProtocol.linkModel.sampleChain(this.chainHopPer, this.chainHopDistances.length); // null if lossless
+            parentProtocol.aggregation.planChainPayloads(this.chain, leaderIdx, this.chainHopDistances, hopAttempts);
             for (int i=leaderIdx-1; i>=0; i--) {
-                energyConsumed += transmitReceiveAggregateOneHop(this.chain.get(i), this.chain.get(i+1), metrics);
+                if (this.chain.get(i).isAlive() && this.chain.get(i+1).isAlive()) this.lastGatherDelaySlots += parentProtocol.linkModel.attemptsUsed(hopAttempts == null ? 1 : hopAttempts[i]);
+                energyConsumed += transmitReceiveAggregateOneHop(this.chain.get(i), this.chain.get(i+1), this.chainHopDistances[i], hopAttempts == null ? 1 : hopAttempts[i], metrics);
                 if (!this.chain.get(i).isAlive() || !this.chain.get(i+1).isAlive()) break;
             }
             for (int i=leaderIdx+1; i<this.chain.size(); i++) {
-                energyConsumed += transmitReceiveAggregateOneHop(this.chain.get(i), this.chain.get(i-1), metrics);
+                if (this.chain.get(i).isAlive() && this.chain.get(i-1).isAlive()) this.lastGatherDelaySlots += parentProtocol.linkModel.attemptsUsed(hopAttempts == null ? 1 : hopAttempts[i-1]);
+                energyConsumed += transmitReceiveAggregateOneHop(this.chain.get(i), this.chain.get(i-1), this.chainHopDistances[i-1], hopAttempts == null ? 1 : hopAttempts[i-1], metrics);
                 if (!this.chain.get(i).isAlive() || !this.chain.get(i-1).isAlive()) break;
             }
             return energyConsumed;
         }
-        private double transmitReceiveAggregateOneHop(SensorNode s, SensorNode r, MetricsCollector mets) { /* ... same ... */ 
+        /** Binary-combining alternative to the sequential gather, over the zone chain's alive members. */
+        private double gatherByBinaryCombining(MetricsCollector metrics, SensorNode designatedLeader) {
+            List<SensorNode> alive = this.chain.stream().filter(SensorNode::isAlive).collect(Collectors.toList());
+            double[] energyConsumed = {0.0};
+            this.lastGatherDelaySlots = BinaryCombining.gather(alive, alive.indexOf(designatedLeader), parentProtocol.aggregation, parentProtocol.linkModel,
+                    (s, r, dist, linkOutcome) -> { energyConsumed[0] += transmitReceiveAggregateOneHop(s, r, dist, linkOutcome, metrics); return this.lastHopDelivered; });
+            return energyConsumed[0];
+        }
+        private double transmitReceiveAggregateOneHop(SensorNode s, SensorNode r, double dist, int linkOutcome, MetricsCollector mets) {
+            TraceRecorder trace = parentProtocol.trace;
+            if (!trace.isEnabled()) return chainHop(s, r, dist, linkOutcome, mets);
+            boolean attempted = s.isAlive() && r.isAlive();
+            double senderBefore = s.getEnergy(), receiverBefore = r.getEnergy();
+            int bits = s.getPayloadBits();
+            double hopE = chainHop(s, r, dist, linkOutcome, mets);
+            if (attempted) {
+                trace.hop(TraceRecorder.Op.CHAIN_HOP, this.id, s.getId(), r.getId(), bits, dist,
+                          senderBefore - s.getEnergy(), receiverBefore - r.getEnergy(), this.lastHopDelivered);
+            }
+            return hopE;
+        }
+        private double chainHop(SensorNode s, SensorNode r, double dist, int linkOutcome, MetricsCollector mets) { /* ... same ... */ 
+            this.lastHopDelivered = false;
             if (!s.isAlive() || !r.isAlive()) return 0.0;
-            double hopE = 0.0, dist = parentProtocol.distance(s,r), pSize = PEGASISConfig.DATA_PACKET_SIZE_BITS;
-            double eTx = (PEGASISConfig.E_ELEC*pSize) + (PEGASISConfig.E_AMP*pSize*dist*dist);
-            if(s.getEnergy()>=eTx){s.consumeEnergy(eTx);s.incrementPacketsSent();hopE+=eTx;if(mets!=null){mets.logNodeEnergyConsumption(s.getId(),eTx);mets.logDataOperation(s.getId(),OP_TX_ZONE_CHAIN);}}
-            else{double rem=s.getEnergy();s.consumeEnergy(rem);hopE+=rem;if(mets!=null)mets.logNodeEnergyConsumption(s.getId(),rem);return hopE;}
+            double hopE = 0.0; int pSize = s.getPayloadBits();
+            double eTx = EnergyKernels.txEnergy(pSize, dist);
             double eRx = PEGASISConfig.E_ELEC*pSize;
-            if(r.getEnergy()>=eRx){r.consumeEnergy(eRx);r.incrementPacketsReceived();hopE+=eRx;if(mets!=null){mets.logNodeEnergyConsumption(r.getId(),eRx);mets.logDataOperation(r.getId(),OP_RX_ZONE_CHAIN);}}
-            else{double rem=r.getEnergy();r.consumeEnergy(rem);hopE+=rem;if(mets!=null)mets.logNodeEnergyConsumption(r.getId(),rem);return hopE;}
+            int attempts = parentProtocol.linkModel.attemptsUsed(linkOutcome);
+            for (int a = 1; a <= attempts; a++) { // Each retransmission costs Tx and Rx again
+                if(s.getEnergy()>=eTx){s.consumeEnergy(eTx);s.incrementPacketsSent();hopE+=eTx;if(mets!=null){mets.logNodeEnergyConsumption(s.getId(),eTx);mets.logDataOperation(s.getId(),OP_TX_ZONE_CHAIN);mets.logHopBits(pSize);}}
+                else{double rem=s.getEnergy();s.consumeEnergy(rem);hopE+=rem;if(mets!=null){mets.logNodeEnergyConsumption(s.getId(),rem);mets.logLinkAttempts(a,false);}return hopE;}
+                if(r.getEnergy()>=eRx){r.consumeEnergy(eRx);r.incrementPacketsReceived();hopE+=eRx;if(mets!=null){mets.logNodeEnergyConsumption(r.getId(),eRx);mets.logDataOperation(r.getId(),OP_RX_ZONE_CHAIN);}}
+                else{double rem=r.getEnergy();r.consumeEnergy(rem);hopE+=rem;if(mets!=null){mets.logNodeEnergyConsumption(r.getId(),rem);mets.logLinkAttempts(a,false);}return hopE;}
+            }
+            if(mets!=null)mets.logLinkAttempts(attempts,linkOutcome>0);
+            if(linkOutcome==0)return hopE; // Dropped after the retry limit
+            this.lastHopDelivered = true;
             double eDa = PEGASISConfig.E_DA*pSize;
             if(r.getEnergy()>=eDa){r.consumeEnergy(eDa);hopE+=eDa;if(mets!=null){mets.logNodeEnergyConsumption(r.getId(),eDa);mets.logDataOperation(r.getId(),OP_AGGREGATE_ZONE);}}
             else{double rem=r.getEnergy();r.consumeEnergy(rem);hopE+=rem;if(mets!=null)mets.logNodeEnergyConsumption(r.getId(),rem);}
             return hopE;
         }
-        public LeaderTransmissionResult leaderTransmitsDataToSink(SensorNode actingLeader, BaseStation sink, MetricsCollector metrics) { /* ... same ... */ 
-             if (actingLeader == null || !actingLeader.isAlive() || sink == null) return new LeaderTransmissionResult(false, 0.0);
-            double energyConsumed = 0.0; boolean success = false;
-            double distToSink = parentProtocol.distance(actingLeader, sink);
-            int packetSize = PEGASISConfig.DATA_PACKET_SIZE_BITS;
-            double eTxToSink = (PEGASISConfig.E_ELEC*packetSize) + (PEGASISConfig.E_AMP*packetSize*distToSink*distToSink);
-            if (actingLeader.getEnergy() >= eTxToSink) {
-                actingLeader.consumeEnergy(eTxToSink); actingLeader.incrementPacketsSent();
-                energyConsumed = eTxToSink; success = true;
-                if (metrics != null) {
-                    metrics.logNodeEnergyConsumption(actingLeader.getId(), eTxToSink);
-                    metrics.logNodeEnergyConsumptionAsLeader(actingLeader.getId(), eTxToSink);
-                    metrics.logDataOperation(actingLeader.getId(), OP_TX_ZONE_LEADER_TO_SINK);
-                }
-                sink.receiveData(actingLeader, packetSize, metrics);
-            } else {
-                energyConsumed = actingLeader.getEnergy(); actingLeader.consumeEnergy(energyConsumed); success = false;
-                if (metrics != null && energyConsumed > 0) {
-                    metrics.logNodeEnergyConsumption(actingLeader.getId(), energyConsumed);
-                    metrics.logNodeEnergyConsumptionAsLeader(actingLeader.getId(), energyConsumed);
-                    metrics.logDataOperation(actingLeader.getId(), OP_TX_ZONE_LEADER_TO_SINK);
-                }
-            }
-            return new LeaderTransmissionResult(success, energyConsumed);
+        public LeaderTransmissionResult leaderTransmitsDataToSink(SensorNode actingLeader, BaseStation sink, MetricsCollector metrics) {
+            LeaderTransmissionResult result = parentProtocol.tracedTransmitToSink(actingLeader, sink, OP_TX_ZONE_LEADER_TO_SINK,
+                                                                                  TraceRecorder.Op.LEADER_TO_SINK, this.id, metrics);
+            if (result.successful) this.roundPath = ZoneDeliveryStats.PATH_DIRECT;
+            return result;
         }
+        void resetDeliveryRound() { roundActive = false; roundOptedUp = false; roundPath = ZoneDeliveryStats.PATH_NONE; roundBits = 0; }
 
         public int getId() { return id; } public List<SensorNode> getNodesInZone() { return nodesInZone; }
         public List<SensorNode> getChain() { return chain; } public SensorNode getZoneLeader() { return zoneLeader; }
@@ -0,0 +1,104 @@
+// File: HilbertChainBuilder.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Orders chain members along a Hilbert curve instead of by greedy nearest neighbour. The curve
+ * keys are computed in parallel and sorted with Arrays.parallelSort, so a build is O(n log n)
+ * and uses every core, where the greedy chain is O(n^2) and sequential. Consecutive curve
+ * cells are always adjacent, but the curve's own jumps between quadrants leave some long hops;
+ * an optional fix-up pass applies 2-opt moves between hops at most fixupWindow apart, which
+ * removes most of them at O(n * window) cost.
+ */
+final class HilbertChainBuilder {
+
+    private static final int ORDER = 15; // 2^15 x 2^15 grid over the bounding box; keys fit in 30 bits
+
+    private HilbertChainBuilder() { }
+
+    /**
+     * @param members Alive nodes to chain; not modified.
+     * @param distanceToSink Orients the chain like the greedy builder: it starts at whichever end is farther from the sink.
+     * @param fixupWindow Largest hop distance (in chain positions) the fix-up pass considers; 0 skips the pass.
+     */
+    static List<SensorNode> build(List<SensorNode> members, ToDoubleFunction<SensorNode> distanceToSink, int fixupWindow) {
+        int n = members.size();
+        SensorNode[] nodes = members.toArray(new SensorNode[0]);
+        if (n <= 2) return new ArrayList<>(Arrays.asList(nodes));
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (SensorNode node : nodes) {
+            minX = Math.min(minX, node.getX()); maxX = Math.max(maxX, node.getX());
+            minY = Math.min(minY, node.getY()); maxY = Math.max(maxY, node.getY());
+        }
+        // A square cell keeps the curve's locality isotropic on elongated boxes
+        double span = Math.max(Math.max(maxX - minX, maxY - minY), 1e-9);
+        double scale = ((1 << ORDER) - 1) / span;
+        double x0 = minX, y0 = minY;
+
+        // Curve index in the high bits, list position in the low bits: sorting the longs sorts by curve position
+        long[] keys = new long[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int cx = (int) ((nodes[i].getX() - x0) * scale);
+            int cy = (int) ((nodes[i].getY() - y0) * scale);
+            keys[i] = (hilbertIndex(cx, cy) << 32) | i;
+        });
+        Arrays.parallelSort(keys);
+
+        SensorNode[] chain = new SensorNode[n];
+        for (int i = 0; i < n; i++) chain[i] = nodes[(int) keys[i]];
+        if (fixupWindow > 0) fixUp(chain, fixupWindow);
+        if (distanceToSink.applyAsDouble(chain[n - 1]) > distanceToSink.applyAsDouble(chain[0])) reverse(chain, 0, n - 1);
+        return new ArrayList<>(Arrays.asList(chain));
+    }
+
+    /** Position of cell (x, y) along the Hilbert curve of order ORDER (the classic rotate-and-flip walk). */
+    static long hilbertIndex(int x, int y) {
+        long d = 0;
+        for (int s = 1 << (ORDER - 1); s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) { x = s - 1 - x; y = s - 1 - y; }
+                int t = x; x = y; y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * One left-to-right pass of windowed 2-opt: hops (i, i+1) and (j, j+1) with j - i <= window are
+     * replaced by (i, j) and (i+1, j+1), reversing the segment between, whenever that lowers the
+     * sum of squared hop lengths (the quantity the first-order radio model pays for).
+     */
+    private static void fixUp(SensorNode[] chain, int window) {
+        int n = chain.length;
+        for (int i = 0; i < n - 3; i++) {
+            for (int j = i + 2; j <= Math.min(i + window, n - 2); j++) {
+                double before = squared(chain[i], chain[i + 1]) + squared(chain[j], chain[j + 1]);
+                double after = squared(chain[i], chain[j]) + squared(chain[i + 1], chain[j + 1]);
+                if (after < before) reverse(chain, i + 1, j);
+            }
+        }
+    }
+
+    /** Sum of squared hop lengths (m^2), the chain's share of the transmit amplifier cost. */
+    static double chainCost(double[] hopDistances) {
+        double cost = 0;
+        for (double d : hopDistances) cost += d * d;
+        return cost;
+    }
+
+    private static double squared(SensorNode a, SensorNode b) {
+        double dx = a.getX() - b.getX(), dy = a.getY() - b.getY();
+        return dx * dx + dy * dy;
+    }
+
+    private static void reverse(SensorNode[] chain, int from, int to) {
+        for (; from < to; from++, to--) { SensorNode t = chain[from]; chain[from] = chain[to]; chain[to] = t; }
+    }
+}
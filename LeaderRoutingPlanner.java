@@ -0,0 +1,84 @@
+// File: LeaderRoutingPlanner.java
+import java.util.Arrays;
+
+/**
+ * Per-round routing decision for HALEM zone leaders under the first-order radio model.
+ * A leader either transmits straight to its nearest sink, paying E_tx(k, d_sink), or joins the
+ * upper chain, where its marginal cost is one chain hop to its nearest fellow joiner plus that
+ * neighbour's receive and aggregation energy: E_tx(k, d_nn) + E_ELEC*k + E_DA*k. The super
+ * leader's sink hop carries the fused packet and is shared, so it is not charged to any single
+ * joiner.
+ */
+final class LeaderRoutingPlanner {
+
+    private static final int MAX_DECISION_PASSES = 8;
+
+    private LeaderRoutingPlanner() { }
+
+    /**
+     * Decides which leaders join the upper chain. Starts with every leader joining and
+     * repeatedly drops (or re-adds) leaders whose marginal chain cost is not below their direct
+     * cost, since each change moves the nearest-joiner distances of the others.
+     *
+     * @return join[i] is true if leader i should relay through the upper chain.
+     */
+    static boolean[] decide(double[] xs, double[] ys, double[] sinkDist, int n, int bits) {
+        boolean[] join = new boolean[n];
+        Arrays.fill(join, true);
+        for (int pass = 0; pass < MAX_DECISION_PASSES; pass++) {
+            boolean changed = false;
+            for (int i = 0; i < n; i++) {
+                double nn = nearestJoinerDistance(xs, ys, join, n, i);
+                boolean wantsToJoin = nn < Double.MAX_VALUE && marginalJoinCost(bits, nn) < EnergyKernels.txEnergy(bits, sinkDist[i]);
+                if (wantsToJoin != join[i]) { join[i] = wantsToJoin; changed = true; }
+            }
+            if (!changed) break;
+        }
+        return join;
+    }
+
+    /** join[i] = sinkDist[i] > threshold, i.e. the static distance policy. */
+    static boolean[] thresholdPolicy(double[] sinkDist, int n, double threshold) {
+        boolean[] join = new boolean[n];
+        for (int i = 0; i < n; i++) join[i] = sinkDist[i] > threshold;
+        return join;
+    }
+
+    /**
+     * Modeled radio energy of one round's leader-to-sink traffic for a given join set.
+     * Direct leaders pay their sink hop. If enough leaders join to form an upper chain, the
+     * chain pays (m-1)/m of the summed nearest-joiner hops (a chain of m nodes has m-1 links)
+     * plus the expected super-leader sink hop, i.e. the mean over joiners since the super
+     * leader rotates among them. Otherwise joiners fall back to direct transmission.
+     */
+    static double modeledEnergy(double[] xs, double[] ys, double[] sinkDist, boolean[] join, int n, int bits, int minLeadersForChain) {
+        double direct = 0.0, links = 0.0, joinerSinkTx = 0.0;
+        int joiners = 0;
+        for (int i = 0; i < n; i++) if (join[i]) joiners++;
+        boolean chainForms = joiners >= minLeadersForChain && joiners > 0;
+        for (int i = 0; i < n; i++) {
+            double txSink = EnergyKernels.txEnergy(bits, sinkDist[i]);
+            if (!join[i] || !chainForms) { direct += txSink; continue; }
+            joinerSinkTx += txSink;
+            double nn = nearestJoinerDistance(xs, ys, join, n, i);
+            if (nn < Double.MAX_VALUE) links += marginalJoinCost(bits, nn);
+        }
+        if (!chainForms) return direct;
+        return direct + links * (joiners - 1) / joiners + joinerSinkTx / joiners;
+    }
+
+    static double marginalJoinCost(int bits, double hopDistance) {
+        return EnergyKernels.txEnergy(bits, hopDistance) + (PEGASISConfig.E_ELEC * bits) + (PEGASISConfig.E_DA * bits);
+    }
+
+    private static double nearestJoinerDistance(double[] xs, double[] ys, boolean[] join, int n, int i) {
+        double best = Double.MAX_VALUE;
+        for (int j = 0; j < n; j++) {
+            if (j == i || !join[j]) continue;
+            double dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+            double d = Math.sqrt(dx * dx + dy * dy);
+            if (d < best) best = d;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,91 @@
+// File: LinkQualityModel.java
+import java.util.Random;
+
+/**
+ * Distance-based packet error rate with stop-and-wait ARQ. PER grows from LINK_PER_FLOOR at
+ * 0 m to 1 at LINK_RANGE_M as (d / range)^LINK_PER_EXPONENT. PER values are precomputed into a
+ * table of LINK_PER_TABLE_STEP_M distance bins, so a hop lookup is one array read, and
+ * protocols keep a per-hop PER array next to their cached chain hop distances.
+ * Outcomes come from a seeded RNG owned by the model, so a run is reproducible and each
+ * protocol instance sees the same loss sequence for the same sequence of links.
+ */
+final class LinkQualityModel {
+
+    private final boolean enabled;
+    private final double range;
+    private final double tableStep;
+    private final double[] perTable;
+    private final int maxAttempts;
+    private final Random random;
+
+    LinkQualityModel(boolean enabled, double range, double exponent, double perFloor, double tableStep, int maxRetries, long seed) {
+        this.enabled = enabled;
+        this.range = Math.max(range, 1e-9);
+        this.tableStep = Math.max(tableStep, 1e-6);
+        this.maxAttempts = 1 + Math.max(0, maxRetries);
+        this.random = new Random(seed);
+        int bins = (int) Math.ceil(this.range / this.tableStep) + 1;
+        this.perTable = new double[bins];
+        double floor = Math.max(0.0, Math.min(1.0, perFloor));
+        for (int b = 0; b < bins; b++) {
+            double d = Math.min(b * this.tableStep, this.range);
+            perTable[b] = Math.min(1.0, floor + (1.0 - floor) * Math.pow(d / this.range, exponent));
+        }
+    }
+
+    static LinkQualityModel fromConfig() {
+        return new LinkQualityModel(PEGASISConfig.LINK_LOSS_ENABLED, PEGASISConfig.LINK_RANGE_M, PEGASISConfig.LINK_PER_EXPONENT,
+                                    PEGASISConfig.LINK_PER_FLOOR, PEGASISConfig.LINK_PER_TABLE_STEP_M,
+                                    PEGASISConfig.LINK_MAX_RETRIES, PEGASISConfig.LINK_RANDOM_SEED);
+    }
+
+    boolean isEnabled() { return enabled; }
+
+    /** Transmissions a sender makes before giving up on a packet (first attempt plus retries). */
+    int getMaxAttempts() { return enabled ? maxAttempts : 1; }
+
+    /** @return Packet error rate of a single transmission over d meters (0 when losses are disabled). */
+    double per(double d) {
+        if (!enabled) return 0.0;
+        if (!(d < range)) return 1.0;
+        return perTable[(int) Math.ceil(d / tableStep)]; // Rounds up to the next bin, i.e. never optimistic
+    }
+
+    /** out[i] = per(dist[i]) for i < n. */
+    void pers(double[] dist, int n, double[] out) {
+        for (int i = 0; i < n; i++) out[i] = per(dist[i]);
+    }
+
+    /**
+     * Draws one ARQ exchange over a link with the given PER.
+     * @return The attempt (1-based) on which the packet got through, or 0 if every attempt failed.
+     */
+    int sampleAttempts(double per) {
+        if (!enabled || per <= 0.0) return 1;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (random.nextDouble() >= per) return attempt;
+        }
+        return 0;
+    }
+
+    /**
+     * Draws the ARQ outcome of every hop of a chain up front, so payload planning knows which
+     * hops deliver. Returns null when losses are disabled (every hop succeeds first time).
+     */
+    int[] sampleChain(double[] hopPer, int hops) {
+        if (!enabled) return null;
+        int[] attempts = new int[Math.max(0, hops)];
+        for (int i = 0; i < attempts.length; i++) attempts[i] = sampleAttempts(hopPer[i]);
+        return attempts;
+    }
+
+    /** Mean transmissions per packet within the retry limit: 1 + per + per^2 + ... over getMaxAttempts() terms. */
+    double expectedAttempts(double per) {
+        if (!enabled || per <= 0.0) return 1.0;
+        if (per >= 1.0) return maxAttempts;
+        return (1.0 - Math.pow(per, maxAttempts)) / (1.0 - per);
+    }
+
+    /** Attempts to charge for an outcome from {@link #sampleAttempts}: a dropped packet used them all. */
+    int attemptsUsed(int outcome) { return outcome > 0 ? outcome : getMaxAttempts(); }
+}
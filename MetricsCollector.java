@@ -1,12 +1,21 @@
 // File: MetricsCollector.java
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 // import java.util.stream.Collectors; // Not strictly needed for this version
 
 public class MetricsCollector {
@@ -20,15 +29,35 @@ public class MetricsCollector {
     private int lndRound = -1;
 
     // --- Per-Round Data Logs ---
-    private final List<Integer> aliveNodesPerRoundLog = new ArrayList<>();
-    private final List<Double> totalRemainingEnergyPerRoundLog = new ArrayList<>();
-    private final List<Double> energyConsumedThisRoundLog = new ArrayList<>();
-    private final List<String> leaderIdPerRoundLog = new ArrayList<>();
-    private final List<Boolean> bsTransmissionSuccessPerRoundLog = new ArrayList<>();
+    // Per-round logs, stored compressed (see CompressedSeries); index i holds round i + 1
+    private final CompressedSeries.Longs aliveNodesPerRoundLog = new CompressedSeries.Longs();
+    private final CompressedSeries.Doubles totalRemainingEnergyPerRoundLog = new CompressedSeries.Doubles();
+    private final CompressedSeries.Doubles energyConsumedThisRoundLog = new CompressedSeries.Doubles();
+    private final CompressedSeries.Longs leaderIdPerRoundLog = new CompressedSeries.Longs(); // NO_LEADER for rounds without one
+    private final CompressedSeries.Longs bsTransmissionSuccessPerRoundLog = new CompressedSeries.Longs(); // 1 = success
+    private final CompressedSeries.Doubles routingEnergySavedPerRoundLog = new CompressedSeries.Doubles(); // Cost-based vs. threshold routing (modeled)
+    private final CompressedSeries.Longs goodputBitsPerRoundLog = new CompressedSeries.Longs();
+    private final CompressedSeries.Longs retransmissionsPerRoundLog = new CompressedSeries.Longs();
+    private final CompressedSeries.Doubles deliveryRatioPerRoundLog = new CompressedSeries.Doubles(); // Readings reaching a sink / readings generated
+    private final CompressedSeries.Longs delaySlotsPerRoundLog = new CompressedSeries.Longs(); // Slots (one packet transmission each) from first gather hop to last sink delivery
+    // Zone delivery (HALEM only; see ZoneDeliveryStats): zones with alive nodes, zones whose data reached a sink, oldest zone data
+    private final CompressedSeries.Longs zonesActivePerRoundLog = new CompressedSeries.Longs();
+    private final CompressedSeries.Longs zonesDeliveredPerRoundLog = new CompressedSeries.Longs();
+    private final CompressedSeries.Longs maxZoneAgePerRoundLog = new CompressedSeries.Longs();
+    private static final long NO_LEADER = Long.MIN_VALUE;
 
     // --- Overall Performance & Energy ---
     private long totalSuccessfulTransmissionsToBS = 0;
     private long totalDataDeliveredToBS_bits = 0;
+    private long totalHopTransmissions = 0; // Every successful radio hop, including the final one to a sink
+    private long totalBitsOnAir = 0;
+
+    // --- Link Reliability ---
+    private long linkPacketsOffered = 0, linkPacketsDelivered = 0, totalRetransmissions = 0;
+    private long readingsGenerated = 0, readingsDelivered = 0;
+    private long roundGoodputBits = 0, roundRetransmissions = 0, roundReadingsGenerated = 0, roundReadingsDelivered = 0;
+    private final Map<Integer, Long> packetsDeliveredBySink = new TreeMap<>();
+    private final Map<Integer, Long> bitsDeliveredBySink = new TreeMap<>();
     private final Map<Integer, Double> totalEnergyConsumedByNode = new HashMap<>();
     private final Map<Integer, Double> energyConsumedAsLeaderByNode = new HashMap<>();
 
@@ -39,9 +68,39 @@ public class MetricsCollector {
     // --- Computational Metrics ---
     private final List<Long> roundExecutionTimesNanos = new ArrayList<>();
     private final List<Long> chainFormationTimesNanos = new ArrayList<>();
+    private final List<Double> chainCostsLog = new ArrayList<>();
+    private long upperChainCacheLookups = 0, upperChainCacheHits = 0, upperChainCacheIncrementalHits = 0;
+    private int zoneRebalances = 0, zoneMerges = 0, zoneSplits = 0;
+    private final ZoneDeliveryStats zoneDelivery = new ZoneDeliveryStats();
+    private long zoneRebalanceNanos = 0;
+
+    // --- Resource Instrumentation (PEGASISConfig.RESOURCE_TRACKING_ENABLED) ---
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+            ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+    private final CompressedSeries.Longs allocatedBytesPerRoundLog = new CompressedSeries.Longs();
+    private final CompressedSeries.Longs gcCountPerRoundLog = new CompressedSeries.Longs();
+    private final CompressedSeries.Longs gcTimeMsPerRoundLog = new CompressedSeries.Longs();
+    private long roundStartAllocatedBytes = -1, roundStartGcCount = 0, roundStartGcTimeMs = 0;
+    private final PhaseProfiler phaseProfiler = new PhaseProfiler(PEGASISConfig.PHASE_PROFILING_ENABLED);
+    private TraceRecorder traceRecorder = TraceRecorder.DISABLED;
+
+    // --- Streaming Aggregates (folded in as each round closes, in O(window) memory) ---
+    private final int aggregationWindow;
+    private final int[] aliveRing;      // Alive count at the end of each of the last aggregationWindow rounds
+    private final double[] energyRing;  // Energy consumed in each of the last aggregationWindow rounds
+    private final DownsampledRoundSeries downsampledSeries;
+    private int roundsClosed = 0, roundAlive, roundPreviousAlive;
+    private double roundRemainingEnergy = 0.0, roundEnergyConsumed = 0.0;
+    private double cumulativeEnergy = 0.0, energyRingSum = 0.0;
+    private int deathsInWindow = 0, peakDeathsInWindow = 0, peakDeathsRound = -1;
 
     public MetricsCollector(int initialNodeCount) {
         this.initialNodeCount = initialNodeCount;
+        this.aggregationWindow = Math.max(1, PEGASISConfig.METRICS_WINDOW_ROUNDS);
+        this.aliveRing = new int[aggregationWindow];
+        this.energyRing = new double[aggregationWindow];
+        this.downsampledSeries = new DownsampledRoundSeries(PEGASISConfig.DOWNSAMPLED_SERIES_MAX_ROWS);
+        this.roundAlive = initialNodeCount; this.roundPreviousAlive = initialNodeCount;
     }
 
     public void setCurrentProtocolName(String protocolName) {
@@ -50,14 +109,57 @@ public class MetricsCollector {
 
     // --- Logging Methods ---
     public void logRoundStart(int roundNumber) { /* ... */ }
-    public void logAliveNodes(int aliveCount) { this.aliveNodesPerRoundLog.add(aliveCount); }
-    public void logTotalRemainingEnergy(double totalEnergy) { this.totalRemainingEnergyPerRoundLog.add(totalEnergy); }
-    public void logEnergyConsumedThisRound(double energyConsumed) { this.energyConsumedThisRoundLog.add(energyConsumed); }
-    public void logLeaderSelection(int leaderId) { this.leaderIdPerRoundLog.add(String.valueOf(leaderId)); }
-    public void logNoLeaderForRound() { this.leaderIdPerRoundLog.add("N/A"); }
-    public void logBSTransmissionStatus(boolean success) { this.bsTransmissionSuccessPerRoundLog.add(success); }
+    public void logAliveNodes(int aliveCount) { this.aliveNodesPerRoundLog.add(aliveCount); this.roundAlive = aliveCount; }
+    public void logTotalRemainingEnergy(double totalEnergy) { this.totalRemainingEnergyPerRoundLog.add(totalEnergy); this.roundRemainingEnergy = totalEnergy; }
+    public void logEnergyConsumedThisRound(double energyConsumed) { this.energyConsumedThisRoundLog.add(energyConsumed); this.roundEnergyConsumed = energyConsumed; }
+    public void logLeaderSelection(int leaderId) { this.leaderIdPerRoundLog.add(leaderId); }
+    public void logNoLeaderForRound() { this.leaderIdPerRoundLog.add(NO_LEADER); }
+    public void logBSTransmissionStatus(boolean success) { this.bsTransmissionSuccessPerRoundLog.add(success ? 1 : 0); }
+    public void logRoutingEnergySaved(double joules) { this.routingEnergySavedPerRoundLog.add(joules); }
     public void incrementSuccessfulTransmissionsToBS() { this.totalSuccessfulTransmissionsToBS++; }
-    public void addDataDeliveredToBS(long bits) { this.totalDataDeliveredToBS_bits += bits; }
+    public void addDataDeliveredToBS(long bits) { this.totalDataDeliveredToBS_bits += bits; this.roundGoodputBits += bits; }
+    /** One packet's ARQ exchange over a link: attemptsUsed transmissions, delivered or dropped at the retry limit. */
+    public void logLinkAttempts(int attemptsUsed, boolean delivered) {
+        this.linkPacketsOffered++;
+        if (delivered) this.linkPacketsDelivered++;
+        this.totalRetransmissions += attemptsUsed - 1; this.roundRetransmissions += attemptsUsed - 1;
+    }
+    public void addReadingsGenerated(int readings) { this.readingsGenerated += readings; this.roundReadingsGenerated += readings; }
+    public void addReadingsDelivered(int readings) { this.readingsDelivered += readings; this.roundReadingsDelivered += readings; }
+    /**
+     * Closes the current round: records its goodput, retransmission and delivery-ratio entries and
+     * folds its alive count and energy into the streaming aggregates. Call once per round, after
+     * the round's alive count and energy have been logged.
+     */
+    public void logRoundLinkStats() {
+        this.goodputBitsPerRoundLog.add(roundGoodputBits);
+        this.retransmissionsPerRoundLog.add(roundRetransmissions);
+        this.deliveryRatioPerRoundLog.add(roundReadingsGenerated == 0 ? 0.0 : (double) roundReadingsDelivered / roundReadingsGenerated);
+        roundGoodputBits = 0; roundRetransmissions = 0; roundReadingsGenerated = 0; roundReadingsDelivered = 0;
+        updateStreamingAggregates();
+    }
+
+    private void updateStreamingAggregates() {
+        int slot = roundsClosed % aggregationWindow;
+        // Before the first full window, the oldest reference point is the initial deployment
+        int aliveWindowAgo = roundsClosed >= aggregationWindow ? aliveRing[slot] : initialNodeCount;
+        roundsClosed++;
+        cumulativeEnergy += roundEnergyConsumed;
+        energyRingSum += roundEnergyConsumed - energyRing[slot];
+        energyRing[slot] = roundEnergyConsumed;
+        aliveRing[slot] = roundAlive;
+        deathsInWindow = Math.max(0, aliveWindowAgo - roundAlive);
+        if (deathsInWindow > peakDeathsInWindow) { peakDeathsInWindow = deathsInWindow; peakDeathsRound = roundsClosed; }
+        downsampledSeries.add(roundsClosed, roundAlive, roundRemainingEnergy, roundEnergyConsumed, cumulativeEnergy,
+                              Math.max(0, roundPreviousAlive - roundAlive), deathsInWindow, getRollingEnergyAverage());
+        roundPreviousAlive = roundAlive;
+    }
+    public void logRoundDelay(int slots) { this.delaySlotsPerRoundLog.add(slots); }
+    public void logHopBits(int bits) { this.totalHopTransmissions++; this.totalBitsOnAir += bits; }
+    public void logSinkDelivery(int sinkId, long bits) {
+        this.packetsDeliveredBySink.merge(sinkId, 1L, Long::sum);
+        this.bitsDeliveredBySink.merge(sinkId, bits, Long::sum);
+    }
     public void logNodeEnergyConsumption(int nodeId, double energySpent) { this.totalEnergyConsumedByNode.merge(nodeId, energySpent, Double::sum); }
     public void logNodeEnergyConsumptionAsLeader(int nodeId, double energySpent) { this.energyConsumedAsLeaderByNode.merge(nodeId, energySpent, Double::sum); }
     public void incrementLeaderSelectionCount(int nodeId) { this.leaderSelectionCounts.merge(nodeId, 1, Integer::sum); }
@@ -66,11 +168,89 @@ public class MetricsCollector {
                                   .merge(actionType, 1L, Long::sum);
     }
     public void addRoundExecutionTime(long nanos) { this.roundExecutionTimesNanos.add(nanos); }
+
+    /** Per-phase round timer the protocols report into. */
+    PhaseProfiler getPhaseProfiler() { return phaseProfiler; }
+
+    /** Per-hop trace the protocols report into; DISABLED unless the runner opened one for this run. */
+    TraceRecorder getTraceRecorder() { return traceRecorder; }
+    void setTraceRecorder(TraceRecorder recorder) { this.traceRecorder = recorder; }
+
+    /** Samples the allocation and GC counters as a round starts; a no-op unless RESOURCE_TRACKING_ENABLED. */
+    public void beginRoundResourceSample() {
+        if (!PEGASISConfig.RESOURCE_TRACKING_ENABLED || THREAD_BEAN == null || !THREAD_BEAN.isThreadAllocatedMemoryEnabled()) return;
+        roundStartGcCount = 0; roundStartGcTimeMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            roundStartGcCount += Math.max(0, gc.getCollectionCount());
+            roundStartGcTimeMs += Math.max(0, gc.getCollectionTime());
+        }
+        roundStartAllocatedBytes = THREAD_BEAN.getCurrentThreadAllocatedBytes(); // Last, so the GC bean lookups are not counted
+    }
+
+    /** Logs the bytes this thread allocated and the collections that ran since beginRoundResourceSample(). */
+    public void endRoundResourceSample() {
+        if (roundStartAllocatedBytes < 0) return;
+        long allocated = THREAD_BEAN.getCurrentThreadAllocatedBytes() - roundStartAllocatedBytes;
+        long gcCount = 0, gcTimeMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTimeMs += Math.max(0, gc.getCollectionTime());
+        }
+        allocatedBytesPerRoundLog.add(allocated);
+        gcCountPerRoundLog.add(gcCount - roundStartGcCount);
+        gcTimeMsPerRoundLog.add(gcTimeMs - roundStartGcTimeMs);
+        roundStartAllocatedBytes = -1;
+    }
+
+    /** @return Mean bytes allocated per instrumented round, or -1 if no round was instrumented. */
+    public double getAverageAllocatedBytesPerRound() {
+        return allocatedBytesPerRoundLog.isEmpty() ? -1 : allocatedBytesPerRoundLog.stream().average().orElse(0);
+    }
+
+    /** @return GC time per 1000 instrumented rounds (ms), or -1 if no round was instrumented. */
+    public double getGcMsPer1kRounds() {
+        return gcTimeMsPerRoundLog.isEmpty() ? -1 : gcTimeMsPerRoundLog.stream().sum() * 1000.0 / gcTimeMsPerRoundLog.size();
+    }
+
+    /** @return Collections per 1000 instrumented rounds, or -1 if no round was instrumented. */
+    public double getGcCountPer1kRounds() {
+        return gcCountPerRoundLog.isEmpty() ? -1 : gcCountPerRoundLog.stream().sum() * 1000.0 / gcCountPerRoundLog.size();
+    }
     public void addChainFormationTime(long nanos) { this.chainFormationTimesNanos.add(nanos); }
+    /** Records a formed chain's cost: the sum of squared hop lengths (m^2) over all of the protocol's chains. */
+    public void addChainCost(double sumSquaredHopsM2) { this.chainCostsLog.add(sumSquaredHopsM2); }
+    /** @return Mean cost over all chain formations (m^2), or -1 if no chain was formed. */
+    public double getAverageChainCost() {
+        return chainCostsLog.isEmpty() ? -1 : chainCostsLog.stream().mapToDouble(d -> d).average().orElse(0);
+    }
+    public void logUpperChainCacheLookup(int outcome) {
+        this.upperChainCacheLookups++;
+        if (outcome == UpperChainCache.HIT) this.upperChainCacheHits++;
+        else if (outcome == UpperChainCache.INCREMENTAL) this.upperChainCacheIncrementalHits++;
+    }
+    /** @return Fraction of upper-chain lookups served from the cache (exact or patched), or -1 if none were made. */
+    public double getUpperChainCacheHitRate() {
+        return upperChainCacheLookups == 0 ? -1.0 : (double) (upperChainCacheHits + upperChainCacheIncrementalHits) / upperChainCacheLookups;
+    }
+    /** Records one HALEM rebalancing stage that changed the zoning (see HALEM_REBALANCE_ENABLED). */
+    public void logZoneRebalance(long nanos, int merges, int splits) {
+        this.zoneRebalances++; this.zoneMerges += merges; this.zoneSplits += splits; this.zoneRebalanceNanos += nanos;
+    }
+    public int getZoneRebalanceCount() { return zoneRebalances; }
+    /** One active zone's outcome this round: path is a ZoneDeliveryStats.PATH_* constant. */
+    public void logZoneDelivery(int zoneId, int round, int path, long bits) { this.zoneDelivery.log(zoneId, round, path, bits); }
+    /** Closes the round's zone reports (called every round by zoned protocols, even with no active zones). */
+    public void endZoneDeliveryRound() {
+        this.zonesActivePerRoundLog.add(zoneDelivery.getRoundActive());
+        this.zonesDeliveredPerRoundLog.add(zoneDelivery.getRoundDelivered());
+        this.maxZoneAgePerRoundLog.add(zoneDelivery.getRoundMaxAge());
+        this.zoneDelivery.startRound();
+    }
+    public double getZoneRebalanceTimeMs() { return zoneRebalanceNanos / 1e6; }
     public void setFndRound(int round) { if (this.fndRound == -1) this.fndRound = round; }
     public void setHndRound(int round) { 
         if (this.hndRound == -1) {
-            int currentAlive = aliveNodesPerRoundLog.isEmpty() ? initialNodeCount : aliveNodesPerRoundLog.get(aliveNodesPerRoundLog.size()-1);
+            int currentAlive = aliveNodesPerRoundLog.isEmpty() ? initialNodeCount : (int) aliveNodesPerRoundLog.getLast();
             if (currentAlive <= initialNodeCount / 2.0) {
                 this.hndRound = round;
             }
@@ -81,6 +261,25 @@ public class MetricsCollector {
     public int getFndRound() { return fndRound; }
     public int getHndRound() { return hndRound; }
     public int getLndRound() { return lndRound; }
+    public long getTotalDataDeliveredToBS_bits() { return totalDataDeliveredToBS_bits; }
+    public long getTotalBitsOnAir() { return totalBitsOnAir; }
+    public long getTotalRetransmissions() { return totalRetransmissions; }
+    public double getHopDeliveryRatio() { return linkPacketsOffered == 0 ? 0.0 : (double) linkPacketsDelivered / linkPacketsOffered; }
+    public double getEndToEndDeliveryRatio() { return readingsGenerated == 0 ? 0.0 : (double) readingsDelivered / readingsGenerated; }
+    public double getCumulativeEnergy() { return cumulativeEnergy; }
+    /** @return Nodes that died in the last METRICS_WINDOW_ROUNDS rounds. */
+    public int getDeathsInWindow() { return deathsInWindow; }
+    /** @return Mean energy per round over the last METRICS_WINDOW_ROUNDS rounds (fewer at the start of a run). */
+    public double getRollingEnergyAverage() { return roundsClosed == 0 ? 0.0 : energyRingSum / Math.min(roundsClosed, aggregationWindow); }
+    public double getAverageRoundDelaySlots() { return delaySlotsPerRoundLog.stream().average().orElse(0.0); }
+    /** @return Mean over rounds of that round's energy (J) times its delay (slots). */
+    public double getAverageEnergyDelayProduct() {
+        int n = Math.min(delaySlotsPerRoundLog.size(), energyConsumedThisRoundLog.size());
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) sum += energyConsumedThisRoundLog.get(i) * delaySlotsPerRoundLog.get(i);
+        return n == 0 ? 0.0 : sum / n;
+    }
+    public double getAverageBitsPerHop() { return totalHopTransmissions == 0 ? 0.0 : (double) totalBitsOnAir / totalHopTransmissions; }
 
     public void printSummary(int totalRoundsSimulated) {
         System.out.println(); // Extra line for spacing
@@ -93,7 +292,11 @@ public class MetricsCollector {
         System.out.println("  HND (Half Nodes Died) at Round: " + (hndRound == -1 ? "N/A" : hndRound));
         System.out.println("  LND (Last Node Died) at Round:  " + (lndRound == -1 ? "N/A" : lndRound));
         if (!aliveNodesPerRoundLog.isEmpty()) {
-             System.out.println("  Nodes alive at end: " + aliveNodesPerRoundLog.get(aliveNodesPerRoundLog.size()-1) + "/" + initialNodeCount);
+             System.out.println("  Nodes alive at end: " + aliveNodesPerRoundLog.getLast() + "/" + initialNodeCount);
+        }
+        if (peakDeathsRound != -1) {
+            System.out.println("  Peak Death Rate: " + peakDeathsInWindow + " nodes in the " + aggregationWindow +
+                               " rounds ending at round " + peakDeathsRound);
         }
 
         System.out.println();
@@ -101,18 +304,56 @@ public class MetricsCollector {
         System.out.println("  Total Successful Transmissions to BS: " + totalSuccessfulTransmissionsToBS);
         System.out.println("  Total Data Delivered to BS: " + totalDataDeliveredToBS_bits + " bits (" +
                            String.format("%.2f", totalDataDeliveredToBS_bits / 8.0 / 1024.0) + " KB)");
+        if (bitsDeliveredBySink.size() > 1) {
+            System.out.println("  Per-Sink Deliveries (SinkID: Packets / Bits):");
+            bitsDeliveredBySink.forEach((sinkId, bits) ->
+                System.out.println("    Sink " + sinkId + ": " + packetsDeliveredBySink.getOrDefault(sinkId, 0L) + " / " + bits));
+        }
+        if (totalRoundsSimulated > 0) {
+            System.out.println("  Average Goodput: " + String.format("%.1f", totalDataDeliveredToBS_bits / (double) totalRoundsSimulated) + " bits/round");
+        }
+        System.out.println("  Readings Delivered (End-to-End): " + readingsDelivered + "/" + readingsGenerated +
+                           " (" + String.format("%.2f", getEndToEndDeliveryRatio() * 100) + "%)");
+        System.out.println("  Hop Delivery Ratio: " + String.format("%.2f", getHopDeliveryRatio() * 100) + "% of " + linkPacketsOffered +
+                           " packets, " + totalRetransmissions + " retransmissions");
 
         System.out.println();
         System.out.println("[Energy Efficiency]");
         double totalSystemEnergyConsumed = totalEnergyConsumedByNode.values().stream().mapToDouble(d -> d).sum();
         System.out.println("  Total Energy Consumed by All Nodes: " + String.format("%.4f", totalSystemEnergyConsumed) + " J");
         if (totalRoundsSimulated > 0 && !energyConsumedThisRoundLog.isEmpty()) {
-            double avgEnergyPerRoundOverall = energyConsumedThisRoundLog.stream().mapToDouble(d->d).average().orElse(0.0);
+            double avgEnergyPerRoundOverall = energyConsumedThisRoundLog.stream().average().orElse(0.0);
              System.out.println("  Average Energy Consumption per Round (Network-wide): " + String.format("%.6f", avgEnergyPerRoundOverall) + " J");
         } else if (totalRoundsSimulated > 0) {
             System.out.println("  Average Energy Consumption per Round (Network-wide): " + String.format("%.6f", totalSystemEnergyConsumed / totalRoundsSimulated) + " J");
         }
+        if (roundsClosed > 0) {
+            System.out.println("  Rolling Energy per Round (last " + Math.min(roundsClosed, aggregationWindow) + " rounds): " +
+                               String.format("%.6f", getRollingEnergyAverage()) + " J");
+        }
+        if (totalHopTransmissions > 0) {
+            System.out.println("  Aggregation (" + AggregationModel.fromConfig().getName() + "): " +
+                               String.format("%.1f", getAverageBitsPerHop()) + " bits/hop over " + totalHopTransmissions + " hops, " +
+                               totalBitsOnAir + " bits on air");
+        }
+        if (totalSystemEnergyConsumed > 0) {
+            System.out.println("  Goodput per Joule: " + String.format("%.2f", totalDataDeliveredToBS_bits / totalSystemEnergyConsumed) + " bits/J");
+        }
         
+        if (!routingEnergySavedPerRoundLog.isEmpty() && PEGASISConfig.HALEM_ROUTING_MODE == PEGASISConfig.HALEM_ROUTING_COST) {
+            double totalSaved = routingEnergySavedPerRoundLog.stream().sum();
+            System.out.println("  Cost-Based Routing Energy Saved vs. Threshold (modeled): " + String.format("%.6f", totalSaved) + " J total, " +
+                               String.format("%.8f", totalSaved / routingEnergySavedPerRoundLog.size()) + " J/round");
+        }
+
+        if (!delaySlotsPerRoundLog.isEmpty()) {
+            System.out.println();
+            System.out.println("[Latency]");
+            System.out.println("  Average Round Delay: " + String.format("%.2f", getAverageRoundDelaySlots()) + " slots (max " +
+                               delaySlotsPerRoundLog.stream().max().orElse(0) + ")");
+            System.out.println("  Average Energy x Delay: " + String.format("%.6f", getAverageEnergyDelayProduct()) + " J*slots per round");
+        }
+
         System.out.println();
         System.out.println("[Fairness & Load Balancing]");
         System.out.println("  Leader Selection Counts (NodeID: Times):");
@@ -126,28 +367,86 @@ public class MetricsCollector {
              System.out.println("  Average Chain Formation Time: " +
                                 String.format("%.2f", chainFormationTimesNanos.stream().mapToLong(l->l).average().orElse(0) / 1_000_000.0) + " ms");
         }
+        if (!chainCostsLog.isEmpty()) {
+            System.out.println("  Average Chain Cost (sum of squared hops): " + String.format("%.1f", getAverageChainCost()) + " m^2");
+        }
+        if (zoneRebalances > 0) {
+            System.out.println("  Zone Rebalances: " + zoneRebalances + " (" + zoneMerges + " merges, " + zoneSplits + " splits), " +
+                               String.format("%.2f", getZoneRebalanceTimeMs()) + " ms total");
+        }
+        if (!zoneDelivery.isEmpty()) {
+            int worst = zoneDelivery.worstZone();
+            System.out.println("  Zone Delivery Ratio: " + String.format("%.2f", zoneDelivery.meanDeliveryRatio() * 100) + "% mean over " +
+                               zoneDelivery.zoneCount() + " zones, lowest " + String.format("%.2f", zoneDelivery.deliveryRatio(worst) * 100) +
+                               "% (zone " + worst + ")");
+            System.out.println("  Zone Data Age: " + String.format("%.2f", zoneDelivery.meanAge()) + " rounds mean, " +
+                               zoneDelivery.maxAge() + " max");
+        }
+        if (upperChainCacheLookups > 0) {
+            System.out.println("  Upper Chain Cache Hit Rate: " + String.format("%.1f", getUpperChainCacheHitRate() * 100) + "% (" +
+                               upperChainCacheHits + " exact, " + upperChainCacheIncrementalHits + " incremental, " +
+                               (upperChainCacheLookups - upperChainCacheHits - upperChainCacheIncrementalHits) + " rebuilt)");
+        }
+        if (!aliveNodesPerRoundLog.isEmpty()) {
+            System.out.println("  Round Log Storage: " + String.format("%.1f", getRoundLogStorageBytes() / 1024.0) + " KB compressed (" +
+                               String.format("%.1f", getRoundLogValueCount() * 8 / 1024.0) + " KB as 8-byte values)");
+        }
         if (!roundExecutionTimesNanos.isEmpty()) {
             double avgRoundTimeMs = roundExecutionTimesNanos.stream().mapToLong(l->l).average().orElse(0) / 1_000_000.0;
             System.out.println("  Average Execution Time per Round: " + String.format("%.2f", avgRoundTimeMs) + " ms");
         }
+        if (!allocatedBytesPerRoundLog.isEmpty()) {
+            System.out.println("  Allocated per Round: " + String.format("%.1f", getAverageAllocatedBytesPerRound() / 1024.0) + " KB avg (max " +
+                               String.format("%.1f", allocatedBytesPerRoundLog.stream().max().orElse(0) / 1024.0) + " KB)");
+            System.out.println("  GC: " + gcCountPerRoundLog.stream().sum() + " collections, " +
+                               gcTimeMsPerRoundLog.stream().sum() + " ms (" +
+                               String.format("%.2f", getGcMsPer1kRounds()) + " ms per 1k rounds)");
+        }
+        if (phaseProfiler.getRounds() > 0) {
+            long totalNanos = phaseProfiler.getTotalNanos();
+            System.out.println();
+            System.out.println("[Phase Breakdown] (" + phaseProfiler.getRounds() + " rounds)");
+            System.out.printf("  %-24s %12s %12s %8s%n", "Phase", "Total ms", "us/round", "Share");
+            for (PhaseProfiler.Phase phase : PhaseProfiler.phases()) {
+                long nanos = phaseProfiler.getNanos(phase);
+                if (nanos == 0) continue;
+                System.out.printf("  %-24s %12.2f %12.2f %7.1f%%%n", phase.label, nanos / 1e6,
+                                  nanos / 1e3 / phaseProfiler.getRounds(), totalNanos > 0 ? 100.0 * nanos / totalNanos : 0.0);
+            }
+        }
         System.out.println("--- End of Summary for " + this.currentProtocolName + " ---");
     }
 
     public void exportRoundByRoundDataToCSV(String filename) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("Protocol,Round,AliveNodes,TotalRemainingEnergy,EnergyConsumedThisRound,LeaderID,BSTransmissionSuccess");
+            writer.println("Protocol,Round,AliveNodes,TotalRemainingEnergy,EnergyConsumedThisRound,LeaderID,BSTransmissionSuccess,RoutingEnergySaved_J," +
+                           "GoodputBits,Retransmissions,DeliveryRatio,DelaySlots,EnergyDelayProduct,AllocatedBytes,GcCount,GcTimeMs," +
+                           "ZonesActive,ZonesDelivered,MaxZoneAge");
 
             int numRoundsLogged = aliveNodesPerRoundLog.size();
             for (int i = 0; i < numRoundsLogged; i++) {
                 // Using printf with %n for platform-specific newline
-                writer.printf("%s,%d,%d,%.4f,%.6f,%s,%b%n", // Changed \n to %n
+                long delaySlots = getLoggedValue(delaySlotsPerRoundLog, i, 0);
+                writer.printf("%s,%d,%d,%.4f,%.6f,%s,%b,%.8f,%d,%d,%.4f,%d,%.8f,%s,%s,%s,%s,%s,%s%n", // Changed \n to %n
                         this.currentProtocolName,
                         (i + 1), 
                         getLoggedValue(aliveNodesPerRoundLog, i, 0),
                         getLoggedValue(totalRemainingEnergyPerRoundLog, i, 0.0),
                         getLoggedValue(energyConsumedThisRoundLog, i, 0.0),
-                        getLoggedValue(leaderIdPerRoundLog, i, "N/A"),
-                        getLoggedValue(bsTransmissionSuccessPerRoundLog, i, false)
+                        getLoggedValue(leaderIdPerRoundLog, i, NO_LEADER) == NO_LEADER ? "N/A" : String.valueOf(leaderIdPerRoundLog.get(i)),
+                        getLoggedValue(bsTransmissionSuccessPerRoundLog, i, 0) != 0,
+                        getLoggedValue(routingEnergySavedPerRoundLog, i, 0.0),
+                        getLoggedValue(goodputBitsPerRoundLog, i, 0),
+                        getLoggedValue(retransmissionsPerRoundLog, i, 0),
+                        getLoggedValue(deliveryRatioPerRoundLog, i, 0.0),
+                        delaySlots,
+                        getLoggedValue(energyConsumedThisRoundLog, i, 0.0) * delaySlots,
+                        loggedOrNA(allocatedBytesPerRoundLog, i),
+                        loggedOrNA(gcCountPerRoundLog, i),
+                        loggedOrNA(gcTimeMsPerRoundLog, i),
+                        loggedOrNA(zonesActivePerRoundLog, i),
+                        loggedOrNA(zonesDeliveredPerRoundLog, i),
+                        loggedOrNA(maxZoneAgePerRoundLog, i)
                 );
             }
             System.out.println("SUCCESS: Round-by-round data for " + this.currentProtocolName + " exported to " + filename);
@@ -156,22 +455,116 @@ public class MetricsCollector {
         }
     }
 
+    static final String SUMMARY_CSV_HEADER = "ProtocolName,TotalRoundsSimulated,FND_Round,HND_Round,LND_Round," +
+            "TotalSuccessfulTransmissionsToBS,TotalDataDeliveredToBS_bits," +
+            "TotalEnergyConsumed_AllNodes_J,AvgEnergyPerRound_J,AvgRoundExecTime_ms," +
+            "AvgChainFormationTime_ms,AvgChainCost_m2,PerSinkPackets,PerSinkBits,TotalRoutingEnergySaved_J,UpperChainCacheHitRate," +
+            "AvgBitsPerHop,GoodputBitsPerJoule,TotalRetransmissions,HopDeliveryRatio,EndToEndDeliveryRatio," +
+            "AvgRoundDelaySlots,AvgEnergyDelayProduct,AvgAllocatedBytesPerRound,GcCountPer1kRounds,GcMsPer1kRounds," +
+            "ZoneRebalances,ZoneMerges,ZoneSplits,ZoneRebalanceTime_ms," +
+            "MeanZoneDeliveryRatio,MinZoneDeliveryRatio,MeanZoneAge,MaxZoneAge" +
+            phaseColumns();
+
+    /** One total-milliseconds column per PhaseProfiler phase. */
+    private static String phaseColumns() {
+        StringBuilder sb = new StringBuilder();
+        for (PhaseProfiler.Phase phase : PhaseProfiler.phases()) sb.append(",Phase").append(phase.label).append("Ms");
+        return sb.toString();
+    }
+
+    /** Writes the bounded-size min-max series (see DownsampledRoundSeries) for fast plotting. */
+    public void exportDownsampledSeriesToCSV(String filename) {
+        try {
+            downsampledSeries.exportToCSV(this.currentProtocolName, filename);
+            System.out.println("SUCCESS: Downsampled series for " + this.currentProtocolName + " (" + downsampledSeries.size() + " rows, " +
+                               downsampledSeries.getBucketWidth() + " rounds each) exported to " + filename);
+        } catch (IOException e) {
+            System.err.println("ERROR: Writing downsampled CSV for " + this.currentProtocolName + " to " + filename + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes one row per zone (see ZoneDeliveryStats) for protocols that report zones.
+     * @return Whether a file was written.
+     */
+    public boolean exportZoneDeliveryToCSV(String filename) {
+        if (zoneDelivery.isEmpty()) return false;
+        try {
+            zoneDelivery.exportToCSV(this.currentProtocolName, filename);
+            System.out.println("SUCCESS: Zone delivery data for " + this.currentProtocolName + " (" + zoneDelivery.zoneCount() +
+                               " zones) exported to " + filename);
+            return true;
+        } catch (IOException e) {
+            System.err.println("ERROR: Writing zone delivery CSV for " + this.currentProtocolName + " to " + filename + ": " + e.getMessage());
+            return false;
+        }
+    }
+
     public void appendSummaryDataToCSV(String filename, int totalRoundsSimulated) {
         File summaryFile = new File(filename);
-        boolean writeHeader = !summaryFile.exists() || summaryFile.length() == 0;
 
+        try {
+            appendSummaryRow(summaryFile, formatSummaryCsvRow(totalRoundsSimulated));
+            System.out.println("SUCCESS: Summary data for " + this.currentProtocolName + " appended to " + filename);
+        } catch (IOException e) {
+            System.err.println("ERROR: Appending summary CSV for " + this.currentProtocolName + " to " + filename + ": " + e.getMessage());
+        }
+    }
+
+    /** Static and synchronized because concurrent runs (SimulationDaemon) may share one summary file. */
+    private static synchronized void appendSummaryRow(File summaryFile, String row) throws IOException {
+        boolean writeHeader = !summaryFile.exists() || summaryFile.length() == 0 || rotateIfHeaderDiffers(summaryFile);
         try (PrintWriter writer = new PrintWriter(new FileWriter(summaryFile, true))) {
-            if (writeHeader) {
-                writer.println("ProtocolName,TotalRoundsSimulated,FND_Round,HND_Round,LND_Round," +
-                               "TotalSuccessfulTransmissionsToBS,TotalDataDeliveredToBS_bits," +
-                               "TotalEnergyConsumed_AllNodes_J,AvgEnergyPerRound_J,AvgRoundExecTime_ms," +
-                               "AvgChainFormationTime_ms");
-            }
+            if (writeHeader) writer.println(SUMMARY_CSV_HEADER);
+            writer.println(row);
+        }
+    }
+
+    /**
+     * Moves an existing summary file aside (to name_old1.csv, name_old2.csv, ...) if its header is
+     * not SUMMARY_CSV_HEADER, e.g. one written before columns were added, so new rows never land
+     * under the wrong columns.
+     * @return Whether the file was moved (and a new one with a header is needed).
+     */
+    private static boolean rotateIfHeaderDiffers(File summaryFile) throws IOException {
+        String header;
+        try (BufferedReader reader = new BufferedReader(new FileReader(summaryFile))) {
+            header = reader.readLine();
+        }
+        if (SUMMARY_CSV_HEADER.equals(header)) return false;
+        String name = summaryFile.getName();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name, extension = dot > 0 ? name.substring(dot) : "";
+        File rotated;
+        int n = 1;
+        do {
+            rotated = new File(summaryFile.getParentFile(), stem + "_old" + n++ + extension);
+        } while (rotated.exists());
+        Files.move(summaryFile.toPath(), rotated.toPath());
+        System.out.println("Summary file " + summaryFile.getPath() + " has different columns; moved it to " + rotated.getPath() + ".");
+        return true;
+    }
 
+    /** Summary CSV columns mapped to this run's values, in column order (the metrics of a ResultsStore record). */
+    public Map<String, String> getSummaryValues(int totalRoundsSimulated) {
+        String[] columns = SUMMARY_CSV_HEADER.split(",");
+        String[] values = formatSummaryCsvRow(totalRoundsSimulated).split(",", -1);
+        Map<String, String> summary = new LinkedHashMap<>();
+        for (int i = 0; i < columns.length && i < values.length; i++) summary.put(columns[i], values[i]);
+        return summary;
+    }
+
+    private String formatSummaryCsvRow(int totalRoundsSimulated) {
+        StringWriter row = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(row)) {
+            StringBuilder phaseValues = new StringBuilder();
+            for (PhaseProfiler.Phase phase : PhaseProfiler.phases()) {
+                phaseValues.append(',').append(phaseProfiler.getRounds() == 0 ? "N/A" : String.format("%.3f", phaseProfiler.getNanos(phase) / 1e6));
+            }
             double totalSystemEnergyConsumed = totalEnergyConsumedByNode.values().stream().mapToDouble(d -> d).sum();
             double avgEnergyPerRoundOverall;
             if (totalRoundsSimulated > 0 && !energyConsumedThisRoundLog.isEmpty() && energyConsumedThisRoundLog.size() >= totalRoundsSimulated) { // Check size also
-                 avgEnergyPerRoundOverall = energyConsumedThisRoundLog.stream().mapToDouble(d->d).average().orElse(0.0);
+                 avgEnergyPerRoundOverall = energyConsumedThisRoundLog.stream().average().orElse(0.0);
             } else if (totalRoundsSimulated > 0) {
                 avgEnergyPerRoundOverall = totalSystemEnergyConsumed / totalRoundsSimulated;
             } else { avgEnergyPerRoundOverall = 0.0; }
@@ -179,8 +572,9 @@ public class MetricsCollector {
             double avgRoundExecTimeMs = roundExecutionTimesNanos.stream().mapToLong(l->l).average().orElse(0) / 1_000_000.0;
             double avgChainFormationTimeMs = chainFormationTimesNanos.stream().mapToLong(l->l).average().orElse(0) / 1_000_000.0;
 
-            // Using printf with %n for platform-specific newline
-            writer.printf("%s,%d,%s,%s,%s,%d,%d,%.4f,%.6f,%.2f,%.2f%n", // Changed \n to %n
+            double totalRoutingEnergySaved = routingEnergySavedPerRoundLog.stream().sum();
+
+            writer.printf("%s,%d,%s,%s,%s,%d,%d,%.4f,%.6f,%.2f,%.2f,%s,%s,%s,%.6f,%s,%.2f,%.4f,%d,%.4f,%.4f,%.2f,%.8f,%s,%s,%s,%d,%d,%d,%.3f,%s,%s,%s,%s",
                     this.currentProtocolName,
                     totalRoundsSimulated,
                     fndRound == -1 ? "N/A" : String.valueOf(fndRound),
@@ -191,23 +585,87 @@ public class MetricsCollector {
                     totalSystemEnergyConsumed,
                     avgEnergyPerRoundOverall,
                     avgRoundExecTimeMs,
-                    avgChainFormationTimeMs
+                    avgChainFormationTimeMs,
+                    chainCostsLog.isEmpty() ? "N/A" : String.format("%.1f", getAverageChainCost()),
+                    formatPerSink(packetsDeliveredBySink),
+                    formatPerSink(bitsDeliveredBySink),
+                    totalRoutingEnergySaved,
+                    upperChainCacheLookups == 0 ? "N/A" : String.format("%.4f", getUpperChainCacheHitRate()),
+                    getAverageBitsPerHop(),
+                    totalSystemEnergyConsumed > 0 ? totalDataDeliveredToBS_bits / totalSystemEnergyConsumed : 0.0,
+                    totalRetransmissions,
+                    getHopDeliveryRatio(),
+                    getEndToEndDeliveryRatio(),
+                    getAverageRoundDelaySlots(),
+                    getAverageEnergyDelayProduct(),
+                    allocatedBytesPerRoundLog.isEmpty() ? "N/A" : String.format("%.0f", getAverageAllocatedBytesPerRound()),
+                    gcCountPerRoundLog.isEmpty() ? "N/A" : String.format("%.2f", getGcCountPer1kRounds()),
+                    gcTimeMsPerRoundLog.isEmpty() ? "N/A" : String.format("%.2f", getGcMsPer1kRounds()),
+                    zoneRebalances, zoneMerges, zoneSplits, getZoneRebalanceTimeMs(),
+                    zoneDelivery.isEmpty() ? "N/A" : String.format("%.4f", zoneDelivery.meanDeliveryRatio()),
+                    zoneDelivery.isEmpty() ? "N/A" : String.format("%.4f", zoneDelivery.deliveryRatio(zoneDelivery.worstZone())),
+                    zoneDelivery.isEmpty() ? "N/A" : String.format("%.2f", zoneDelivery.meanAge()),
+                    zoneDelivery.isEmpty() ? "N/A" : String.valueOf(zoneDelivery.maxAge())
             );
-            System.out.println("SUCCESS: Summary data for " + this.currentProtocolName + " appended to " + filename);
-        } catch (IOException e) {
-            System.err.println("ERROR: Appending summary CSV for " + this.currentProtocolName + " to " + filename + ": " + e.getMessage());
+            writer.print(phaseValues);
         }
+        return row.toString();
+    }
+
+    /** Per-sink counters as "sinkId:value" pairs joined by ';' so they fit in one CSV column. */
+    private static String formatPerSink(Map<Integer, Long> perSink) {
+        if (perSink.isEmpty()) return "N/A";
+        StringBuilder sb = new StringBuilder();
+        perSink.forEach((sinkId, value) -> sb.append(sb.length() == 0 ? "" : ";").append(sinkId).append(':').append(value));
+        return sb.toString();
+    }
+
+    private static long getLoggedValue(CompressedSeries.Longs log, int index, long defaultValue) { return (index < log.size()) ? log.get(index) : defaultValue; }
+    private static double getLoggedValue(CompressedSeries.Doubles log, int index, double defaultValue) { return (index < log.size()) ? log.get(index) : defaultValue; }
+    private static String loggedOrNA(CompressedSeries.Longs log, int index) { return index < log.size() ? String.valueOf(log.get(index)) : "N/A"; }
+
+    /** Bytes held by the compressed per-round logs. */
+    public long getRoundLogStorageBytes() {
+        long bytes = 0;
+        for (CompressedSeries log : roundLogs()) bytes += log.storageBytes();
+        return bytes;
     }
 
-    private <T> T getLoggedValue(List<T> logList, int index, T defaultValue) { return (index < logList.size()) ? logList.get(index) : defaultValue; }
+    /** Values held by the per-round logs (8 bytes each uncompressed, more as boxed list entries). */
+    private long getRoundLogValueCount() {
+        long values = 0;
+        for (CompressedSeries log : roundLogs()) values += log.size();
+        return values;
+    }
+
+    private CompressedSeries[] roundLogs() {
+        return new CompressedSeries[] { aliveNodesPerRoundLog, totalRemainingEnergyPerRoundLog, energyConsumedThisRoundLog, leaderIdPerRoundLog,
+                bsTransmissionSuccessPerRoundLog, routingEnergySavedPerRoundLog, goodputBitsPerRoundLog, retransmissionsPerRoundLog,
+                deliveryRatioPerRoundLog, delaySlotsPerRoundLog, allocatedBytesPerRoundLog, gcCountPerRoundLog, gcTimeMsPerRoundLog,
+                zonesActivePerRoundLog, zonesDeliveredPerRoundLog, maxZoneAgePerRoundLog };
+    }
     
     public void reset() { 
         fndRound = -1; hndRound = -1; lndRound = -1;
         aliveNodesPerRoundLog.clear(); totalRemainingEnergyPerRoundLog.clear(); energyConsumedThisRoundLog.clear();
-        leaderIdPerRoundLog.clear(); bsTransmissionSuccessPerRoundLog.clear();
+        leaderIdPerRoundLog.clear(); bsTransmissionSuccessPerRoundLog.clear(); routingEnergySavedPerRoundLog.clear();
         totalSuccessfulTransmissionsToBS = 0; totalDataDeliveredToBS_bits = 0;
+        totalHopTransmissions = 0; totalBitsOnAir = 0;
+        goodputBitsPerRoundLog.clear(); retransmissionsPerRoundLog.clear(); deliveryRatioPerRoundLog.clear(); delaySlotsPerRoundLog.clear();
+        linkPacketsOffered = 0; linkPacketsDelivered = 0; totalRetransmissions = 0; readingsGenerated = 0; readingsDelivered = 0;
+        roundGoodputBits = 0; roundRetransmissions = 0; roundReadingsGenerated = 0; roundReadingsDelivered = 0;
+        packetsDeliveredBySink.clear(); bitsDeliveredBySink.clear();
         totalEnergyConsumedByNode.clear(); energyConsumedAsLeaderByNode.clear(); leaderSelectionCounts.clear();
-        dataOperationsPerNode.clear(); roundExecutionTimesNanos.clear(); chainFormationTimesNanos.clear();
+        dataOperationsPerNode.clear(); roundExecutionTimesNanos.clear(); chainFormationTimesNanos.clear(); chainCostsLog.clear();
+        upperChainCacheLookups = 0; upperChainCacheHits = 0; upperChainCacheIncrementalHits = 0;
+        zoneRebalances = 0; zoneMerges = 0; zoneSplits = 0; zoneRebalanceNanos = 0;
+        zoneDelivery.clear(); zonesActivePerRoundLog.clear(); zonesDeliveredPerRoundLog.clear(); maxZoneAgePerRoundLog.clear();
+        allocatedBytesPerRoundLog.clear(); gcCountPerRoundLog.clear(); gcTimeMsPerRoundLog.clear(); roundStartAllocatedBytes = -1;
+        phaseProfiler.reset();
+        Arrays.fill(aliveRing, 0); Arrays.fill(energyRing, 0.0); downsampledSeries.clear();
+        roundsClosed = 0; roundAlive = initialNodeCount; roundPreviousAlive = initialNodeCount;
+        roundRemainingEnergy = 0.0; roundEnergyConsumed = 0.0; cumulativeEnergy = 0.0; energyRingSum = 0.0;
+        deathsInWindow = 0; peakDeathsInWindow = 0; peakDeathsRound = -1;
         currentProtocolName = "N/A";
         // System.out.println("MetricsCollector has been reset."); // Keep or remove debug as preferred
     }
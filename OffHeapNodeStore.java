@@ -0,0 +1,299 @@
+// File: OffHeapNodeStore.java
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Node state for networks too large for SensorNode objects, held outside the Java heap: either
+ * in direct buffers or in a memory-mapped file. Each node is one fixed-size record, and records are stored
+ * zone by zone, so a zone is one contiguous byte range that can be processed on its own. Within a
+ * zone, records follow a serpentine scan (row strips, alternating direction), which is also the
+ * zone's chain order. A chain is then just the record order, with no O(n^2) greedy construction.
+ *
+ * File-backed stores map at most residencyBudgetBytes of zone windows at a time; the least
+ * recently used windows are flushed and released when the budget is exceeded, and the kernel's
+ * page cache decides what actually stays in RAM. Direct-buffer stores must fit in the budget.
+ *
+ * Writes to a mapping reach the file whenever the kernel flushes them, so a killed process can
+ * leave any mix of rounds on disk. The mutable columns (energy, last leader round) are therefore
+ * double-buffered: the header names the slot committed at the last checkpoint, and rounds after
+ * it only ever write the other slot. {@link #checkpoint} flushes the windows and then flips the
+ * committed slot in the header, so a resume always sees exactly the checkpointed state.
+ */
+final class OffHeapNodeStore implements AutoCloseable {
+
+    // Record layout (little-endian): x, y, initialEnergy, energy[2] (double); id, lastLeaderRound[2] (int); 4 bytes padding
+    static final int RECORD_BYTES = 56;
+    private static final int X = 0, Y = 8, INITIAL_ENERGY = 16, ID = 40;
+    private static final int[] ENERGY = { 24, 32 }, LAST_LEADER_ROUND = { 44, 48 }; // By slot
+
+    // Header: magic, version, node count, zone grid, field size, checkpointed round, committed slot,
+    // FND/HND/LND rounds at the checkpoint (-1 if not reached), then zone start offsets
+    private static final long MAGIC = 0x5045474153495331L; // "PEGASIS1"
+    private static final int VERSION = 2;
+    private static final int FIXED_HEADER_BYTES = 64;
+    private static final int PAGE = 4096;
+
+    private final long nodeCount;
+    private final int zoneRows, zoneCols;
+    private final double width, height;
+    private final long[] zoneStart; // Record index of each zone's first node; zoneStart[zones] == nodeCount
+    private final long dataOffset;
+    private int checkpointRound;
+    private int committedSlot; // Holds the checkpointed state; rounds since then read and write the other slot
+    private final boolean[] zoneWritten; // Zones whose live slot has been written since the checkpoint
+    private int fndRound, hndRound, lndRound;
+
+    // File-backed mode
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long residencyBudgetBytes;
+    private final LinkedHashMap<Integer, MappedByteBuffer> windows = new LinkedHashMap<>(16, 0.75f, true);
+    private long mappedBytes = 0, peakMappedBytes = 0;
+
+    // In-memory mode: one direct buffer per zone
+    private final ByteBuffer[] directZones;
+
+    private OffHeapNodeStore(long nodeCount, int zoneRows, int zoneCols, double width, double height, long[] zoneStart,
+                             int checkpointRound, int committedSlot, RandomAccessFile file, long residencyBudgetBytes) throws IOException {
+        this.nodeCount = nodeCount; this.zoneRows = zoneRows; this.zoneCols = zoneCols;
+        this.width = width; this.height = height; this.zoneStart = zoneStart; this.checkpointRound = checkpointRound;
+        this.committedSlot = committedSlot;
+        this.zoneWritten = new boolean[zoneStart.length - 1];
+        this.fndRound = -1; this.hndRound = -1; this.lndRound = -1;
+        this.dataOffset = headerBytes(zoneStart.length - 1);
+        this.file = file;
+        this.channel = file != null ? file.getChannel() : null;
+        this.residencyBudgetBytes = residencyBudgetBytes;
+        this.directZones = file == null ? new ByteBuffer[zoneStart.length - 1] : null;
+    }
+
+    private static long headerBytes(int zones) {
+        long bytes = FIXED_HEADER_BYTES + 8L * (zones + 1);
+        return (bytes + PAGE - 1) / PAGE * PAGE;
+    }
+
+    /**
+     * Deploys nodeCount nodes uniformly over a width x height field split into a zoneRows x zoneCols
+     * grid, zone by zone, so the heap never holds more than one zone's coordinates. Zone z gets an
+     * equal share of the nodes (the remainder goes to the first zones), placed by a Random seeded
+     * from seed and z, so the deployment is reproducible and independent of build order.
+     * @param path File to map, or null to keep the store in direct buffers (which must then fit in
+     *             residencyBudgetBytes).
+     */
+    static OffHeapNodeStore create(String path, long nodeCount, int zoneRows, int zoneCols, double width, double height,
+                                   double initialEnergy, long seed, long residencyBudgetBytes) throws IOException {
+        int zones = zoneRows * zoneCols;
+        long[] zoneStart = new long[zones + 1];
+        for (int z = 0; z < zones; z++) zoneStart[z + 1] = zoneStart[z] + nodeCount / zones + (z < nodeCount % zones ? 1 : 0);
+        for (int z = 0; z < zones; z++) {
+            if ((zoneStart[z + 1] - zoneStart[z]) * RECORD_BYTES > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Zone " + z + " exceeds 2 GB; use a finer zone grid.");
+        }
+        if (path == null && nodeCount * RECORD_BYTES > residencyBudgetBytes) {
+            throw new IllegalArgumentException(String.format("%d nodes need %d MB of direct buffers, over the %d MB residency budget; " +
+                    "give a store file (or raise OUT_OF_CORE_RESIDENCY_MB).", nodeCount, nodeCount * RECORD_BYTES >> 20, residencyBudgetBytes >> 20));
+        }
+        RandomAccessFile raf = null;
+        if (path != null) {
+            File f = new File(path);
+            if (f.exists() && !f.delete()) throw new IOException("cannot replace " + path);
+            raf = new RandomAccessFile(f, "rw");
+            raf.setLength(headerBytes(zones) + nodeCount * RECORD_BYTES);
+        }
+        OffHeapNodeStore store = new OffHeapNodeStore(nodeCount, zoneRows, zoneCols, width, height, zoneStart, 0, 1, raf, residencyBudgetBytes);
+
+        double cellW = width / zoneCols, cellH = height / zoneRows;
+        for (int z = 0; z < zones; z++) {
+            int n = store.zoneSize(z);
+            double x0 = (z % zoneCols) * cellW, y0 = (z / zoneCols) * cellH;
+            Random rnd = new Random(seed * 1_000_003L + z);
+            double[] xs = new double[n], ys = new double[n];
+            for (int i = 0; i < n; i++) { xs[i] = x0 + rnd.nextDouble() * cellW; ys[i] = y0 + rnd.nextDouble() * cellH; }
+            int[] order = serpentineOrder(xs, ys, n, y0, cellH);
+            ByteBuffer buf = store.zone(z);
+            for (int i = 0; i < n; i++) {
+                int base = i * RECORD_BYTES, src = order[i];
+                buf.putDouble(base + X, xs[src]).putDouble(base + Y, ys[src]).putDouble(base + INITIAL_ENERGY, initialEnergy)
+                   .putDouble(base + ENERGY[0], initialEnergy).putInt(base + ID, (int) (store.zoneStart[z] + i + 1))
+                   .putInt(base + LAST_LEADER_ROUND[0], Integer.MIN_VALUE / 2);
+            }
+            store.zoneWritten[z] = true; // Slot 0 is live; the checkpoint below commits it
+        }
+        store.checkpoint(0, -1, -1, -1);
+        return store;
+    }
+
+    /** Reopens a file-backed store at its last checkpoint. */
+    static OffHeapNodeStore open(String path, long residencyBudgetBytes) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(path, "rw");
+        ByteBuffer h = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        raf.getChannel().read(h, 0);
+        h.flip();
+        if (h.getLong() != MAGIC || h.getInt() != VERSION) {
+            raf.close();
+            throw new IOException(path + " is not a node store (or was written by another version)");
+        }
+        long nodeCount = h.getLong();
+        int zoneRows = h.getInt(), zoneCols = h.getInt();
+        double width = h.getDouble(), height = h.getDouble();
+        int round = h.getInt(), slot = h.getInt(), fnd = h.getInt(), hnd = h.getInt(), lnd = h.getInt();
+        long[] zoneStart = new long[zoneRows * zoneCols + 1];
+        ByteBuffer z = ByteBuffer.allocate(8 * zoneStart.length).order(ByteOrder.LITTLE_ENDIAN);
+        raf.getChannel().read(z, FIXED_HEADER_BYTES);
+        z.flip();
+        for (int i = 0; i < zoneStart.length; i++) zoneStart[i] = z.getLong();
+        OffHeapNodeStore store = new OffHeapNodeStore(nodeCount, zoneRows, zoneCols, width, height, zoneStart, round, slot, raf, residencyBudgetBytes);
+        store.fndRound = fnd; store.hndRound = hnd; store.lndRound = lnd;
+        return store;
+    }
+
+    /** Chain order for one zone: strips about as tall as the mean node spacing, x ascending in even strips and descending in odd ones. */
+    private static int[] serpentineOrder(double[] xs, double[] ys, int n, double y0, double cellH) {
+        int strips = Math.max(1, (int) Math.sqrt(n));
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int strip = Math.min(strips - 1, (int) ((ys[i] - y0) / cellH * strips));
+            keys[i] = ((long) strip << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int start = 0; start < n; ) {
+            int strip = (int) (keys[start] >>> 32), end = start;
+            while (end < n && (int) (keys[end] >>> 32) == strip) end++;
+            Integer[] run = new Integer[end - start];
+            for (int i = start; i < end; i++) run[i - start] = (int) keys[i];
+            Arrays.sort(run, (a, b) -> strip % 2 == 0 ? Double.compare(xs[a], xs[b]) : Double.compare(xs[b], xs[a]));
+            for (int i = start; i < end; i++) order[i] = run[i - start];
+            start = end;
+        }
+        return order;
+    }
+
+    long getNodeCount() { return nodeCount; }
+    int getZoneCount() { return zoneStart.length - 1; }
+    int getZoneRows() { return zoneRows; }
+    int getZoneCols() { return zoneCols; }
+    double getWidth() { return width; }
+    double getHeight() { return height; }
+    int getCheckpointRound() { return checkpointRound; }
+    /** Lifetime milestones saved with the last checkpoint, -1 if not reached by then. */
+    int getFndRound() { return fndRound; }
+    int getHndRound() { return hndRound; }
+    int getLndRound() { return lndRound; }
+    int zoneSize(int z) { return (int) (zoneStart[z + 1] - zoneStart[z]); }
+    long getPeakMappedBytes() { return peakMappedBytes; }
+
+    int maxZoneSize() {
+        int max = 0;
+        for (int z = 0; z < getZoneCount(); z++) max = Math.max(max, zoneSize(z));
+        return max;
+    }
+
+    /** The zone's records as a little-endian buffer positioned at 0; record i starts at i * RECORD_BYTES. */
+    ByteBuffer zone(int z) throws IOException {
+        int bytes = zoneSize(z) * RECORD_BYTES;
+        if (directZones != null) {
+            if (directZones[z] == null) directZones[z] = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            return directZones[z];
+        }
+        MappedByteBuffer window = windows.get(z);
+        if (window != null) return window;
+        while (!windows.isEmpty() && mappedBytes + bytes > residencyBudgetBytes) {
+            Iterator<Map.Entry<Integer, MappedByteBuffer>> eldest = windows.entrySet().iterator();
+            MappedByteBuffer evicted = eldest.next().getValue();
+            evicted.force(); // Released once unreachable; its pages stay in the page cache until the kernel reclaims them
+            mappedBytes -= evicted.capacity();
+            eldest.remove();
+        }
+        window = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset + zoneStart[z] * RECORD_BYTES, bytes);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windows.put(z, window);
+        mappedBytes += bytes;
+        peakMappedBytes = Math.max(peakMappedBytes, mappedBytes);
+        return window;
+    }
+
+    /**
+     * Copies zone z's positional and current mutable columns into the caller's scratch arrays
+     * (length >= zoneSize): the live slot once the zone has been written since the checkpoint,
+     * the committed one before that.
+     */
+    void readZone(ByteBuffer buf, int z, double[] xs, double[] ys, double[] energy, double[] initialEnergy, int[] lastLeaderRound) {
+        int n = zoneSize(z), slot = zoneWritten[z] ? 1 - committedSlot : committedSlot;
+        int energyAt = ENERGY[slot], lastLeaderAt = LAST_LEADER_ROUND[slot];
+        for (int i = 0; i < n; i++) {
+            int base = i * RECORD_BYTES;
+            xs[i] = buf.getDouble(base + X); ys[i] = buf.getDouble(base + Y);
+            energy[i] = buf.getDouble(base + energyAt); initialEnergy[i] = buf.getDouble(base + INITIAL_ENERGY);
+            lastLeaderRound[i] = buf.getInt(base + lastLeaderAt);
+        }
+    }
+
+    /** Writes zone z's whole mutable state to the live slot; the committed slot is never touched between checkpoints. */
+    void writeState(ByteBuffer buf, int z, double[] energy, int[] lastLeaderRound) {
+        int n = zoneSize(z), slot = 1 - committedSlot;
+        int energyAt = ENERGY[slot], lastLeaderAt = LAST_LEADER_ROUND[slot];
+        for (int i = 0; i < n; i++) {
+            int base = i * RECORD_BYTES;
+            buf.putDouble(base + energyAt, energy[i]).putInt(base + lastLeaderAt, lastLeaderRound[i]);
+        }
+        zoneWritten[z] = true;
+    }
+
+    int getId(ByteBuffer buf, int i) { return buf.getInt(i * RECORD_BYTES + ID); }
+
+    /**
+     * Records that the state is complete through the given round, with the lifetime milestones
+     * reached so far (-1 if not yet). Zones not written since the last checkpoint get their
+     * committed state copied to the live slot, the mapped windows are flushed (windows evicted
+     * earlier were flushed when they were released), and only then does the header make the live
+     * slot the committed one. Until that single header write lands, the previous checkpoint stays
+     * intact on disk.
+     */
+    void checkpoint(int round, int fnd, int hnd, int lnd) throws IOException {
+        int live = 1 - committedSlot;
+        for (int z = 0; z < zoneWritten.length; z++) {
+            if (zoneWritten[z]) continue;
+            ByteBuffer buf = zone(z);
+            for (int i = 0, n = zoneSize(z); i < n; i++) {
+                int base = i * RECORD_BYTES;
+                buf.putDouble(base + ENERGY[live], buf.getDouble(base + ENERGY[committedSlot]))
+                   .putInt(base + LAST_LEADER_ROUND[live], buf.getInt(base + LAST_LEADER_ROUND[committedSlot]));
+            }
+        }
+        if (channel != null) {
+            for (MappedByteBuffer w : windows.values()) w.force();
+            ByteBuffer h = ByteBuffer.allocate((int) (FIXED_HEADER_BYTES + 8L * zoneStart.length)).order(ByteOrder.LITTLE_ENDIAN);
+            h.putLong(MAGIC).putInt(VERSION).putLong(nodeCount).putInt(zoneRows).putInt(zoneCols)
+             .putDouble(width).putDouble(height).putInt(round).putInt(live).putInt(fnd).putInt(hnd).putInt(lnd);
+            h.position(FIXED_HEADER_BYTES);
+            for (long s : zoneStart) h.putLong(s);
+            h.flip();
+            channel.write(h, 0);
+            channel.force(false);
+        }
+        committedSlot = live;
+        Arrays.fill(zoneWritten, false);
+        checkpointRound = round;
+        fndRound = fnd; hndRound = hnd; lndRound = lnd;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        for (MappedByteBuffer w : windows.values()) w.force();
+        windows.clear();
+        mappedBytes = 0;
+        file.close();
+    }
+}
@@ -0,0 +1,242 @@
+// File: OutOfCoreSimulation.java
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HALEM-style zone rounds over an OffHeapNodeStore, for deployments whose node state does not
+ * fit in the heap. Zones are streamed one at a time: the zone's records are copied into scratch
+ * arrays sized for the largest zone, the round is played on those arrays with the EnergyKernels
+ * batch kernels, and the new energies are written back. Heap use is therefore O(largest zone)
+ * whatever the network size, and with a store file the mapped residency stays within
+ * OUT_OF_CORE_RESIDENCY_MB.
+ *
+ * Per zone and round: the leader is the highest HALEM score (energy ratio and centrality to the
+ * alive members' centroid) outside its cooldown, the alive members gather sequentially along
+ * the zone's serpentine chain towards it with perfect aggregation, and the leader sends one
+ * packet directly to a static sink as far above the field's top edge as BS_Y is above AREA_HEIGHT. There is no upper
+ * chain or sink mobility; the on-heap protocols remain the reference for those.
+ *
+ * Usage: java OutOfCoreSimulation nodes zoneRows zoneCols [maxRounds] [storeFile|-]
+ *        java OutOfCoreSimulation --resume storeFile [maxRounds]
+ * "-" (the default) keeps the store in direct buffers, which must fit in OUT_OF_CORE_RESIDENCY_MB;
+ * a store file can be resumed from its last checkpoint, taken every OUT_OF_CORE_CHECKPOINT_INTERVAL
+ * rounds and at the end of the run. The round CSV is named after the store file (storeFile minus
+ * its extension + ROUND_DATA_CSV_POSTFIX); a resume cuts it back to the checkpoint round first.
+ */
+public class OutOfCoreSimulation {
+
+    private static final long DEPLOYMENT_SEED = 42L;
+    private static final String DIRECT_ROUND_CSV_FILENAME = "out_of_core" + PEGASISConfig.ROUND_DATA_CSV_POSTFIX;
+    private static final String ROUND_CSV_HEADER = "Round,AliveNodes,TotalRemainingEnergy,EnergyConsumedThisRound,ZonesDelivered";
+
+    private final OffHeapNodeStore store;
+    private final File csv;
+    private final double sinkX, sinkY;
+    private final int bits = PEGASISConfig.DATA_PACKET_SIZE_BITS;
+
+    // Scratch arrays shared by all zones, sized for the largest one
+    private final double[] xs, ys, energy, initialEnergy, dist, scores, cost;
+    private final int[] lastLeaderRound, member;
+    private final double[] mx, my, me, mi;
+
+    private long aliveNodes;
+    private double totalEnergy;
+    private int fndRound = -1, hndRound = -1, lndRound = -1;
+
+    /** @param storePath The store's file, or null for a direct-buffer store. */
+    OutOfCoreSimulation(OffHeapNodeStore store, String storePath) {
+        this.store = store;
+        this.csv = roundCsvFor(storePath);
+        this.sinkX = store.getWidth() / 2.0;
+        this.sinkY = store.getHeight() + (PEGASISConfig.BS_Y - PEGASISConfig.AREA_HEIGHT);
+        int max = store.maxZoneSize();
+        xs = new double[max]; ys = new double[max]; energy = new double[max]; initialEnergy = new double[max];
+        dist = new double[max]; scores = new double[max]; cost = new double[max];
+        lastLeaderRound = new int[max]; member = new int[max];
+        mx = new double[max]; my = new double[max]; me = new double[max]; mi = new double[max];
+    }
+
+    public static void main(String[] args) {
+        try {
+            OffHeapNodeStore store;
+            String path;
+            int maxRounds;
+            long budget = PEGASISConfig.OUT_OF_CORE_RESIDENCY_MB * 1024L * 1024L;
+            if (args.length >= 2 && args[0].equals("--resume")) {
+                path = args[1];
+                store = OffHeapNodeStore.open(path, budget);
+                maxRounds = args.length >= 3 ? Integer.parseInt(args[2]) : PEGASISConfig.MAX_ROUNDS;
+                System.out.println("Resuming " + args[1] + " after round " + store.getCheckpointRound());
+            } else if (args.length >= 3) {
+                long nodes = Long.parseLong(args[0]);
+                int rows = Integer.parseInt(args[1]), cols = Integer.parseInt(args[2]);
+                maxRounds = args.length >= 4 ? Integer.parseInt(args[3]) : PEGASISConfig.MAX_ROUNDS;
+                path = args.length >= 5 && !args[4].equals("-") ? args[4] : null;
+                // Same node density as the default 100 nodes on 100x100 m
+                double side = PEGASISConfig.AREA_WIDTH * Math.sqrt(nodes / (double) PEGASISConfig.NUM_NODES);
+                long start = System.nanoTime();
+                store = OffHeapNodeStore.create(path, nodes, rows, cols, side, side, PEGASISConfig.INITIAL_ENERGY, DEPLOYMENT_SEED, budget);
+                System.out.printf("Deployed %d nodes on %.0fx%.0f m in %dx%d zones (%s) in %d ms%n", nodes, side, side, rows, cols,
+                                  path != null ? path : "direct buffers", (System.nanoTime() - start) / 1_000_000);
+            } else {
+                System.err.println("Usage: java OutOfCoreSimulation nodes zoneRows zoneCols [maxRounds] [storeFile|-]");
+                System.err.println("       java OutOfCoreSimulation --resume storeFile [maxRounds]");
+                System.exit(1);
+                return;
+            }
+            try (OffHeapNodeStore s = store) {
+                new OutOfCoreSimulation(s, path).run(maxRounds);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("ERROR: Out-of-core simulation failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void run(int maxRounds) throws IOException {
+        int firstRound = store.getCheckpointRound() + 1;
+        scanTotals();
+        long nodeCount = store.getNodeCount();
+        fndRound = store.getFndRound(); hndRound = store.getHndRound(); lndRound = store.getLndRound();
+
+        boolean append = firstRound > 1 && truncateRoundCsv(firstRound - 1);
+        long start = System.nanoTime();
+        int round = firstRound - 1;
+        try (PrintWriter out = new PrintWriter(new FileWriter(csv, append))) {
+            if (!append) out.println(ROUND_CSV_HEADER);
+            while (round < maxRounds && aliveNodes > 0) {
+                round++;
+                double before = totalEnergy;
+                int delivered = 0;
+                aliveNodes = 0;
+                totalEnergy = 0;
+                for (int z = 0; z < store.getZoneCount(); z++) {
+                    if (runZone(z, round)) delivered++;
+                }
+                if (fndRound < 0 && aliveNodes < nodeCount) fndRound = round;
+                if (hndRound < 0 && aliveNodes <= nodeCount / 2) hndRound = round;
+                if (lndRound < 0 && aliveNodes == 0) lndRound = round;
+                out.printf("%d,%d,%.6f,%.6f,%d%n", round, aliveNodes, totalEnergy, before - totalEnergy, delivered);
+                if (round % PEGASISConfig.OUT_OF_CORE_CHECKPOINT_INTERVAL == 0) {
+                    out.flush();
+                    store.checkpoint(round, fndRound, hndRound, lndRound);
+                }
+            }
+        }
+        store.checkpoint(round, fndRound, hndRound, lndRound);
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Rounds %d-%d in %.2f s (%.1f rounds/s), alive %d of %d, remaining energy %.3f J%n",
+                          firstRound, round, secs, (round - firstRound + 1) / Math.max(secs, 1e-9), aliveNodes, nodeCount, totalEnergy);
+        System.out.println("FND: " + fndRound + ", HND: " + hndRound + ", LND: " + lndRound + ", peak mapped: "
+                           + (store.getPeakMappedBytes() / (1024 * 1024)) + " MB");
+        System.out.println("SUCCESS: Round data written to " + csv.getPath());
+    }
+
+    private static File roundCsvFor(String storePath) {
+        if (storePath == null) return new File(DIRECT_ROUND_CSV_FILENAME);
+        File storeFile = new File(storePath);
+        String name = storeFile.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(storeFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + PEGASISConfig.ROUND_DATA_CSV_POSTFIX);
+    }
+
+    /**
+     * Drops the round CSV's rows after lastRound (written after the checkpoint a resume restarts
+     * from), so the resumed rounds are not listed twice.
+     * @return False if there is no CSV with the expected header to continue.
+     */
+    private boolean truncateRoundCsv(int lastRound) throws IOException {
+        if (!csv.exists()) return false;
+        List<String> kept = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(csv))) {
+            String line = reader.readLine();
+            if (!ROUND_CSV_HEADER.equals(line)) return false;
+            kept.add(line);
+            while ((line = reader.readLine()) != null) {
+                int comma = line.indexOf(',');
+                try {
+                    if (comma > 0 && Integer.parseInt(line.substring(0, comma)) <= lastRound) kept.add(line);
+                } catch (NumberFormatException e) {
+                    // A row cut short by the crash
+                }
+            }
+        }
+        if (kept.size() - 1 < lastRound) {
+            System.err.println("Warning: " + csv.getPath() + " has " + (kept.size() - 1) + " rows before round " + (lastRound + 1) +
+                               "; rows lost before the checkpoint stay missing.");
+        }
+        try (PrintWriter out = new PrintWriter(new FileWriter(csv))) {
+            for (String row : kept) out.println(row);
+        }
+        return true;
+    }
+
+    private void scanTotals() throws IOException {
+        aliveNodes = 0;
+        totalEnergy = 0;
+        for (int z = 0; z < store.getZoneCount(); z++) {
+            int n = store.zoneSize(z);
+            store.readZone(store.zone(z), z, xs, ys, energy, initialEnergy, lastLeaderRound);
+            for (int i = 0; i < n; i++) {
+                if (energy[i] > 0) { aliveNodes++; totalEnergy += energy[i]; }
+            }
+        }
+    }
+
+    /** Plays one round in zone z and writes it back. @return Whether the zone's packet reached the sink. */
+    private boolean runZone(int z, int round) throws IOException {
+        ByteBuffer buf = store.zone(z);
+        int n = store.zoneSize(z);
+        store.readZone(buf, z, xs, ys, energy, initialEnergy, lastLeaderRound);
+
+        // Alive members in chain order, compacted so the kernels run over contiguous arrays
+        int m = 0;
+        double cx = 0, cy = 0;
+        for (int i = 0; i < n; i++) {
+            if (energy[i] <= 0) continue;
+            member[m] = i; mx[m] = xs[i]; my[m] = ys[i]; me[m] = energy[i]; mi[m] = initialEnergy[i];
+            cx += xs[i]; cy += ys[i];
+            m++;
+        }
+        if (m == 0) return false;
+
+        EnergyKernels.distancesTo(mx, my, m, cx / m, cy / m, dist);
+        double maxDist = 0;
+        for (int k = 0; k < m; k++) maxDist = Math.max(maxDist, dist[k]);
+        EnergyKernels.leaderScores(me, mi, dist, m, maxDist, PEGASISConfig.HALEM_LEADER_SCORE_W1_ENERGY,
+                                   PEGASISConfig.HALEM_LEADER_SCORE_W2_CENTRALITY, scores);
+        int leader = -1, fallback = 0;
+        for (int k = 0; k < m; k++) {
+            if (scores[k] > scores[fallback]) fallback = k;
+            boolean cooling = round - lastLeaderRound[member[k]] < PEGASISConfig.HALEM_LEADER_COOLDOWN_ROUNDS;
+            if (!cooling && (leader < 0 || scores[k] > scores[leader])) leader = k;
+        }
+        if (leader < 0) leader = fallback; // Everyone is cooling down: best score regardless
+
+        // Both chain ends pass towards the leader; each hop costs the sender tx and the receiver rx + aggregation
+        EnergyKernels.hopDistances(mx, my, m, dist);
+        double rx = (PEGASISConfig.E_ELEC * bits) + (PEGASISConfig.E_DA * bits);
+        for (int k = 0; k < m; k++) cost[k] = 0;
+        for (int k = 0; k < leader; k++) { cost[k] += EnergyKernels.txEnergy(bits, dist[k]); cost[k + 1] += rx; }
+        for (int k = m - 1; k > leader; k--) { cost[k] += EnergyKernels.txEnergy(bits, dist[k - 1]); cost[k - 1] += rx; }
+        double dx = mx[leader] - sinkX, dy = my[leader] - sinkY;
+        cost[leader] += EnergyKernels.txEnergy(bits, Math.sqrt(dx * dx + dy * dy));
+        boolean delivered = me[leader] >= cost[leader];
+        EnergyKernels.decrementEnergy(me, cost, m);
+
+        for (int k = 0; k < m; k++) {
+            energy[member[k]] = me[k];
+            if (me[k] > 0) { aliveNodes++; totalEnergy += me[k]; }
+        }
+        lastLeaderRound[member[leader]] = round;
+        store.writeState(buf, z, energy, lastLeaderRound);
+        return delivered;
+    }
+}
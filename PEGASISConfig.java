@@ -12,6 +12,32 @@ public class PEGASISConfig {
     // For simplicity, let's assume each zone leader sends one DATA_PACKET_SIZE_BITS packet
     // and super leader sends one such packet too after aggregation.
     public static final int CONTROL_PACKET_SIZE_BITS = 100;
+    // How relays fuse packets (see AggregationModel): PERFECT keeps every hop at one packet,
+    // CONCATENATION appends, FIXED_RATIO compresses the concatenation by the ratio, and
+    // CORRELATION_DISTANCE adds d/(d+c) of the smaller payload for readings d meters apart.
+    public static int AGGREGATION_MODEL = AggregationModel.MODEL_PERFECT;
+    public static double AGGREGATION_COMPRESSION_RATIO = 0.7; // 0.5 or less behaves like PERFECT for equal-size packets
+    public static double AGGREGATION_CORRELATION_DISTANCE = 25.0; // meters
+
+    // --- Link Quality (see LinkQualityModel) ---
+    // Disabled: every hop succeeds on the first transmission. Enabled: PER rises from LINK_PER_FLOOR
+    // at 0 m to 1 at LINK_RANGE_M as (d / range)^LINK_PER_EXPONENT, with up to LINK_MAX_RETRIES
+    // retransmissions per packet, each charged full Tx and Rx energy.
+    public static boolean LINK_LOSS_ENABLED = false;
+    public static double LINK_RANGE_M = 250.0;
+    public static double LINK_PER_EXPONENT = 4.0;
+    public static double LINK_PER_FLOOR = 0.01;
+    public static double LINK_PER_TABLE_STEP_M = 0.25;
+    public static int LINK_MAX_RETRIES = 3;
+    public static long LINK_RANDOM_SEED = 1234L;
+
+    // --- Chain Gathering Schedule (Standard PEGASIS and HALEM zone chains, see BinaryCombining) ---
+    // SEQUENTIAL passes data hop by hop along the chain, one transmission per slot, so a round's delay
+    // grows with chain length. BINARY is PEGASIS binary combining: at each level, nodes at alternating
+    // positions send to a partner in parallel, so gathering takes O(log n) slots over longer hops.
+    public static final int GATHERING_SEQUENTIAL = 0;
+    public static final int GATHERING_BINARY = 1;
+    public static int GATHERING_MODE = GATHERING_SEQUENTIAL;
 
     // --- Network & Simulation Parameters (Defaults) ---
     public static int NUM_NODES = 100;
@@ -24,21 +50,53 @@ public class PEGASISConfig {
     public static double BS_Y = 175.0;
     public static boolean IS_SINK_MOBILE = true;
     public static double SINK_SPEED_PER_ROUND = 1.0;
-    public static int SINK_MOVEMENT_PATTERN = 1; // 1 for horizontal linear
+    // 0 static, 1 horizontal linear, 2 vertical linear, 3 circular, 4 waypoint, 5 file-driven,
+    // 6 planned (moves towards the position minimizing aggregate leader transmit energy)
+    public static int SINK_MOVEMENT_PATTERN = 1;
     public static double SINK_MIN_X = 0.0;
     public static double SINK_MAX_X = AREA_WIDTH;
-    public static double SINK_MIN_Y = BS_Y;
-    public static double SINK_MAX_Y = BS_Y;
+    public static double SINK_MIN_Y = 0.0; // Vertical range; also bounds the planned pattern's target
+    public static double SINK_MAX_Y = AREA_HEIGHT;
+    public static double SINK_CIRCLE_CENTER_X = AREA_WIDTH / 2.0;
+    public static double SINK_CIRCLE_CENTER_Y = AREA_HEIGHT / 2.0;
+    public static double SINK_CIRCLE_RADIUS = 75.0;
+    public static double[][] SINK_WAYPOINTS = {
+        { 0.0, BS_Y }, { AREA_WIDTH, BS_Y }, { AREA_WIDTH, AREA_HEIGHT / 2.0 }, { 0.0, AREA_HEIGHT / 2.0 }
+    };
+    public static String SINK_TRAJECTORY_FILE = "sink_trajectory.csv"; // One "x,y" line per round
+    public static boolean PRECOMPUTE_SINK_PATH = true;
+
+    // --- Multi-Sink Parameters ---
+    // Total sinks including the primary one at (BS_X, BS_Y). Extra sinks come from ADDITIONAL_SINKS
+    // first; any still missing are placed statically around the field center at the primary's radius.
+    public static int NUM_SINKS = 1;
+    public static double[][] ADDITIONAL_SINKS = {}; // Rows of { x, y, isMobile (1 or 0) }
+
+    // --- Chain Construction (both protocols; see HilbertChainBuilder) ---
+    public static final int CHAIN_BUILDER_GREEDY = 0;  // Nearest-neighbour greedy: O(n^2), sequential
+    public static final int CHAIN_BUILDER_HILBERT = 1; // Hilbert-curve order: parallel keys and sort, O(n log n)
+    public static int STANDARD_CHAIN_BUILDER = CHAIN_BUILDER_GREEDY;
+    public static int HALEM_CHAIN_BUILDER = CHAIN_BUILDER_GREEDY;
+    public static int CHAIN_FIXUP_WINDOW = 8; // Hilbert only: reach of the 2-opt fix-up pass in chain positions, 0 to skip it
 
     // --- Standard PEGASIS Specific Parameters ---
     public static boolean REFORM_CHAIN_ON_DEATH_PEGASIS = true;
     public static int REFORM_CHAIN_INTERVAL_PEGASIS = 25;
+    // Round-robin is classic PEGASIS; predictive picks the chain member that would last the most
+    // rounds at its estimated drain plus the expected sink uplink (see DrainRateEstimator)
+    public static final int PEGASIS_LEADER_ROUND_ROBIN = 0;
+    public static final int PEGASIS_LEADER_PREDICTIVE = 1;
+    public static int PEGASIS_LEADER_SELECTION = PEGASIS_LEADER_ROUND_ROBIN;
+    // Weight of the newest round in the per-node drain-rate average (both protocols' predictive leader choice)
+    public static double DRAIN_RATE_EWMA_ALPHA = 0.1;
 
     // --- HALEM-PEGASIS Specific Parameters ---
     public static int HALEM_ZONE_ROWS = 2;
     public static int HALEM_ZONE_COLS = 2;
     public static double HALEM_LEADER_SCORE_W1_ENERGY = 0.6;
     public static double HALEM_LEADER_SCORE_W2_CENTRALITY = 0.4;
+    // Predicted rounds the candidate lasts if it leads (see DrainRateEstimator), relative to the best candidate; 0 = off
+    public static double HALEM_LEADER_SCORE_W3_LIFETIME = 0.0;
     public static int HALEM_LEADER_COOLDOWN_ROUNDS = 10;
     public static boolean HALEM_ENABLE_BACKUP_LEADERS = true;
 
@@ -47,11 +105,64 @@ public class PEGASISConfig {
     public static double HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY = 75.0; // meters
     // If fewer than this many leaders opt for hierarchy, they all go direct to sink anyway.
     public static int HALEM_MIN_LEADERS_FOR_UPPER_CHAIN = 2;
+    // How a zone leader chooses between direct-to-sink and the upper chain:
+    // THRESHOLD uses HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY, COST compares first-order radio
+    // energy of the direct hop against the marginal cost of joining the upper chain every round.
+    public static final int HALEM_ROUTING_THRESHOLD = 0;
+    public static final int HALEM_ROUTING_COST = 1;
+    public static int HALEM_ROUTING_MODE = HALEM_ROUTING_THRESHOLD;
+    // Upper tier shape: FLAT is one greedy chain of all opting leaders; QUADTREE chains siblings
+    // cell by cell up a quadtree. Depth -1 picks the smallest depth with 4^depth >= zone count.
+    public static final int HALEM_HIERARCHY_FLAT = 0;
+    public static final int HALEM_HIERARCHY_QUADTREE = 1;
+    public static int HALEM_HIERARCHY_MODE = HALEM_HIERARCHY_FLAT;
+    public static int HALEM_QUADTREE_DEPTH = -1;
+    // LRU bound on cached flat upper-chain orderings (0 disables the cache). Exact hits reproduce
+    // the greedy rebuild; with INCREMENTAL_MAX_CHANGES > 0 a near-miss differing by up to that many
+    // leaders is patched by cheapest insertion instead, which can order the chain differently.
+    public static int HALEM_UPPER_CHAIN_CACHE_SIZE = 64;
+    public static int HALEM_UPPER_CHAIN_INCREMENTAL_MAX_CHANGES = 0;
+    // Zone rebalancing: every CHECK_INTERVAL rounds, if some populated zone's alive count is above
+    // mean * SKEW_THRESHOLD or below mean / SKEW_THRESHOLD, depleted zones merge into their nearest
+    // zone and overloaded ones split in two. Only the zones involved re-form their chains.
+    public static boolean HALEM_REBALANCE_ENABLED = false;
+    public static int HALEM_REBALANCE_CHECK_INTERVAL = 10;
+    public static double HALEM_REBALANCE_SKEW_THRESHOLD = 2.0;
 
 
     // --- Output/Logging ---
     public static final String SUMMARY_CSV_FILENAME = "simulation_summary.csv";
     public static final String ROUND_DATA_CSV_POSTFIX = "_round_data.csv";
+    // Bounded min-max series written next to the full round data, for plotting long runs in constant time
+    public static final String DOWNSAMPLED_CSV_POSTFIX = "_round_data_downsampled.csv";
+    // Per-zone delivery ratio and data age (see ZoneDeliveryStats), written for zoned protocols only
+    public static final String ZONE_DELIVERY_CSV_POSTFIX = "_zone_delivery.csv";
+    public static int DOWNSAMPLED_SERIES_MAX_ROWS = 1000;
+    public static int METRICS_WINDOW_ROUNDS = 50; // Window for the streaming death-rate and rolling-energy aggregates
+    // Per-round bytes allocated by the simulating thread (thread allocation counter) and GC count/time
+    // deltas, in the round CSV and summary. GC counters are JVM-wide, so concurrent runs share them.
+    public static boolean RESOURCE_TRACKING_ENABLED = false;
+    // Per-phase wall time inside runSingleRound (see PhaseProfiler): one nanoTime() per phase change
+    public static boolean PHASE_PROFILING_ENABLED = true;
+    // Per-hop binary trace of each run (see TraceRecorder, TraceReader), written next to the round CSV.
+    // Empty id lists sample everything; zone ids are HALEM's (1-based), and hops outside a zone are zone 0.
+    public static boolean TRACE_ENABLED = false;
+    public static final String TRACE_FILE_POSTFIX = "_trace.bin";
+    public static int[] TRACE_NODE_IDS = {};  // Hops sent or received by these nodes
+    public static int[] TRACE_ZONE_IDS = {};
+    public static int TRACE_FIRST_ROUND = 1;
+    public static int TRACE_LAST_ROUND = Integer.MAX_VALUE;
+    public static int TRACE_RING_CAPACITY = 1 << 16; // Events buffered between the simulation and the writer thread
+    // Out-of-core runs (see OutOfCoreSimulation): mapped zone windows kept at once, and rounds between checkpoints
+    public static int OUT_OF_CORE_RESIDENCY_MB = 256;
+    public static int OUT_OF_CORE_CHECKPOINT_INTERVAL = 100;
+    // Results store (see ResultsStore): every finished run is recorded under a fingerprint of the
+    // configuration, deployment, seed and PROTOCOL_VERSION, and runs already in the store are skipped.
+    // Bump PROTOCOL_VERSION whenever a code change alters results, so older records stop matching.
+    public static final int PROTOCOL_VERSION = 1;
+    public static boolean RESULTS_STORE_ENABLED = true;
+    public static boolean RESULTS_STORE_SKIP_COMPLETED = true;
+    public static String RESULTS_STORE_FILENAME = "simulation_results.store"; // Index: same name + ".idx"
 
     public static void parseArgs(String[] args) {
         try {
@@ -60,17 +171,19 @@ public class PEGASISConfig {
                 AREA_WIDTH = Double.parseDouble(args[1]);
                 AREA_HEIGHT = Double.parseDouble(args[1]);
                 SINK_MAX_X = AREA_WIDTH;
+                SINK_MAX_Y = AREA_HEIGHT;
+                SINK_CIRCLE_CENTER_X = AREA_WIDTH / 2.0;
+                SINK_CIRCLE_CENTER_Y = AREA_HEIGHT / 2.0;
             }
             if (args.length >= 3) MAX_ROUNDS = Integer.parseInt(args[2]);
             if (args.length >= 4) INITIAL_ENERGY = Double.parseDouble(args[3]);
             if (args.length >= 5) BS_X = Double.parseDouble(args[4]);
-            if (args.length >= 6) {
-                BS_Y = Double.parseDouble(args[5]);
-                SINK_MIN_Y = BS_Y; SINK_MAX_Y = BS_Y;
-            }
+            if (args.length >= 6) BS_Y = Double.parseDouble(args[5]);
+            if (args.length >= 7) SINK_MOVEMENT_PATTERN = Integer.parseInt(args[6]);
+            if (args.length >= 8) NUM_SINKS = Math.max(1, Integer.parseInt(args[7]));
             // Add parsing for new HALEM flags if desired, e.g.:
-            // if (args.length >= 7) HALEM_ENABLE_UPPER_HIERARCHY = Boolean.parseBoolean(args[6]);
-            // if (args.length >= 8) HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY = Double.parseDouble(args[7]);
+            // if (args.length >= 9) HALEM_ENABLE_UPPER_HIERARCHY = Boolean.parseBoolean(args[8]);
+            // if (args.length >= 10) HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY = Double.parseDouble(args[9]);
 
         } catch (NumberFormatException e) {
             System.err.println("Error parsing command line arguments. Using defaults. " + e.getMessage());
@@ -80,11 +193,16 @@ public class PEGASISConfig {
         System.out.println("Nodes: " + NUM_NODES + ", Area: " + AREA_WIDTH + "x" + AREA_HEIGHT + "m, Max Rounds: " + MAX_ROUNDS);
         System.out.println("Initial Energy: " + INITIAL_ENERGY + "J, BS Location: (" + BS_X + "," + BS_Y + ")");
         System.out.println("Sink Mobile: " + IS_SINK_MOBILE +
-                           (IS_SINK_MOBILE ? ", Speed: " + SINK_SPEED_PER_ROUND + "m/round, Pattern: " + SINK_MOVEMENT_PATTERN : ""));
+                           (IS_SINK_MOBILE ? ", Speed: " + SINK_SPEED_PER_ROUND + "m/round, Pattern: " + SINK_MOVEMENT_PATTERN : "") +
+                           (NUM_SINKS > 1 ? ", Sinks: " + NUM_SINKS : ""));
+        System.out.println("Aggregation: " + AggregationModel.fromConfig().getName() +
+                           (LINK_LOSS_ENABLED ? ", Lossy links: range " + LINK_RANGE_M + "m, max retries " + LINK_MAX_RETRIES : "") +
+                           ", Gathering: " + (GATHERING_MODE == GATHERING_BINARY ? "binary combining" : "sequential"));
         System.out.println("HALEM Zones: " + HALEM_ZONE_ROWS + "x" + HALEM_ZONE_COLS +
                            ", Backup Leaders: " + HALEM_ENABLE_BACKUP_LEADERS +
                            ", Upper Hierarchy: " + HALEM_ENABLE_UPPER_HIERARCHY +
-                           (HALEM_ENABLE_UPPER_HIERARCHY ? ", HierThreshold: " + HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY + "m" : ""));
+                           (HALEM_ENABLE_UPPER_HIERARCHY ? (HALEM_ROUTING_MODE == HALEM_ROUTING_COST ? ", Routing: cost-based"
+                                                         : ", HierThreshold: " + HALEM_SINK_DISTANCE_THRESHOLD_FOR_HIERARCHY + "m") : ""));
         System.out.println("------------------------------------------");
     }
 }
\ No newline at end of file
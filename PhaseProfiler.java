@@ -0,0 +1,78 @@
+// File: PhaseProfiler.java
+import java.util.Arrays;
+
+/**
+ * Splits each round's wall time across protocol phases. A protocol calls {@link #enter} whenever
+ * it moves to another phase and {@link #endRound} when the round is over. The time since the
+ * previous call is added to the phase being left, so every round costs one System.nanoTime()
+ * per transition and nothing else: no allocation, no per-phase objects. Phases a protocol
+ * never enters stay at zero (Standard PEGASIS has no cooldowns or upper tier).
+ */
+final class PhaseProfiler {
+
+    enum Phase {
+        ROLE_RESET("RoleReset"),
+        COOLDOWN_UPDATE("CooldownUpdate"),
+        ZONE_REBALANCE("ZoneRebalance"),
+        CHAIN_FORMATION("ChainFormation"),
+        LEADER_ELECTION("LeaderElection"),
+        GATHER("Gather"),
+        ROUTING("RoutingDecision"),
+        UPPER_CHAIN_FORMATION("UpperChainFormation"),
+        UPPER_CHAIN_TRANSMISSION("UpperChainTransmission"),
+        SINK_TRANSMISSION("SinkTransmission"),
+        METRICS_FINALIZATION("MetricsFinalization");
+
+        final String label;
+
+        Phase(String label) { this.label = label; }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    /** Shared no-op instance for runs without a collector. */
+    static final PhaseProfiler DISABLED = new PhaseProfiler(false);
+
+    private final boolean enabled;
+    private final long[] nanos = new long[PHASES.length];
+    private Phase current = null;
+    private long since = 0;
+    private int rounds = 0;
+
+    PhaseProfiler(boolean enabled) { this.enabled = enabled; }
+
+    boolean isEnabled() { return enabled; }
+
+    /** Charges the time since the last call to the current phase and switches to the given one. */
+    void enter(Phase phase) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        if (current != null) nanos[current.ordinal()] += now - since;
+        current = phase;
+        since = now;
+    }
+
+    /** Closes the current phase; the gap until the next round's first enter() is not charged. */
+    void endRound() {
+        if (!enabled) return;
+        enter(null);
+        rounds++;
+    }
+
+    long getNanos(Phase phase) { return nanos[phase.ordinal()]; }
+
+    long getTotalNanos() {
+        long total = 0;
+        for (long n : nanos) total += n;
+        return total;
+    }
+
+    int getRounds() { return rounds; }
+
+    static Phase[] phases() { return PHASES.clone(); }
+
+    void reset() {
+        Arrays.fill(nanos, 0L);
+        current = null; since = 0; rounds = 0;
+    }
+}
@@ -15,7 +15,28 @@ public interface Protocol {
      * @param mc The metrics collector for this run.
      * @param protocolRandomSeed A random number generator for protocol-internal stochastic processes.
      */
-    void setup(List<SensorNode> initialNodes, BaseStation bs, MetricsCollector mc, Random protocolRandomSeed);
+    default void setup(List<SensorNode> initialNodes, BaseStation bs, MetricsCollector mc, Random protocolRandomSeed) {
+        setup(initialNodes, List.of(bs), mc, protocolRandomSeed);
+    }
+
+    /**
+     * Multi-sink variant of {@link #setup(List, BaseStation, MetricsCollector, Random)}.
+     * Leaders deliver to whichever sink is cheapest to reach from their position.
+     *
+     * @param initialNodes List of newly initialized sensor nodes for this run.
+     * @param sinks One or more sinks, each static or mobile. The first is the primary sink.
+     * @param mc The metrics collector for this run.
+     * @param protocolRandomSeed A random number generator for protocol-internal stochastic processes.
+     */
+    void setup(List<SensorNode> initialNodes, List<BaseStation> sinks, MetricsCollector mc, Random protocolRandomSeed);
+
+    /**
+     * Supplies precomputed structures for the deployment the next setup() will use, shared with
+     * other runs on it. Optional: protocols that ignore it, or get none, compute everything themselves.
+     *
+     * @param context Read-only structures built from the same NodeInitialConfig list as the nodes.
+     */
+    default void setDeploymentContext(DeploymentContext context) { }
 
     /**
      * Executes a single round of communication for the protocol.
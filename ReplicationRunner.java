@@ -0,0 +1,257 @@
+// File: ReplicationRunner.java
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent replications of each protocol, where replication i uses deployment seed
+ * 42 + i and its own protocol seed, in parallel batches. FND, HND, LND and delivered bits
+ * stream into Welford accumulators as each batch completes (in replication order, so results do
+ * not depend on thread timing). Once MIN_REPLICATIONS have run, the runner stops as soon as every
+ * tracked metric's 95% confidence interval half-width is within the target fraction of its
+ * mean, or when maxReplications is reached. Replication 0 uses the same deployment and seeds as
+ * SimulationRunner. A lifetime event that has not happened by MAX_ROUNDS counts as MAX_ROUNDS and
+ * is reported as censored. Such a sample bounds the event round from below, not a measurement of it,
+ * so a metric with any censored sample gets no confidence interval (N/A) and is left out of the
+ * stopping rule; it is listed as excluded instead.
+ *
+ * Usage: java ReplicationRunner [relativeHalfWidth] [maxReplications] [batchSize] [standard SimulationRunner args...]
+ */
+public class ReplicationRunner {
+
+    public enum Metric { FND, HND, LND, DELIVERED_BITS }
+
+    private static final int MIN_REPLICATIONS = 5;
+    private static final long PROTOCOL_SEED_STRIDE = 1_000_003L;
+    private static final String SUMMARY_CSV_FILENAME = "replication_summary.csv";
+    private static final String RUNS_CSV_FILENAME = "replication_runs.csv";
+
+    /** Welford's online mean and variance, plus a count of right-censored samples. */
+    static final class RunningStats {
+        private long n = 0;
+        private double mean = 0.0, m2 = 0.0;
+        private int censored = 0;
+
+        void add(double x, boolean isCensored) {
+            n++;
+            double delta = x - mean;
+            mean += delta / n;
+            m2 += delta * (x - mean);
+            if (isCensored) censored++;
+        }
+
+        long getCount() { return n; }
+        double getMean() { return mean; }
+        double getStdDev() { return n > 1 ? Math.sqrt(m2 / (n - 1)) : 0.0; }
+        int getCensored() { return censored; }
+        boolean hasCensored() { return censored > 0; }
+
+        /** Half-width of the two-sided 95% confidence interval of the mean. */
+        double getCiHalfWidth() { return n < 2 ? Double.POSITIVE_INFINITY : tQuantile975(n - 1) * getStdDev() / Math.sqrt(n); }
+
+        /** CI half-width as a fraction of |mean|; 0 when every sample was identical. */
+        double getRelativeHalfWidth() {
+            double h = getCiHalfWidth();
+            if (h == 0.0) return 0.0;
+            return mean == 0.0 ? Double.POSITIVE_INFINITY : h / Math.abs(mean);
+        }
+    }
+
+    /**
+     * 97.5th percentile of Student's t with df degrees of freedom, by the Cornish-Fisher expansion
+     * around the normal quantile (within 0.3% of the exact value for df >= 4).
+     */
+    static double tQuantile975(long df) {
+        double z = 1.959963984540054, z3 = z * z * z, z5 = z3 * z * z, z7 = z5 * z * z, d = df;
+        return z + (z3 + z) / (4 * d) + (5 * z5 + 16 * z3 + 3 * z) / (96 * d * d)
+                 + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * d * d * d);
+    }
+
+    private static final class ProtocolSpec {
+        final String runSuffix; // Same suffixes as SimulationRunner, so replication 0 reproduces its seeds
+        final Supplier<Protocol> factory;
+        String name;
+        final Map<Metric, RunningStats> stats = new EnumMap<>(Metric.class);
+
+        ProtocolSpec(String runSuffix, Supplier<Protocol> factory) {
+            this.runSuffix = runSuffix; this.factory = factory;
+            for (Metric m : Metric.values()) stats.put(m, new RunningStats());
+        }
+    }
+
+    private static final class ReplicationResult {
+        final int replication;
+        final long deploymentSeed, protocolSeed;
+        final int rounds;
+        final int[] lifetimeRounds; // FND, HND, LND; -1 if not reached
+        final long deliveredBits;
+
+        ReplicationResult(int replication, long deploymentSeed, long protocolSeed, int rounds, int[] lifetimeRounds, long deliveredBits) {
+            this.replication = replication; this.deploymentSeed = deploymentSeed; this.protocolSeed = protocolSeed;
+            this.rounds = rounds; this.lifetimeRounds = lifetimeRounds; this.deliveredBits = deliveredBits;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        double targetRelativeHalfWidth = args.length >= 1 ? Double.parseDouble(args[0]) : 0.02;
+        int maxReplications = args.length >= 2 ? Integer.parseInt(args[1]) : 1000;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int batchSize = args.length >= 3 ? Math.max(1, Integer.parseInt(args[2])) : threads;
+        PEGASISConfig.parseArgs(args.length > 3 ? Arrays.copyOfRange(args, 3, args.length) : new String[0]);
+
+        List<ProtocolSpec> specs = new ArrayList<>();
+        specs.add(new ProtocolSpec("StandardPegasisRun", StandardPegasisProtocol::new));
+        specs.add(new ProtocolSpec("HALEMPegasisRun", HALEMPegasisProtocol::new));
+
+        System.out.println();
+        System.out.printf("Replicating until every 95%% CI half-width is within %.2f%% of its mean (min %d, max %d replications, batches of %d on %d threads).%n",
+                          targetRelativeHalfWidth * 100, MIN_REPLICATIONS, maxReplications, batchSize, threads);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<String> runRows = new ArrayList<>();
+        int replications = 0;
+        boolean converged = false;
+        long start = System.nanoTime();
+        try {
+            while (replications < maxReplications && !converged) {
+                int batchEnd = Math.min(maxReplications, replications + batchSize);
+                List<List<Future<ReplicationResult>>> futures = new ArrayList<>();
+                Map<Integer, DeploymentContext> contexts = new ConcurrentHashMap<>(); // One per replication, shared by its protocols
+                for (ProtocolSpec spec : specs) {
+                    List<Future<ReplicationResult>> perSpec = new ArrayList<>();
+                    for (int rep = replications; rep < batchEnd; rep++) {
+                        final int r = rep;
+                        perSpec.add(pool.submit(() -> runReplication(spec, r, contexts)));
+                    }
+                    futures.add(perSpec);
+                }
+                for (int s = 0; s < specs.size(); s++) {
+                    ProtocolSpec spec = specs.get(s);
+                    for (Future<ReplicationResult> f : futures.get(s)) {
+                        ReplicationResult res = f.get();
+                        record(spec, res);
+                        runRows.add(String.format("%s,%d,%d,%d,%d,%s,%s,%s,%d", spec.name, res.replication, res.deploymentSeed,
+                                                  res.protocolSeed, res.rounds, formatRound(res.lifetimeRounds[0]),
+                                                  formatRound(res.lifetimeRounds[1]), formatRound(res.lifetimeRounds[2]), res.deliveredBits));
+                    }
+                }
+                replications = batchEnd;
+
+                double worst = 0.0;
+                String worstLabel = "";
+                List<String> excluded = new ArrayList<>();
+                for (ProtocolSpec spec : specs) {
+                    for (Map.Entry<Metric, RunningStats> e : spec.stats.entrySet()) {
+                        if (e.getValue().hasCensored()) { excluded.add(spec.name + " " + e.getKey()); continue; }
+                        double rel = e.getValue().getRelativeHalfWidth();
+                        if (rel >= worst) { worst = rel; worstLabel = spec.name + " " + e.getKey(); }
+                    }
+                }
+                converged = replications >= MIN_REPLICATIONS && worst <= targetRelativeHalfWidth;
+                System.out.printf("  %d replications: widest relative CI half-width %s (%s)%s%n", replications,
+                                  Double.isInfinite(worst) ? "n/a" : String.format("%.2f%%", worst * 100), worstLabel,
+                                  excluded.isEmpty() ? "" : "; censored, not checked: " + String.join(", ", excluded));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+        long censoredMetrics = specs.stream().flatMap(spec -> spec.stats.values().stream()).filter(RunningStats::hasCensored).count();
+
+        System.out.println();
+        System.out.println("--- Replication Summary (" + replications + " replications, " +
+                           (converged ? "converged" : "stopped at the replication limit") +
+                           (censoredMetrics > 0 ? " with " + censoredMetrics + " censored metrics not checked" : "") + ", " +
+                           String.format("%.1f", elapsedSec) + " s) ---");
+        System.out.printf("%-18s %-15s %-6s %-14s %-12s %-29s %-9s %s%n",
+                          "Protocol", "Metric", "N", "Mean", "StdDev", "95% CI", "Rel.Half", "Censored");
+        for (ProtocolSpec spec : specs) {
+            for (Map.Entry<Metric, RunningStats> e : spec.stats.entrySet()) {
+                RunningStats st = e.getValue();
+                double h = st.getCiHalfWidth();
+                boolean noCi = st.hasCensored();
+                System.out.printf("%-18s %-15s %-6d %-14.2f %-12.2f %-29s %-9s %d%n",
+                                  spec.name, e.getKey(), st.getCount(), st.getMean(), st.getStdDev(),
+                                  noCi ? "N/A" : String.format("[%12.2f, %12.2f]", st.getMean() - h, st.getMean() + h),
+                                  noCi ? "N/A" : String.format("%.2f%%", st.getRelativeHalfWidth() * 100), st.getCensored());
+            }
+        }
+        exportSummary(specs, SUMMARY_CSV_FILENAME);
+        exportRuns(runRows, RUNS_CSV_FILENAME);
+    }
+
+    /** Runs one protocol on replication rep's deployment until the network dies or MAX_ROUNDS. */
+    private static ReplicationResult runReplication(ProtocolSpec spec, int rep, Map<Integer, DeploymentContext> contexts) {
+        long deploymentSeed = SimulationRunner.DEFAULT_DEPLOYMENT_SEED + rep;
+        List<SimulationRunner.NodeInitialConfig> deployment = SimulationRunner.generateInitialNodeDeployments(deploymentSeed);
+        Protocol protocol = spec.factory.get();
+        protocol.setDeploymentContext(contexts.computeIfAbsent(rep, r -> new DeploymentContext(deployment)));
+        List<SensorNode> nodes = SimulationRunner.createNodesFromInitialConfig(deployment);
+        List<BaseStation> sinks = SimulationRunner.createSinks(nodes);
+        MetricsCollector metrics = new MetricsCollector(PEGASISConfig.NUM_NODES);
+        long protocolSeed = (protocol.getProtocolName().hashCode() + spec.runSuffix.hashCode()) + rep * PROTOCOL_SEED_STRIDE;
+        protocol.setup(nodes, sinks, metrics, new Random(protocolSeed));
+
+        int round = 0;
+        while (round < PEGASISConfig.MAX_ROUNDS && protocol.getAliveNodesCount() > 0) {
+            round++;
+            for (BaseStation s : sinks) s.move();
+            protocol.runSingleRound(round);
+        }
+        synchronized (spec) { spec.name = protocol.getProtocolName(); }
+        return new ReplicationResult(rep, deploymentSeed, protocolSeed, round,
+                                     new int[] { metrics.getFndRound(), metrics.getHndRound(), metrics.getLndRound() },
+                                     metrics.getTotalDataDeliveredToBS_bits());
+    }
+
+    private static void record(ProtocolSpec spec, ReplicationResult res) {
+        Metric[] lifetime = { Metric.FND, Metric.HND, Metric.LND };
+        for (int i = 0; i < lifetime.length; i++) {
+            boolean censored = res.lifetimeRounds[i] == -1;
+            spec.stats.get(lifetime[i]).add(censored ? PEGASISConfig.MAX_ROUNDS : res.lifetimeRounds[i], censored);
+        }
+        spec.stats.get(Metric.DELIVERED_BITS).add(res.deliveredBits, false);
+    }
+
+    private static String formatRound(int round) { return round == -1 ? "N/A" : String.valueOf(round); }
+
+    private static void exportSummary(List<ProtocolSpec> specs, String filename) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("Protocol,Metric,Replications,Mean,StdDev,CI95Low,CI95High,RelativeHalfWidth,Censored");
+            for (ProtocolSpec spec : specs) {
+                for (Map.Entry<Metric, RunningStats> e : spec.stats.entrySet()) {
+                    RunningStats st = e.getValue();
+                    double h = st.getCiHalfWidth();
+                    boolean noCi = st.hasCensored();
+                    writer.printf("%s,%s,%d,%.4f,%.4f,%s,%s,%s,%d%n", spec.name, e.getKey(), st.getCount(), st.getMean(), st.getStdDev(),
+                                  noCi ? "N/A" : String.format("%.4f", st.getMean() - h), noCi ? "N/A" : String.format("%.4f", st.getMean() + h),
+                                  noCi ? "N/A" : String.format("%.6f", st.getRelativeHalfWidth()), st.getCensored());
+                }
+            }
+            System.out.println("SUCCESS: Replication summary exported to " + filename);
+        } catch (IOException e) {
+            System.err.println("ERROR: Writing replication summary to " + filename + ": " + e.getMessage());
+        }
+    }
+
+    private static void exportRuns(List<String> rows, String filename) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("Protocol,Replication,DeploymentSeed,ProtocolSeed,RoundsSimulated,FND_Round,HND_Round,LND_Round,DeliveredBits");
+            for (String row : rows) writer.println(row);
+            System.out.println("SUCCESS: Per-replication results exported to " + filename);
+        } catch (IOException e) {
+            System.err.println("ERROR: Writing replication runs to " + filename + ": " + e.getMessage());
+        }
+    }
+}
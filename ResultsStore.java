@@ -0,0 +1,342 @@
+// File: ResultsStore.java
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Append-only store of finished runs, keyed by a fingerprint of everything that decides a run's
+ * outcome: every PEGASISConfig field, the node deployment, the protocol's RNG seed, the protocol
+ * name and PEGASISConfig.PROTOCOL_VERSION.
+ *
+ * The data file holds one record per line: the fingerprint, the run's parameters as tab-separated
+ * key=value fields, an empty field, then the summary metrics in the same form. A side index
+ * (data file name + ".idx") holds each record's fingerprint, byte offset, length and parameters.
+ * Opening the store and matching a parameter query only read the index, with an in-memory
+ * inverted index per parameter value; matching records are then read by seeking into the data
+ * file. An index that is missing or behind the data file is caught up by scanning the unindexed tail.
+ * Access is synchronized, so concurrent runs in one JVM (see SimulationDaemon) can share a store;
+ * runs that skip completed work claim their fingerprint with {@link #reserve} before starting.
+ *
+ * Usage: java ResultsStore [storeFile] [KEY=VALUE ...]  (prints the matching records as CSV)
+ */
+public final class ResultsStore {
+
+    private static final String INDEX_SUFFIX = ".idx";
+    // Output settings that do not change what a run computes
+    private static final Set<String> NON_RESULT_FIELDS = new HashSet<>(Arrays.asList(
+            "SUMMARY_CSV_FILENAME", "ROUND_DATA_CSV_POSTFIX", "DOWNSAMPLED_CSV_POSTFIX", "ZONE_DELIVERY_CSV_POSTFIX", "DOWNSAMPLED_SERIES_MAX_ROWS", "RESOURCE_TRACKING_ENABLED",
+            "PHASE_PROFILING_ENABLED", "OUT_OF_CORE_RESIDENCY_MB", "OUT_OF_CORE_CHECKPOINT_INTERVAL",
+            "TRACE_ENABLED", "TRACE_FILE_POSTFIX", "TRACE_NODE_IDS", "TRACE_ZONE_IDS", "TRACE_FIRST_ROUND", "TRACE_LAST_ROUND", "TRACE_RING_CAPACITY",
+            "RESULTS_STORE_ENABLED", "RESULTS_STORE_SKIP_COMPLETED", "RESULTS_STORE_FILENAME"));
+
+    /** A stored run: its parameters and summary metrics, in the order they were written. */
+    static final class Record {
+        final String fingerprint;
+        final Map<String, String> parameters;
+        final Map<String, String> metrics;
+
+        Record(String fingerprint, Map<String, String> parameters, Map<String, String> metrics) {
+            this.fingerprint = fingerprint; this.parameters = parameters; this.metrics = metrics;
+        }
+    }
+
+    private static final class IndexEntry {
+        final String fingerprint;
+        final long offset;
+        final int length; // Bytes, without the newline
+        final Map<String, String> parameters;
+
+        IndexEntry(String fingerprint, long offset, int length, Map<String, String> parameters) {
+            this.fingerprint = fingerprint; this.offset = offset; this.length = length; this.parameters = parameters;
+        }
+    }
+
+    private final File dataFile;
+    private final File indexFile;
+    private final List<IndexEntry> entries = new ArrayList<>();
+    private final Map<String, IndexEntry> byFingerprint = new HashMap<>();
+    private final Map<String, Map<String, List<IndexEntry>>> byParameter = new HashMap<>();
+    private final Set<String> inFlight = new HashSet<>(); // Reserved by runs that have not been appended yet
+    private long indexedBytes = 0;
+
+    private ResultsStore(File dataFile) {
+        this.dataFile = dataFile;
+        this.indexFile = new File(dataFile.getPath() + INDEX_SUFFIX);
+    }
+
+    /** Opens the store at path (the files are created on the first append) and loads its index. */
+    static ResultsStore open(String path) throws IOException {
+        ResultsStore store = new ResultsStore(new File(path));
+        store.loadIndex();
+        return store;
+    }
+
+    synchronized int size() { return entries.size(); }
+
+    synchronized boolean contains(String fingerprint) { return byFingerprint.containsKey(fingerprint); }
+
+    /**
+     * Claims a fingerprint for a run about to start, so two concurrent runs of the same
+     * configuration (e.g. identical SimulationDaemon jobs) cannot both run and append it.
+     * @return False if the fingerprint is already stored or claimed by another run.
+     */
+    synchronized boolean reserve(String fingerprint) {
+        return !byFingerprint.containsKey(fingerprint) && inFlight.add(fingerprint);
+    }
+
+    /** Drops a reservation; call once the run is appended or has failed. */
+    synchronized void release(String fingerprint) { inFlight.remove(fingerprint); }
+
+    /** Appends one run to the data file and the index. */
+    synchronized void append(String fingerprint, Map<String, String> parameters, Map<String, String> metrics) throws IOException {
+        if (dataFile.length() > indexedBytes) indexTail(dataFile.length()); // Records appended by another run since we opened
+        StringBuilder line = new StringBuilder(fingerprint);
+        parameters.forEach((k, v) -> line.append('\t').append(k).append('=').append(clean(v)));
+        line.append('\t');
+        metrics.forEach((k, v) -> line.append('\t').append(k).append('=').append(clean(v)));
+        byte[] bytes = line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+        long offset = dataFile.length();
+        try (FileOutputStream out = new FileOutputStream(dataFile, true)) {
+            out.write(bytes);
+        }
+        IndexEntry entry = new IndexEntry(fingerprint, offset, bytes.length - 1, new LinkedHashMap<>(parameters));
+        writeIndexEntries(Collections.singletonList(entry));
+        addToMemoryIndex(entry);
+        indexedBytes = offset + bytes.length;
+    }
+
+    /**
+     * @param where Parameter values every returned record must have (empty matches everything).
+     * @return Matching records in the order they were stored.
+     */
+    synchronized List<Record> query(Map<String, String> where) throws IOException {
+        Collection<IndexEntry> candidates = entries;
+        for (Map.Entry<String, String> condition : where.entrySet()) { // Start from the most selective condition
+            List<IndexEntry> matches = byParameter.getOrDefault(condition.getKey(), Collections.emptyMap())
+                                                  .getOrDefault(condition.getValue(), Collections.emptyList());
+            if (matches.size() < candidates.size()) candidates = matches;
+        }
+        List<IndexEntry> selected = new ArrayList<>();
+        for (IndexEntry e : candidates) {
+            boolean all = true;
+            for (Map.Entry<String, String> condition : where.entrySet()) {
+                if (!condition.getValue().equals(e.parameters.get(condition.getKey()))) { all = false; break; }
+            }
+            if (all) selected.add(e);
+        }
+        selected.sort(Comparator.comparingLong(e -> e.offset));
+
+        List<Record> records = new ArrayList<>();
+        if (selected.isEmpty()) return records;
+        try (RandomAccessFile in = new RandomAccessFile(dataFile, "r")) {
+            for (IndexEntry e : selected) {
+                byte[] bytes = new byte[e.length];
+                in.seek(e.offset);
+                in.readFully(bytes);
+                records.add(parseRecord(new String(bytes, StandardCharsets.UTF_8)));
+            }
+        }
+        return records;
+    }
+
+    // --- Fingerprinting ---
+
+    /** Every public static PEGASISConfig field that can affect results, by name. Arrays are written out in full. */
+    static Map<String, String> configParameters() {
+        Map<String, String> params = new TreeMap<>();
+        for (Field f : PEGASISConfig.class.getDeclaredFields()) {
+            int mod = f.getModifiers();
+            if (!Modifier.isStatic(mod) || !Modifier.isPublic(mod) || NON_RESULT_FIELDS.contains(f.getName())) continue;
+            try {
+                Object v = f.get(null);
+                if (v != null && v.getClass().isArray()) {
+                    String s = Arrays.deepToString(new Object[] { v });
+                    params.put(f.getName(), s.substring(1, s.length() - 1));
+                } else {
+                    params.put(f.getName(), String.valueOf(v));
+                }
+            } catch (IllegalAccessException e) {
+                System.err.println("ResultsStore: cannot read PEGASISConfig." + f.getName() + ": " + e.getMessage());
+            }
+        }
+        return params;
+    }
+
+    /** @return Hex SHA-256 (first 128 bits) of the protocol, version, seed, configuration and exact node deployment. */
+    static String fingerprint(String protocolName, long seed, List<SimulationRunner.NodeInitialConfig> deployment) {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append("version=").append(PEGASISConfig.PROTOCOL_VERSION).append('\n')
+                 .append("protocol=").append(protocolName).append('\n')
+                 .append("seed=").append(seed).append('\n');
+        configParameters().forEach((k, v) -> canonical.append(k).append('=').append(v).append('\n'));
+        for (SimulationRunner.NodeInitialConfig n : deployment) {
+            canonical.append(n.id).append(',').append(Double.doubleToLongBits(n.x)).append(',')
+                     .append(Double.doubleToLongBits(n.y)).append(',').append(Double.doubleToLongBits(n.initialEnergy)).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) hex.append(String.format("%02x", digest[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e); // Every Java platform must provide it
+        }
+    }
+
+    // --- Index maintenance ---
+
+    private void loadIndex() throws IOException {
+        long dataLength = dataFile.exists() ? dataFile.length() : 0;
+        List<IndexEntry> loaded = new ArrayList<>();
+        boolean valid = true;
+        if (indexFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    String[] f = line.split("\t", -1);
+                    loaded.add(new IndexEntry(f[0], Long.parseLong(f[1]), Integer.parseInt(f[2]), parsePairs(f, 3, f.length)));
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                valid = false;
+            }
+        }
+        long end = loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).offset + loaded.get(loaded.size() - 1).length + 1;
+        if (!valid || end > dataLength) { // Unreadable, or the data file was replaced or truncated: rebuild
+            System.out.println("ResultsStore: rebuilding index " + indexFile.getPath());
+            loaded.clear();
+            end = 0;
+            Files.deleteIfExists(indexFile.toPath());
+        }
+        loaded.forEach(this::addToMemoryIndex);
+        indexedBytes = end;
+        if (dataLength > end) indexTail(dataLength);
+    }
+
+    /** Indexes the complete records between indexedBytes and dataLength. */
+    private void indexTail(long dataLength) throws IOException {
+        byte[] tail = new byte[(int) (dataLength - indexedBytes)];
+        try (RandomAccessFile in = new RandomAccessFile(dataFile, "r")) {
+            in.seek(indexedBytes);
+            in.readFully(tail);
+        }
+        List<IndexEntry> added = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i < tail.length; i++) {
+            if (tail[i] != '\n') continue;
+            if (i > lineStart) {
+                Record r = parseRecord(new String(tail, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                added.add(new IndexEntry(r.fingerprint, indexedBytes + lineStart, i - lineStart, r.parameters));
+            }
+            lineStart = i + 1;
+        }
+        writeIndexEntries(added);
+        added.forEach(this::addToMemoryIndex);
+        indexedBytes += lineStart; // A partially written last line stays unindexed
+    }
+
+    private void writeIndexEntries(List<IndexEntry> added) throws IOException {
+        if (added.isEmpty()) return;
+        StringBuilder sb = new StringBuilder();
+        for (IndexEntry e : added) {
+            sb.append(e.fingerprint).append('\t').append(e.offset).append('\t').append(e.length);
+            e.parameters.forEach((k, v) -> sb.append('\t').append(k).append('=').append(v));
+            sb.append('\n');
+        }
+        try (FileOutputStream out = new FileOutputStream(indexFile, true)) {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void addToMemoryIndex(IndexEntry e) {
+        entries.add(e);
+        byFingerprint.put(e.fingerprint, e);
+        e.parameters.forEach((k, v) -> byParameter.computeIfAbsent(k, x -> new HashMap<>())
+                                                  .computeIfAbsent(v, x -> new ArrayList<>()).add(e));
+    }
+
+    private static Record parseRecord(String line) {
+        String[] f = line.split("\t", -1);
+        int divider = 1;
+        while (divider < f.length && !f[divider].isEmpty()) divider++;
+        return new Record(f[0], parsePairs(f, 1, divider), parsePairs(f, divider + 1, f.length));
+    }
+
+    private static Map<String, String> parsePairs(String[] fields, int from, int to) {
+        Map<String, String> pairs = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            int eq = fields[i].indexOf('=');
+            if (eq > 0) pairs.put(fields[i].substring(0, eq), fields[i].substring(eq + 1));
+        }
+        return pairs;
+    }
+
+    private static String clean(String value) { return value == null ? "null" : value.replace('\t', ' ').replace('\n', ' '); }
+
+    // --- Command-line query ---
+
+    public static void main(String[] args) throws IOException {
+        String path = PEGASISConfig.RESULTS_STORE_FILENAME;
+        int first = 0;
+        if (args.length > 0 && !args[0].contains("=")) { path = args[0]; first = 1; }
+        Map<String, String> where = new LinkedHashMap<>();
+        for (int i = first; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq <= 0) { System.err.println("Ignoring query term without '=': " + args[i]); continue; }
+            where.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+        }
+
+        long start = System.nanoTime();
+        ResultsStore store = open(path);
+        List<Record> records = store.query(where);
+        double elapsedMs = (System.nanoTime() - start) / 1e6;
+
+        // Only the parameters that differ between the matches are worth a column
+        Set<String> varying = new LinkedHashSet<>();
+        Set<String> metricColumns = new LinkedHashSet<>();
+        for (Record r : records) {
+            metricColumns.addAll(r.metrics.keySet());
+            for (Map.Entry<String, String> p : r.parameters.entrySet()) {
+                if (!p.getValue().equals(records.get(0).parameters.get(p.getKey()))) varying.add(p.getKey());
+            }
+        }
+        List<String> header = new ArrayList<>();
+        header.add("Fingerprint");
+        header.addAll(varying);
+        header.addAll(metricColumns);
+        System.out.println(String.join(",", header));
+        for (Record r : records) {
+            List<String> row = new ArrayList<>();
+            row.add(r.fingerprint);
+            for (String k : varying) row.add(csv(r.parameters.getOrDefault(k, "")));
+            for (String k : metricColumns) row.add(csv(r.metrics.getOrDefault(k, "")));
+            System.out.println(String.join(",", row));
+        }
+        System.err.printf("%d of %d records matched in %.2f ms%n", records.size(), store.size(), elapsedMs);
+    }
+
+    private static String csv(String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+}
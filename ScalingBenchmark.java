@@ -0,0 +1,303 @@
+// File: ScalingBenchmark.java
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end scaling benchmark: whole runs of both protocols over a fixed scenario matrix
+ * (node count x static or mobile sink). The field grows with the node count so density stays at
+ * 100 nodes per 100x100 m, and the sink sits 75% of a side beyond the field as in the default
+ * setup. Each scenario runs in a fresh JVM, started with this JVM's options, so heap peaks
+ * and JIT state do not leak between scenarios. It runs until LND, maxRounds or the wall-clock budget.
+ *
+ * Recorded per scenario: wall time, setup time, rounds/sec, wall time to LND, peak heap (the sum
+ * of the heap pools' peaks) and allocation rate, measured on the simulation thread. "record" writes them
+ * to the baseline file. "compare" (the default) runs the matrix again and exits with status 1
+ * and a report if any scenario regressed beyond the tolerance: fewer rounds/sec, a later LND,
+ * a higher heap peak, more bytes allocated per round, or an LND that was reached before and is
+ * no longer. Allocation is compared per round, because a faster run allocates at a higher rate
+ * for the same work.
+ *
+ * Usage: java [-Xmx...] ScalingBenchmark [record|compare] [tolerance] [nodeTiers] [maxRounds] [budgetSecPerScenario]
+ *        e.g. java -Xmx4g ScalingBenchmark compare 0.15 1000,10000 5000 120
+ */
+public class ScalingBenchmark {
+
+    private static final String DEFAULT_TIERS = "1000,10000,100000,1000000";
+    private static final String BASELINE_FILENAME = "scaling_benchmark_baseline.csv";
+    private static final String RESULTS_FILENAME = "scaling_benchmark_results.csv";
+    private static final String CSV_HEADER = "Scenario,Protocol,Nodes,Sink,Status,RoundsSimulated,WallMs,SetupMs," +
+                                             "RoundsPerSec,TimeToLndMs,PeakHeapMB,AllocMBPerSec,AllocBytesPerRound";
+    private static final String RESULT_PREFIX = "BENCH ";
+    private static final long KILL_GRACE_SEC = 30; // Past the budget, for a setup or round that never yields
+
+    /** One scenario's measurements; status is LND, MAX_ROUNDS, BUDGET (stopped between rounds) or KILLED. */
+    static final class Result {
+        String scenario, protocol, sink, status;
+        int nodes, rounds;
+        long wallMs, setupMs, timeToLndMs = -1, peakHeapBytes, allocatedBytes;
+
+        double roundsPerSec() { return wallMs > setupMs ? rounds * 1000.0 / (wallMs - setupMs) : 0.0; }
+        double allocMBPerSec() { return wallMs > 0 ? allocatedBytes / 1048576.0 * 1000.0 / wallMs : 0.0; }
+        double allocBytesPerRound() { return rounds > 0 ? (double) allocatedBytes / rounds : 0.0; }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%s,%s,%d,%d,%d,%.3f,%d,%.2f,%.2f,%.1f", scenario, protocol, nodes, sink, status,
+                                 rounds, wallMs, setupMs, roundsPerSec(), timeToLndMs, peakHeapBytes / 1048576.0,
+                                 allocMBPerSec(), allocBytesPerRound());
+        }
+
+        static Result fromCsv(String line) {
+            String[] f = line.split(",");
+            Result r = new Result();
+            r.scenario = f[0]; r.protocol = f[1]; r.nodes = Integer.parseInt(f[2]); r.sink = f[3]; r.status = f[4];
+            r.rounds = Integer.parseInt(f[5]); r.wallMs = Long.parseLong(f[6]); r.setupMs = Long.parseLong(f[7]);
+            r.timeToLndMs = Long.parseLong(f[9]);
+            r.peakHeapBytes = Math.round(Double.parseDouble(f[10]) * 1048576.0);
+            r.allocatedBytes = Math.round(Double.parseDouble(f[12]) * r.rounds);
+            return r;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 1 && args[0].equals("--scenario")) {
+            runScenario(args[1], Integer.parseInt(args[2]), args[3], Integer.parseInt(args[4]), Long.parseLong(args[5]));
+            return;
+        }
+        boolean record = args.length >= 1 && args[0].equalsIgnoreCase("record");
+        double tolerance = args.length >= 2 ? Double.parseDouble(args[1]) : 0.15;
+        String tiers = args.length >= 3 ? args[2] : DEFAULT_TIERS;
+        int maxRounds = args.length >= 4 ? Integer.parseInt(args[3]) : 5000;
+        long budgetSec = args.length >= 5 ? Long.parseLong(args[4]) : 120;
+
+        Map<String, Result> baseline = record ? new LinkedHashMap<>() : loadBaseline(BASELINE_FILENAME);
+        if (!record && baseline == null) {
+            System.err.println("ERROR: No baseline at " + BASELINE_FILENAME + ". Run 'java ScalingBenchmark record' first.");
+            System.exit(1);
+        }
+
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-24s %-10s %-7s %10s %10s %12s %12s %10s %12s%n", "Scenario", "Status", "Rounds", "Wall ms",
+                          "Rounds/s", "LND ms", "PeakHeap MB", "Alloc MB/s", "Alloc B/rnd");
+        for (String tier : tiers.split(",")) {
+            int nodes = Integer.parseInt(tier.trim());
+            for (String sink : new String[] { "static", "mobile" }) {
+                for (String protocol : new String[] { "standard", "halem" }) {
+                    Result r = runInChildJvm(protocol, nodes, sink, maxRounds, budgetSec);
+                    results.add(r);
+                    System.out.printf(Locale.ROOT, "%-24s %-10s %-7d %10d %10.2f %12s %12.1f %10.1f %12.0f%n", r.scenario, r.status,
+                                      r.rounds, r.wallMs, r.roundsPerSec(), r.timeToLndMs < 0 ? "-" : String.valueOf(r.timeToLndMs),
+                                      r.peakHeapBytes / 1048576.0, r.allocMBPerSec(), r.allocBytesPerRound());
+                }
+            }
+        }
+
+        writeResults(results, record ? BASELINE_FILENAME : RESULTS_FILENAME);
+        if (record) return;
+
+        List<String> regressions = new ArrayList<>();
+        for (Result r : results) {
+            Result base = baseline.get(r.scenario);
+            if (base == null) {
+                System.out.println("  " + r.scenario + ": not in the baseline, not compared.");
+                continue;
+            }
+            regressions.addAll(compare(base, r, tolerance));
+        }
+        System.out.println();
+        if (regressions.isEmpty()) {
+            System.out.printf("SUCCESS: No scenario regressed by more than %.0f%% against %s.%n", tolerance * 100, BASELINE_FILENAME);
+            return;
+        }
+        System.err.printf("ERROR: %d regression(s) beyond %.0f%% against %s:%n", regressions.size(), tolerance * 100, BASELINE_FILENAME);
+        for (String line : regressions) System.err.println("  " + line);
+        System.exit(1);
+    }
+
+    static List<String> compare(Result base, Result now, double tolerance) {
+        List<String> out = new ArrayList<>();
+        String id = now.scenario + ": ";
+        if (base.status.equals("LND") && !now.status.equals("LND")) {
+            out.add(id + "reached LND in the baseline, now stopped with " + now.status + " after " + now.rounds + " rounds");
+        }
+        if (base.rounds > 0 && now.rounds == 0) {
+            out.add(id + "simulated " + base.rounds + " rounds in the baseline, now none (" + now.status + ")");
+            return out;
+        }
+        if (base.rounds == 0) return out; // Nothing to compare against
+        if (now.roundsPerSec() < base.roundsPerSec() * (1 - tolerance)) {
+            out.add(String.format(Locale.ROOT, "%srounds/sec %.2f vs baseline %.2f (%+.1f%%)", id, now.roundsPerSec(),
+                                  base.roundsPerSec(), percentChange(base.roundsPerSec(), now.roundsPerSec())));
+        }
+        if (base.timeToLndMs > 0 && now.timeToLndMs > 0 && now.timeToLndMs > base.timeToLndMs * (1 + tolerance)) {
+            out.add(String.format(Locale.ROOT, "%stime to LND %d ms vs baseline %d ms (%+.1f%%)", id, now.timeToLndMs,
+                                  base.timeToLndMs, percentChange(base.timeToLndMs, now.timeToLndMs)));
+        }
+        if (now.peakHeapBytes > base.peakHeapBytes * (1 + tolerance)) {
+            out.add(String.format(Locale.ROOT, "%speak heap %.1f MB vs baseline %.1f MB (%+.1f%%)", id, now.peakHeapBytes / 1048576.0,
+                                  base.peakHeapBytes / 1048576.0, percentChange(base.peakHeapBytes, now.peakHeapBytes)));
+        }
+        if (now.allocBytesPerRound() > base.allocBytesPerRound() * (1 + tolerance)) {
+            out.add(String.format(Locale.ROOT, "%sallocation %.0f B/round vs baseline %.0f B/round (%+.1f%%)", id, now.allocBytesPerRound(),
+                                  base.allocBytesPerRound(), percentChange(base.allocBytesPerRound(), now.allocBytesPerRound())));
+        }
+        return out;
+    }
+
+    private static double percentChange(double base, double now) { return base != 0 ? (now - base) / base * 100 : 0.0; }
+
+    /** Starts one scenario in a fresh JVM and parses its result line; kills it once the budget plus grace is spent. */
+    private static Result runInChildJvm(String protocol, int nodes, String sink, int maxRounds, long budgetSec)
+            throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(ScalingBenchmark.class.getName());
+        cmd.add("--scenario"); cmd.add(protocol); cmd.add(String.valueOf(nodes)); cmd.add(sink);
+        cmd.add(String.valueOf(maxRounds)); cmd.add(String.valueOf(budgetSec));
+
+        Process child = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        String[] lastLine = { null };
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) synchronized (lastLine) { lastLine[0] = line; }
+                }
+            } catch (IOException ignored) {
+                // Child killed mid-line
+            }
+        });
+        reader.start();
+        long start = System.nanoTime();
+        boolean finished = child.waitFor(budgetSec + KILL_GRACE_SEC, TimeUnit.SECONDS);
+        if (!finished) child.destroyForcibly().waitFor();
+        reader.join();
+
+        Result r;
+        synchronized (lastLine) { r = lastLine[0] != null ? parseResultLine(lastLine[0]) : new Result(); }
+        r.scenario = scenarioName(protocol, nodes, sink);
+        r.protocol = protocol; r.nodes = nodes; r.sink = sink;
+        if (!finished) {
+            r.status = "KILLED";
+            if (r.rounds == 0) r.wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start); // Else keep the last PROGRESS figures
+        } else if (r.status == null) {
+            r.status = "FAILED(exit " + child.exitValue() + ")";
+        }
+        return r;
+    }
+
+    private static String scenarioName(String protocol, int nodes, String sink) { return protocol + "-n" + nodes + "-" + sink; }
+
+    // --- Child side ---
+
+    /** Runs one scenario in this JVM, printing PROGRESS lines every 100 rounds and a final RESULT line. */
+    private static void runScenario(String protocolKey, int nodes, String sink, int maxRounds, long budgetSec) {
+        double side = 100.0 * Math.sqrt(nodes / 100.0);
+        PEGASISConfig.parseArgs(new String[] { String.valueOf(nodes), String.valueOf(side), String.valueOf(maxRounds),
+                String.valueOf(PEGASISConfig.INITIAL_ENERGY), String.valueOf(side / 2.0), String.valueOf(side * 1.75),
+                sink.equals("static") ? "0" : "1" });
+        List<SimulationRunner.NodeInitialConfig> deployment = SimulationRunner.generateInitialNodeDeployments(SimulationRunner.DEFAULT_DEPLOYMENT_SEED);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) { pool.resetPeakUsage(); heapPools.add(pool); }
+        }
+        long allocStart = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime(), budgetNanos = TimeUnit.SECONDS.toNanos(budgetSec);
+
+        Protocol protocol = protocolKey.equals("halem") ? new HALEMPegasisProtocol() : new StandardPegasisProtocol();
+        protocol.setDeploymentContext(new DeploymentContext(deployment)); // Built inside the timed window, so setupMs includes it
+        List<SensorNode> sensorNodes = SimulationRunner.createNodesFromInitialConfig(deployment);
+        List<BaseStation> sinks = SimulationRunner.createSinks(sensorNodes);
+        MetricsCollector metrics = new MetricsCollector(nodes);
+        protocol.setup(sensorNodes, sinks, metrics, new Random(protocol.getProtocolName().hashCode() + "ScalingBenchmark".hashCode()));
+
+        Result r = new Result();
+        r.setupMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        r.status = "MAX_ROUNDS";
+        while (r.rounds < maxRounds) {
+            if (System.nanoTime() - start > budgetNanos) { r.status = "BUDGET"; break; }
+            r.rounds++;
+            for (BaseStation s : sinks) s.move();
+            protocol.runSingleRound(r.rounds);
+            if (protocol.getAliveNodesCount() == 0) {
+                r.status = "LND";
+                r.timeToLndMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                break;
+            }
+            if (r.rounds % 100 == 0) {
+                r.wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                r.allocatedBytes = threads.getThreadAllocatedBytes(threadId) - allocStart;
+                System.out.println(resultLine(r, "PROGRESS", heapPools));
+            }
+        }
+        r.wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        r.allocatedBytes = threads.getThreadAllocatedBytes(threadId) - allocStart;
+        System.out.println(resultLine(r, r.status, heapPools));
+    }
+
+    private static String resultLine(Result r, String status, List<MemoryPoolMXBean> heapPools) {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) peak += pool.getPeakUsage().getUsed();
+        return RESULT_PREFIX + status + " " + r.rounds + " " + r.wallMs + " " + r.setupMs + " " + r.timeToLndMs + " " +
+               peak + " " + r.allocatedBytes;
+    }
+
+    private static Result parseResultLine(String line) {
+        String[] f = line.substring(RESULT_PREFIX.length()).trim().split(" ");
+        Result r = new Result();
+        r.status = f[0].equals("PROGRESS") ? null : f[0]; // A PROGRESS line as the last one means the child was killed
+        r.rounds = Integer.parseInt(f[1]); r.wallMs = Long.parseLong(f[2]); r.setupMs = Long.parseLong(f[3]);
+        r.timeToLndMs = Long.parseLong(f[4]); r.peakHeapBytes = Long.parseLong(f[5]); r.allocatedBytes = Long.parseLong(f[6]);
+        return r;
+    }
+
+    // --- Baseline file ---
+
+    private static Map<String, Result> loadBaseline(String filename) {
+        File file = new File(filename);
+        if (!file.exists()) return null;
+        Map<String, Result> baseline = new LinkedHashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line = in.readLine(); // Header
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                Result r = Result.fromCsv(line);
+                baseline.put(r.scenario, r);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("ERROR: Reading baseline " + filename + ": " + e.getMessage());
+            return null;
+        }
+        return baseline;
+    }
+
+    private static void writeResults(List<Result> results, String filename) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println(CSV_HEADER);
+            for (Result r : results) writer.println(r.toCsv());
+            System.out.println("SUCCESS: Benchmark results written to " + filename);
+        } catch (IOException e) {
+            System.err.println("ERROR: Writing benchmark results to " + filename + ": " + e.getMessage());
+        }
+    }
+}
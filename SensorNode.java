@@ -17,6 +17,8 @@ public class SensorNode {
     private int packetsSent;
     private int packetsReceived;
     private int timesAsLeader;
+    private int payloadBits; // Data held for forwarding this round (own reading plus fused relayed data)
+    private int payloadReadings; // Number of sensor readings represented in payloadBits
 
     public SensorNode(int id, double x, double y, double initialEnergy) {
         this.id = id;
@@ -43,10 +45,16 @@ public class SensorNode {
     public int getPacketsSent() { return packetsSent; }
     public int getPacketsReceived() { return packetsReceived; }
     public int getTimesAsLeader() { return timesAsLeader; }
+    public int getPayloadBits() { return payloadBits; }
+    public int getPayloadReadings() { return payloadReadings; }
 
 
     // --- Setters ---
     public void setRole(Role role) { this.role = role; }
+    public void setPayloadBits(int bits) { this.payloadBits = bits; }
+    public void setPayloadReadings(int readings) { this.payloadReadings = readings; }
+    /** Starts a round holding only this node's own reading. */
+    public void resetPayload(int bits) { this.payloadBits = bits; this.payloadReadings = 1; }
     // Status is primarily changed via energy depletion logic
 
     // --- Energy Consumption & State Update ---
@@ -81,6 +89,8 @@ public class SensorNode {
         this.packetsSent = 0;
         this.packetsReceived = 0;
         this.timesAsLeader = 0;
+        this.payloadBits = 0;
+        this.payloadReadings = 0;
     }
 
     @Override
@@ -0,0 +1,71 @@
+// File: SimulationClient.java
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Thin command-line client for SimulationDaemon. It sends one request and copies the reply as it
+ * streams in: the job's own output (OUT/ERR lines) goes to stdout/stderr without the prefix, and
+ * protocol lines (QUEUED, STARTED, RESULT, SKIPPED, CSV, DONE, FAILED, STATUS) are printed as
+ * received, so scripts can grep for "^CSV " or "^RESULT". The exit status is 0 once a job is
+ * DONE (or STATUS/SHUTDOWN got an answer), and 1 if it failed or the daemon could not be reached.
+ *
+ * Usage: java SimulationClient [port | unix socket path] [-q] run [standard SimulationRunner args...]
+ *        java SimulationClient [port | unix socket path] status|shutdown
+ * -q drops the job's OUT/ERR lines.
+ */
+public class SimulationClient {
+
+    public static void main(String[] args) {
+        int i = 0;
+        String address = String.valueOf(SimulationDaemon.DEFAULT_PORT);
+        if (i < args.length && !isCommand(args[i]) && !args[i].equals("-q")) address = args[i++];
+        boolean quiet = false;
+        if (i < args.length && args[i].equals("-q")) { quiet = true; i++; }
+        if (i >= args.length || !isCommand(args[i])) {
+            System.err.println("Usage: java SimulationClient [port | unix socket path] [-q] run|status|shutdown [args...]");
+            System.exit(1);
+        }
+        String command = args[i].toUpperCase();
+        String[] rest = Arrays.copyOfRange(args, i + 1, args.length);
+        System.exit(send(SimulationDaemon.parseAddress(address), command, rest, quiet) ? 0 : 1);
+    }
+
+    private static boolean isCommand(String arg) {
+        return arg.equalsIgnoreCase("run") || arg.equalsIgnoreCase("status") || arg.equalsIgnoreCase("shutdown");
+    }
+
+    /** @return Whether the daemon answered and, for RUN, the job finished. */
+    static boolean send(SocketAddress address, String command, String[] args, boolean quiet) {
+        try (SocketChannel ch = SocketChannel.open(SimulationDaemon.familyOf(address))) {
+            ch.connect(address);
+            PrintStream out = new PrintStream(Channels.newOutputStream(ch), true, StandardCharsets.UTF_8);
+            out.println(command + (args.length > 0 ? " " + String.join(" ", args) : ""));
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(ch), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("OUT ")) {
+                    if (!quiet) System.out.println(line.substring(4));
+                } else if (line.startsWith("ERR ")) {
+                    if (!quiet) System.err.println(line.substring(4));
+                } else {
+                    System.out.println(line);
+                    if (line.startsWith("DONE ")) return true;
+                    if (line.startsWith("FAILED ")) return false;
+                    if (!command.equals("RUN")) return true; // STATUS and SHUTDOWN answer with one line
+                }
+            }
+            System.err.println("ERROR: Daemon at " + address + " closed the connection before the job finished.");
+            return false;
+        } catch (IOException e) {
+            System.err.println("ERROR: Cannot reach simulation daemon at " + address + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+// File: SimulationDaemon.java
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resident simulation server, so repeated studies skip JVM startup and run on already compiled
+ * code. It listens on a loopback TCP port or a Unix domain socket and runs each job (the same
+ * arguments SimulationRunner takes) on a bounded pool, with at most queueCapacity jobs waiting.
+ *
+ * PEGASISConfig is global, so a job first restores the configuration the daemon started with and
+ * then applies its arguments. Jobs with identical arguments run concurrently; a job with different
+ * arguments waits until the running ones finish. Jobs are admitted in arrival order. Each job
+ * writes its CSV files to daemon_jobs/job-NNNNN/, and all jobs share one results store, so
+ * completed runs are skipped across jobs as they are across SimulationRunner invocations.
+ *
+ * Wire protocol, one UTF-8 line per message. Requests: "RUN [args...]", "STATUS", "SHUTDOWN".
+ * A RUN is answered with QUEUED id position, STARTED id, then OUT/ERR lines for everything the job
+ * prints, "RESULT\tprotocol\tkey=value..." or "SKIPPED\tprotocol" per protocol, "CSV path" per file
+ * written, and finally "DONE id millis" or "FAILED id reason". SimulationClient speaks this protocol.
+ *
+ * Usage: java SimulationDaemon [port | unix socket path] [poolSize] [queueCapacity]
+ */
+public class SimulationDaemon {
+
+    static final int DEFAULT_PORT = 7077;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final String JOBS_DIR = "daemon_jobs";
+
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "daemon-connection");
+        t.setDaemon(true);
+        return t;
+    });
+    private final int queueCapacity;
+    private final ConfigGate gate = new ConfigGate();
+    private final ThreadRoutedStream routedOut, routedErr;
+    private final ResultsStore resultsStore;
+    private final AtomicInteger jobCounter = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger(), completed = new AtomicInteger(), failed = new AtomicInteger();
+    private final long startedAtNanos = System.nanoTime();
+    private volatile ServerSocketChannel server;
+
+    SimulationDaemon(int poolSize, int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity));
+        // Everything a job prints goes to its client; other threads keep the daemon's console
+        this.routedOut = new ThreadRoutedStream(System.out);
+        this.routedErr = new ThreadRoutedStream(System.err);
+        System.setOut(new PrintStream(routedOut, true));
+        System.setErr(new PrintStream(routedErr, true));
+        this.resultsStore = SimulationRunner.openResultsStore();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String address = args.length >= 1 ? args[0] : String.valueOf(DEFAULT_PORT);
+        int poolSize = args.length >= 2 ? Math.max(1, Integer.parseInt(args[1])) : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = args.length >= 3 ? Math.max(1, Integer.parseInt(args[2])) : DEFAULT_QUEUE_CAPACITY;
+        new SimulationDaemon(poolSize, queueCapacity).serve(parseAddress(address));
+    }
+
+    /** A port number means loopback TCP; anything else is a Unix domain socket path. */
+    static SocketAddress parseAddress(String address) {
+        if (address.matches("\\d+")) return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    static ProtocolFamily familyOf(SocketAddress address) {
+        return address instanceof UnixDomainSocketAddress ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+    }
+
+    void serve(SocketAddress address) throws IOException {
+        Path socketFile = address instanceof UnixDomainSocketAddress ? ((UnixDomainSocketAddress) address).getPath() : null;
+        if (socketFile != null && Files.exists(socketFile)) {
+            System.err.println("ERROR: " + socketFile + " already exists. Remove it if no daemon is using it.");
+            return;
+        }
+        try (ServerSocketChannel channel = ServerSocketChannel.open(familyOf(address))) {
+            channel.bind(address);
+            server = channel;
+            System.out.println("SUCCESS: Simulation daemon listening on " + address + " (" + pool.getMaximumPoolSize() +
+                               " workers, queue " + queueCapacity + ", jobs in " + JOBS_DIR + "/).");
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = channel.accept();
+                } catch (ClosedChannelException e) {
+                    break; // SHUTDOWN closed the server socket
+                }
+                connections.execute(() -> handle(client));
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (socketFile != null) Files.deleteIfExists(socketFile);
+            System.out.println("Simulation daemon stopped after " + completed.get() + " completed and " + failed.get() + " failed jobs.");
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (SocketChannel ch = channel;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(ch), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(Channels.newOutputStream(ch), true, StandardCharsets.UTF_8)) {
+            String request = in.readLine();
+            if (request == null || request.isBlank()) return;
+            String[] tokens = request.trim().split("\\s+");
+            switch (tokens[0].toUpperCase()) {
+                case "RUN":
+                    runJob(Arrays.copyOfRange(tokens, 1, tokens.length), out);
+                    break;
+                case "STATUS":
+                    out.printf("STATUS queued=%d running=%d completed=%d failed=%d uptime_s=%d config=%s%n",
+                               pool.getQueue().size(), running.get(), completed.get(), failed.get(),
+                               (System.nanoTime() - startedAtNanos) / 1_000_000_000L, gate.currentKey());
+                    break;
+                case "SHUTDOWN":
+                    out.println("BYE " + (pool.getQueue().size() + running.get()) + " jobs still to finish");
+                    server.close();
+                    break;
+                default:
+                    out.println("FAILED - unknown request " + tokens[0]);
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Daemon connection: " + e.getMessage());
+        }
+    }
+
+    /** Queues one job and keeps the connection open until it has streamed its result. */
+    private void runJob(String[] jobArgs, PrintStream out) {
+        int id = jobCounter.incrementAndGet();
+        Future<?> future;
+        synchronized (pool) {
+            out.println("QUEUED " + id + " " + pool.getQueue().size());
+            try {
+                future = pool.submit(() -> executeJob(id, jobArgs, out));
+            } catch (RejectedExecutionException e) {
+                out.println("FAILED " + id + " queue full (" + queueCapacity + " jobs waiting)");
+                return;
+            }
+        }
+        try {
+            future.get();
+        } catch (Exception e) {
+            out.println("FAILED " + id + " " + e);
+        }
+    }
+
+    private void executeJob(int id, String[] jobArgs, PrintStream client) {
+        long start = System.nanoTime();
+        LinePrefixStream jobOut = new LinePrefixStream(client, "OUT "), jobErr = new LinePrefixStream(client, "ERR ");
+        routedOut.route(jobOut);
+        routedErr.route(jobErr);
+        running.incrementAndGet();
+        try {
+            client.println("STARTED " + id);
+            List<SimulationRunner.RunOutcome> outcomes;
+            gate.acquire(jobArgs);
+            try {
+                File dir = new File(JOBS_DIR, String.format("job-%05d", id));
+                if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+                outcomes = SimulationRunner.runConfiguredSimulations(dir.getPath(), resultsStore);
+            } finally {
+                gate.release();
+            }
+            System.out.flush();
+            System.err.flush();
+            jobOut.flushLine();
+            jobErr.flushLine();
+            for (SimulationRunner.RunOutcome outcome : outcomes) {
+                if (outcome.skipped) {
+                    client.println("SKIPPED\t" + outcome.protocolName);
+                    continue;
+                }
+                StringBuilder line = new StringBuilder("RESULT\t").append(outcome.protocolName);
+                outcome.summary.forEach((k, v) -> line.append('\t').append(k).append('=').append(v));
+                client.println(line);
+                for (String path : outcome.outputFiles) client.println("CSV " + new File(path).getAbsolutePath());
+            }
+            client.println("DONE " + id + " " + (System.nanoTime() - start) / 1_000_000L);
+            completed.incrementAndGet();
+        } catch (Exception e) {
+            jobOut.flushLine();
+            jobErr.flushLine();
+            client.println("FAILED " + id + " " + e);
+            failed.incrementAndGet();
+        } finally {
+            running.decrementAndGet();
+            routedOut.route(null);
+            routedErr.route(null);
+        }
+    }
+
+    /**
+     * Admits jobs in arrival order, letting a job in while others run only if they were started
+     * with the same arguments, i.e. need the same PEGASISConfig. Switching configurations
+     * restores the defaults captured at startup and parses the new job's arguments.
+     */
+    private static final class ConfigGate {
+        private final Map<Field, Object> defaults = new LinkedHashMap<>();
+        private String currentKey = null;
+        private int active = 0;
+        private long nextTicket = 0, nowServing = 0;
+
+        ConfigGate() {
+            for (Field f : PEGASISConfig.class.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                if (!Modifier.isStatic(mod) || Modifier.isFinal(mod)) continue;
+                try {
+                    defaults.put(f, deepCopy(f.get(null)));
+                } catch (IllegalAccessException e) {
+                    System.err.println("ERROR: Daemon cannot snapshot PEGASISConfig." + f.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        synchronized String currentKey() { return currentKey == null ? "none" : "\"" + currentKey + "\""; }
+
+        synchronized void acquire(String[] args) throws InterruptedException, IllegalAccessException {
+            String key = String.join(" ", args);
+            long ticket = nextTicket++;
+            while (ticket != nowServing || (active > 0 && !key.equals(currentKey))) wait();
+            try {
+                if (!key.equals(currentKey)) {
+                    currentKey = null; // Half-applied until parseArgs returns
+                    for (Map.Entry<Field, Object> e : defaults.entrySet()) e.getKey().set(null, deepCopy(e.getValue()));
+                    PEGASISConfig.parseArgs(args);
+                    currentKey = key;
+                }
+            } finally {
+                nowServing++;
+                notifyAll();
+            }
+            active++;
+        }
+
+        synchronized void release() {
+            active--;
+            notifyAll();
+        }
+
+        private static Object deepCopy(Object value) {
+            if (value == null || !value.getClass().isArray()) return value;
+            int n = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), n);
+            for (int i = 0; i < n; i++) Array.set(copy, i, deepCopy(Array.get(value, i)));
+            return copy;
+        }
+    }
+
+    /** Sends each thread's output to the stream registered for it, or to the fallback. */
+    private static final class ThreadRoutedStream extends OutputStream {
+        private final OutputStream fallback;
+        private final ThreadLocal<OutputStream> target = new ThreadLocal<>();
+
+        ThreadRoutedStream(OutputStream fallback) { this.fallback = fallback; }
+
+        void route(OutputStream out) {
+            if (out == null) target.remove(); else target.set(out);
+        }
+
+        private OutputStream current() {
+            OutputStream t = target.get();
+            return t != null ? t : fallback;
+        }
+
+        @Override public void write(int b) throws IOException { current().write(b); }
+        @Override public void write(byte[] b, int off, int len) throws IOException { current().write(b, off, len); }
+        @Override public void flush() throws IOException { current().flush(); }
+    }
+
+    /** Forwards complete lines to the client, each behind a prefix. */
+    private static final class LinePrefixStream extends OutputStream {
+        private final PrintStream client;
+        private final String prefix;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LinePrefixStream(PrintStream client, String prefix) { this.client = client; this.prefix = prefix; }
+
+        @Override
+        public synchronized void write(int b) {
+            if (b == '\n') emit();
+            else line.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) write(b[i]);
+        }
+
+        /** Sends a trailing line that has no newline yet. */
+        synchronized void flushLine() {
+            if (line.size() > 0) emit();
+        }
+
+        private void emit() {
+            String text = new String(line.toByteArray(), Charset.defaultCharset());
+            line.reset();
+            if (text.endsWith("\r")) text = text.substring(0, text.length() - 1);
+            client.println(prefix + text);
+        }
+    }
+}
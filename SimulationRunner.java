@@ -1,52 +1,90 @@
 // File: SimulationRunner.java
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 public class SimulationRunner {
 
-    private static class NodeInitialConfig {
+    static class NodeInitialConfig {
         final int id; final double x; final double y; final double initialEnergy;
         NodeInitialConfig(int id, double x, double y, double initialEnergy) {
             this.id = id; this.x = x; this.y = y; this.initialEnergy = initialEnergy;
         }
     }
 
+    /** What one protocol run produced: its summary metrics and the files it wrote, or that it was skipped. */
+    static final class RunOutcome {
+        final String protocolName, runSuffix;
+        final boolean skipped;
+        final Map<String, String> summary;
+        final List<String> outputFiles;
+
+        RunOutcome(String protocolName, String runSuffix, boolean skipped, Map<String, String> summary, List<String> outputFiles) {
+            this.protocolName = protocolName; this.runSuffix = runSuffix; this.skipped = skipped;
+            this.summary = summary; this.outputFiles = outputFiles;
+        }
+    }
+
     public static void main(String[] args) {
         PEGASISConfig.parseArgs(args);
+        runConfiguredSimulations("", openResultsStore());
+
+        System.out.println(); System.out.println();
+        System.out.println("All configured simulations complete.");
+    }
+
+    /**
+     * Runs every configured protocol on one deployment built from the current PEGASISConfig.
+     * @param outputDir Directory for the CSV files ("" for the working directory).
+     * @param resultsStore Store to skip and record runs in, or null.
+     */
+    static List<RunOutcome> runConfiguredSimulations(String outputDir, ResultsStore resultsStore) {
         List<NodeInitialConfig> initialNodeDeployments = generateInitialNodeDeployments();
+        DeploymentContext deploymentContext = new DeploymentContext(initialNodeDeployments);
+        List<RunOutcome> outcomes = new ArrayList<>();
 
         Protocol standardPegasis = new StandardPegasisProtocol();
-        runProtocolSimulation(standardPegasis, initialNodeDeployments, "StandardPegasisRun");
+        standardPegasis.setDeploymentContext(deploymentContext);
+        outcomes.add(runProtocolSimulation(standardPegasis, initialNodeDeployments, "StandardPegasisRun", resultsStore, outputDir));
 
         System.out.println(); System.out.println(); // Add some spacing
         System.out.println("=======================================================");
         System.out.println("DEBUG: Preparing to run HALEM-PEGASIS...");
         Protocol halemPegasis = new HALEMPegasisProtocol();
-        runProtocolSimulation(halemPegasis, initialNodeDeployments, "HALEMPegasisRun");
+        halemPegasis.setDeploymentContext(deploymentContext);
+        outcomes.add(runProtocolSimulation(halemPegasis, initialNodeDeployments, "HALEMPegasisRun", resultsStore, outputDir));
         System.out.println("DEBUG: HALEM-PEGASIS run attempt completed.");
         System.out.println("=======================================================");
-
-        System.out.println(); System.out.println();
-        System.out.println("All configured simulations complete.");
+        return outcomes;
     }
 
-    private static List<NodeInitialConfig> generateInitialNodeDeployments() {
-        List<NodeInitialConfig> configs = new ArrayList<>();
-        Random deploymentRandom = new Random(42);
+    static final long DEFAULT_DEPLOYMENT_SEED = 42L;
+
+    static List<NodeInitialConfig> generateInitialNodeDeployments() {
         System.out.println(); // Spacing
         System.out.println("Generating initial node deployment...");
+        List<NodeInitialConfig> configs = generateInitialNodeDeployments(DEFAULT_DEPLOYMENT_SEED);
+        System.out.println(PEGASISConfig.NUM_NODES + " node configurations generated.");
+        return configs;
+    }
+
+    /** Uniform random deployment of NUM_NODES nodes over the area, reproducible from the seed. */
+    static List<NodeInitialConfig> generateInitialNodeDeployments(long seed) {
+        List<NodeInitialConfig> configs = new ArrayList<>();
+        Random deploymentRandom = new Random(seed);
         for (int i = 0; i < PEGASISConfig.NUM_NODES; i++) {
             double x = deploymentRandom.nextDouble() * PEGASISConfig.AREA_WIDTH;
             double y = deploymentRandom.nextDouble() * PEGASISConfig.AREA_HEIGHT;
             configs.add(new NodeInitialConfig(i + 1, x, y, PEGASISConfig.INITIAL_ENERGY));
         }
-        System.out.println(PEGASISConfig.NUM_NODES + " node configurations generated.");
         return configs;
     }
 
-    private static List<SensorNode> createNodesFromInitialConfig(List<NodeInitialConfig> initialConfigs) {
+    static List<SensorNode> createNodesFromInitialConfig(List<NodeInitialConfig> initialConfigs) {
         List<SensorNode> nodes = new ArrayList<>();
         for (NodeInitialConfig config : initialConfigs) {
             nodes.add(new SensorNode(config.id, config.x, config.y, config.initialEnergy));
@@ -54,27 +92,101 @@ public class SimulationRunner {
         return nodes;
     }
 
-    private static void runProtocolSimulation(Protocol protocol, List<NodeInitialConfig> initialNodeDeployments, String runSuffix) {
+    /**
+     * Creates the primary sink at (BS_X, BS_Y) plus NUM_SINKS - 1 additional sinks, each with its
+     * own trajectory and precomputed path.
+     */
+    static List<BaseStation> createSinks(List<SensorNode> nodes) {
+        List<BaseStation> sinks = new ArrayList<>();
+        sinks.add(new BaseStation(0, PEGASISConfig.BS_X, PEGASISConfig.BS_Y));
+        double cx = PEGASISConfig.AREA_WIDTH / 2.0, cy = PEGASISConfig.AREA_HEIGHT / 2.0;
+        double radius = Math.hypot(PEGASISConfig.BS_X - cx, PEGASISConfig.BS_Y - cy);
+        double primaryAngle = Math.atan2(PEGASISConfig.BS_Y - cy, PEGASISConfig.BS_X - cx);
+        for (int i = 1; i < PEGASISConfig.NUM_SINKS; i++) {
+            if (i - 1 < PEGASISConfig.ADDITIONAL_SINKS.length) {
+                double[] spec = PEGASISConfig.ADDITIONAL_SINKS[i - 1];
+                sinks.add(new BaseStation(i, spec[0], spec[1], spec.length > 2 && spec[2] != 0));
+            } else {
+                double angle = primaryAngle + 2 * Math.PI * i / PEGASISConfig.NUM_SINKS;
+                sinks.add(new BaseStation(i, cx + radius * Math.cos(angle), cy + radius * Math.sin(angle), false));
+            }
+        }
+        for (BaseStation s : sinks) {
+            s.setTrajectory(SinkTrajectory.fromConfig(nodes, s.getX(), s.getY()));
+            if (s.isMobile() && PEGASISConfig.PRECOMPUTE_SINK_PATH) {
+                s.precomputePath(PEGASISConfig.MAX_ROUNDS);
+            }
+            s.reset();
+        }
+        return sinks;
+    }
+
+    /** @return The configured results store, or null if it is disabled or cannot be opened. */
+    static ResultsStore openResultsStore() {
+        if (!PEGASISConfig.RESULTS_STORE_ENABLED) return null;
+        try {
+            ResultsStore store = ResultsStore.open(PEGASISConfig.RESULTS_STORE_FILENAME);
+            System.out.println("Results store " + PEGASISConfig.RESULTS_STORE_FILENAME + ": " + store.size() + " runs recorded.");
+            return store;
+        } catch (IOException e) {
+            System.err.println("ERROR: Opening results store " + PEGASISConfig.RESULTS_STORE_FILENAME + ": " + e.getMessage() + ". Runs will not be recorded.");
+            return null;
+        }
+    }
+
+    private static RunOutcome runProtocolSimulation(Protocol protocol, List<NodeInitialConfig> initialNodeDeployments, String runSuffix,
+                                                    ResultsStore resultsStore, String outputDir) {
+        int protocolSeed = protocol.getProtocolName().hashCode() + runSuffix.hashCode();
+        String fingerprint = resultsStore == null ? null : ResultsStore.fingerprint(protocol.getProtocolName(), protocolSeed, initialNodeDeployments);
+        boolean reserved = fingerprint != null && PEGASISConfig.RESULTS_STORE_SKIP_COMPLETED;
+        if (reserved && !resultsStore.reserve(fingerprint)) {
+            System.out.println();
+            System.out.println("SKIPPED: " + protocol.getProtocolName() + " (Run: " + runSuffix + ") is already " +
+                               (resultsStore.contains(fingerprint) ? "in " + PEGASISConfig.RESULTS_STORE_FILENAME : "running in another job") +
+                               " as " + fingerprint + ".");
+            return new RunOutcome(protocol.getProtocolName(), runSuffix, true, null, new ArrayList<>());
+        }
+        try {
+            return runAndRecord(protocol, initialNodeDeployments, runSuffix, resultsStore, outputDir, protocolSeed, fingerprint);
+        } finally {
+            if (reserved) resultsStore.release(fingerprint);
+        }
+    }
+
+    /** Runs one protocol simulation, exports its results and records it in the store (if fingerprint is not null). */
+    private static RunOutcome runAndRecord(Protocol protocol, List<NodeInitialConfig> initialNodeDeployments, String runSuffix,
+                                           ResultsStore resultsStore, String outputDir, int protocolSeed, String fingerprint) {
         System.out.println(); System.out.println();
         System.out.println("=======================================================");
         System.out.println("Starting Simulation for: " + protocol.getProtocolName() + " (Run: " + runSuffix + ")");
         System.out.println("=======================================================");
 
-        BaseStation sink = new BaseStation(0, PEGASISConfig.BS_X, PEGASISConfig.BS_Y);
-        sink.reset();
         List<SensorNode> currentNodes = createNodesFromInitialConfig(initialNodeDeployments);
+        List<BaseStation> sinks = createSinks(currentNodes);
+        BaseStation sink = sinks.get(0);
         MetricsCollector metrics = new MetricsCollector(PEGASISConfig.NUM_NODES);
-        Random protocolSpecificRandom = new Random(protocol.getProtocolName().hashCode() + runSuffix.hashCode());
-        protocol.setup(currentNodes, sink, metrics, protocolSpecificRandom);
+        String protocolFileNamePart = protocol.getProtocolName().replaceAll("\\s+", "") + "_" + runSuffix;
+        if (PEGASISConfig.TRACE_ENABLED) {
+            String tracePath = outputPath(outputDir, protocolFileNamePart + PEGASISConfig.TRACE_FILE_POSTFIX);
+            try {
+                metrics.setTraceRecorder(TraceRecorder.open(tracePath));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("ERROR: Opening trace " + tracePath + ", running untraced: " + e.getMessage());
+            }
+        }
+        Random protocolSpecificRandom = new Random(protocolSeed);
+        protocol.setup(currentNodes, sinks, metrics, protocolSpecificRandom);
 
         int currentRound = 0;
         for (currentRound = 1; currentRound <= PEGASISConfig.MAX_ROUNDS; currentRound++) {
             long roundStartTimeSystemNanos = System.nanoTime();
-            if (PEGASISConfig.IS_SINK_MOBILE) {
-                sink.move();
+            metrics.beginRoundResourceSample();
+            for (BaseStation s : sinks) {
+                s.move(); // Static sinks ignore this
             }
             Map<String, Object> roundStats = protocol.runSingleRound(currentRound);
             metrics.addRoundExecutionTime(System.nanoTime() - roundStartTimeSystemNanos);
+            metrics.endRoundResourceSample();
 
             if (currentRound % 100 == 0 || currentRound == 1 || currentRound == PEGASISConfig.MAX_ROUNDS || protocol.getAliveNodesCount() == 0) {
                 String leaderDisplay = roundStats.getOrDefault("leaderId",
@@ -128,10 +240,46 @@ public class SimulationRunner {
         System.out.println("--- Final Metrics for: " + protocol.getProtocolName() + " ("+runSuffix+", after " + actualRoundsSimulated + " rounds) ---");
         metrics.printSummary(actualRoundsSimulated);
 
-        String protocolFileNamePart = protocol.getProtocolName().replaceAll("\\s+", "") + "_" + runSuffix;
-        metrics.exportRoundByRoundDataToCSV(protocolFileNamePart + PEGASISConfig.ROUND_DATA_CSV_POSTFIX);
-        metrics.appendSummaryDataToCSV(PEGASISConfig.SUMMARY_CSV_FILENAME, actualRoundsSimulated);
+        List<String> outputFiles = new ArrayList<>();
+        outputFiles.add(outputPath(outputDir, protocolFileNamePart + PEGASISConfig.ROUND_DATA_CSV_POSTFIX));
+        outputFiles.add(outputPath(outputDir, protocolFileNamePart + PEGASISConfig.DOWNSAMPLED_CSV_POSTFIX));
+        outputFiles.add(outputPath(outputDir, PEGASISConfig.SUMMARY_CSV_FILENAME));
+        metrics.exportRoundByRoundDataToCSV(outputFiles.get(0));
+        metrics.exportDownsampledSeriesToCSV(outputFiles.get(1));
+        metrics.appendSummaryDataToCSV(outputFiles.get(2), actualRoundsSimulated);
+        String zoneDeliveryFile = outputPath(outputDir, protocolFileNamePart + PEGASISConfig.ZONE_DELIVERY_CSV_POSTFIX);
+        if (metrics.exportZoneDeliveryToCSV(zoneDeliveryFile)) outputFiles.add(zoneDeliveryFile);
+        TraceRecorder trace = metrics.getTraceRecorder();
+        if (trace.isEnabled()) {
+            try {
+                trace.close();
+                outputFiles.add(trace.getPath().toString());
+                System.out.println("SUCCESS: " + trace.getRecorded() + " hop events traced to " + trace.getPath() +
+                                   " (" + trace.getStalls() + " waits on a full ring)");
+            } catch (IOException e) {
+                System.err.println("ERROR: Writing trace " + trace.getPath() + ": " + e.getMessage());
+            }
+        }
+        Map<String, String> summary = metrics.getSummaryValues(actualRoundsSimulated);
+        if (fingerprint != null) {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            parameters.put("Protocol", protocol.getProtocolName());
+            parameters.put("RunSuffix", runSuffix);
+            parameters.put("Seed", String.valueOf(protocolSeed));
+            parameters.putAll(ResultsStore.configParameters());
+            try {
+                resultsStore.append(fingerprint, parameters, summary);
+                System.out.println("SUCCESS: Run recorded in " + PEGASISConfig.RESULTS_STORE_FILENAME + " as " + fingerprint);
+            } catch (IOException e) {
+                System.err.println("ERROR: Recording run in " + PEGASISConfig.RESULTS_STORE_FILENAME + ": " + e.getMessage());
+            }
+        }
 
         System.out.println("Simulation for " + protocol.getProtocolName() + " ("+runSuffix+") finished.");
+        return new RunOutcome(protocol.getProtocolName(), runSuffix, false, summary, outputFiles);
+    }
+
+    private static String outputPath(String outputDir, String filename) {
+        return outputDir.isEmpty() ? filename : new File(outputDir, filename).getPath();
     }
 }
\ No newline at end of file
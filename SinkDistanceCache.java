@@ -0,0 +1,191 @@
+// File: SinkDistanceCache.java
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-round node-to-sink distance vector for one or more sinks. For every node it holds the
+ * distance to, and index of, the nearest sink (the cheapest one under the first-order radio
+ * model, where Tx cost grows with distance). The vectors are rebuilt only when a sink has
+ * moved since the last lookup, so every protocol query within a round (chain start, leader
+ * scoring, leader-to-sink hops) is an array read instead of a sqrt/pow.
+ * With more than SPATIAL_INDEX_MIN_SINKS sinks, nearest-sink lookups go through a uniform
+ * grid over the sink positions instead of a linear scan.
+ */
+public class SinkDistanceCache {
+    private static final int SPATIAL_INDEX_MIN_SINKS = 8;
+
+    private final List<BaseStation> sinks;
+    private final int[] indexById;
+    private final double[] nodeX;
+    private final double[] nodeY;
+    private final double[] distances;
+    private final int[] nearestSinkIndex;
+    private final double[] cachedSinkX;
+    private final double[] cachedSinkY;
+    private final double[] scratch;
+    private long rebuilds = 0;
+
+    // Uniform grid over sink positions (only used with many sinks)
+    private int gridCols, gridRows;
+    private double gridMinX, gridMinY, gridCell;
+    private int[] gridStart, gridSinks;
+
+    public SinkDistanceCache(List<SensorNode> nodes, BaseStation sink) {
+        this(nodes, List.of(sink));
+    }
+
+    public SinkDistanceCache(List<SensorNode> nodes, List<BaseStation> sinks) {
+        this.sinks = sinks;
+        int maxId = 0;
+        for (SensorNode n : nodes) maxId = Math.max(maxId, n.getId());
+        this.indexById = new int[maxId + 1];
+        Arrays.fill(this.indexById, -1);
+        for (int i = 0; i < nodes.size(); i++) this.indexById[nodes.get(i).getId()] = i;
+        this.nodeX = new double[nodes.size()];
+        this.nodeY = new double[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) { this.nodeX[i] = nodes.get(i).getX(); this.nodeY[i] = nodes.get(i).getY(); }
+        this.distances = new double[nodes.size()];
+        this.nearestSinkIndex = new int[nodes.size()];
+        this.scratch = new double[nodes.size()];
+        this.cachedSinkX = new double[sinks.size()];
+        this.cachedSinkY = new double[sinks.size()];
+        Arrays.fill(this.cachedSinkX, Double.NaN);
+        Arrays.fill(this.cachedSinkY, Double.NaN);
+    }
+
+    public List<BaseStation> getSinks() { return sinks; }
+
+    /** @return The first (primary) sink. */
+    public BaseStation getSink() { return sinks.get(0); }
+
+    /** @return Distance from the node to its nearest sink at the sink's current position. */
+    public double distanceToSink(SensorNode n) {
+        refreshIfSinkMoved();
+        int idx = indexOf(n);
+        if (idx < 0) return nearestSinkDistance(n.getX(), n.getY());
+        return distances[idx];
+    }
+
+    /** @return The sink nearest to the node, i.e. the cheapest one to transmit to. */
+    public BaseStation nearestSink(SensorNode n) {
+        refreshIfSinkMoved();
+        int idx = indexOf(n);
+        if (idx < 0) return sinks.get(nearestSinkIndex(n.getX(), n.getY()));
+        return sinks.get(nearestSinkIndex[idx]);
+    }
+
+    /** @return The nearest-sink distance vector for the current sink positions, indexed like the node list. */
+    public double[] distancesForCurrentRound() {
+        refreshIfSinkMoved();
+        return distances;
+    }
+
+    public long getRebuildCount() { return rebuilds; }
+
+    private int indexOf(SensorNode n) {
+        int id = n.getId();
+        return (id >= 0 && id < indexById.length) ? indexById[id] : -1;
+    }
+
+    private void refreshIfSinkMoved() {
+        boolean moved = false;
+        for (int s = 0; s < sinks.size(); s++) {
+            BaseStation sink = sinks.get(s);
+            if (sink.getX() != cachedSinkX[s] || sink.getY() != cachedSinkY[s]) {
+                cachedSinkX[s] = sink.getX(); cachedSinkY[s] = sink.getY();
+                moved = true;
+            }
+        }
+        if (!moved) return;
+
+        if (sinks.size() <= SPATIAL_INDEX_MIN_SINKS) {
+            EnergyKernels.distancesTo(nodeX, nodeY, distances.length, cachedSinkX[0], cachedSinkY[0], distances);
+            Arrays.fill(nearestSinkIndex, 0);
+            for (int s = 1; s < sinks.size(); s++) {
+                EnergyKernels.distancesTo(nodeX, nodeY, scratch.length, cachedSinkX[s], cachedSinkY[s], scratch);
+                for (int i = 0; i < distances.length; i++) {
+                    if (scratch[i] < distances[i]) { distances[i] = scratch[i]; nearestSinkIndex[i] = s; }
+                }
+            }
+        } else {
+            buildGrid();
+            for (int i = 0; i < distances.length; i++) {
+                int s = nearestSinkIndex(nodeX[i], nodeY[i]);
+                nearestSinkIndex[i] = s;
+                distances[i] = distance(nodeX[i], nodeY[i], cachedSinkX[s], cachedSinkY[s]);
+            }
+        }
+        rebuilds++;
+    }
+
+    private double nearestSinkDistance(double x, double y) {
+        int s = nearestSinkIndex(x, y);
+        return distance(x, y, sinks.get(s).getX(), sinks.get(s).getY());
+    }
+
+    private int nearestSinkIndex(double x, double y) {
+        if (sinks.size() <= SPATIAL_INDEX_MIN_SINKS || gridStart == null) {
+            int best = 0; double bestD = Double.MAX_VALUE;
+            for (int s = 0; s < sinks.size(); s++) {
+                double d = distance(x, y, sinks.get(s).getX(), sinks.get(s).getY());
+                if (d < bestD) { bestD = d; best = s; }
+            }
+            return best;
+        }
+        // Expand square rings of cells around the query until no closer sink can exist.
+        int cx = clamp((int) ((x - gridMinX) / gridCell), gridCols), cy = clamp((int) ((y - gridMinY) / gridCell), gridRows);
+        int best = -1; double bestD = Double.MAX_VALUE;
+        int maxRing = Math.max(gridCols, gridRows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int gy = cy - ring; gy <= cy + ring; gy++) {
+                if (gy < 0 || gy >= gridRows) continue;
+                for (int gx = cx - ring; gx <= cx + ring; gx++) {
+                    if (gx < 0 || gx >= gridCols) continue;
+                    if (Math.abs(gx - cx) != ring && Math.abs(gy - cy) != ring) continue; // Ring border only
+                    int cell = gy * gridCols + gx;
+                    for (int k = gridStart[cell]; k < gridStart[cell + 1]; k++) {
+                        int s = gridSinks[k];
+                        double d = distance(x, y, cachedSinkX[s], cachedSinkY[s]);
+                        if (d < bestD || (d == bestD && s < best)) { bestD = d; best = s; }
+                    }
+                }
+            }
+            // Any sink outside this ring is at least ring * cell away from the query's cell.
+            if (best >= 0 && bestD <= ring * gridCell) break;
+        }
+        return best;
+    }
+
+    private void buildGrid() {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int s = 0; s < sinks.size(); s++) {
+            minX = Math.min(minX, cachedSinkX[s]); maxX = Math.max(maxX, cachedSinkX[s]);
+            minY = Math.min(minY, cachedSinkY[s]); maxY = Math.max(maxY, cachedSinkY[s]);
+        }
+        int side = (int) Math.ceil(Math.sqrt(sinks.size()));
+        gridCell = Math.max(Math.max(maxX - minX, maxY - minY) / side, 1e-9);
+        gridMinX = minX; gridMinY = minY;
+        gridCols = Math.max(1, (int) ((maxX - minX) / gridCell) + 1);
+        gridRows = Math.max(1, (int) ((maxY - minY) / gridCell) + 1);
+        // Counting sort of sink indices by cell (CSR layout)
+        int[] cellOf = new int[sinks.size()];
+        gridStart = new int[gridCols * gridRows + 1];
+        for (int s = 0; s < sinks.size(); s++) {
+            int gx = clamp((int) ((cachedSinkX[s] - minX) / gridCell), gridCols);
+            int gy = clamp((int) ((cachedSinkY[s] - minY) / gridCell), gridRows);
+            cellOf[s] = gy * gridCols + gx;
+            gridStart[cellOf[s] + 1]++;
+        }
+        for (int c = 0; c < gridCols * gridRows; c++) gridStart[c + 1] += gridStart[c];
+        gridSinks = new int[sinks.size()];
+        int[] fill = Arrays.copyOf(gridStart, gridStart.length - 1);
+        for (int s = 0; s < sinks.size(); s++) gridSinks[fill[cellOf[s]]++] = s;
+    }
+
+    private static int clamp(int v, int size) { return Math.max(0, Math.min(v, size - 1)); }
+
+    private static double distance(double x1, double y1, double x2, double y2) {
+        double dx = x1 - x2, dy = y1 - y2;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
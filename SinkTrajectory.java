@@ -0,0 +1,259 @@
+// File: SinkTrajectory.java
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A movement pattern for a mobile sink. Implementations are stepped once per round
+ * and write the sink's next position into a two-element array, so a whole run can be
+ * precomputed by {@link BaseStation#precomputePath(int)}.
+ */
+public interface SinkTrajectory {
+
+    int PATTERN_STATIC = 0;
+    int PATTERN_HORIZONTAL = 1;
+    int PATTERN_VERTICAL = 2;
+    int PATTERN_CIRCULAR = 3;
+    int PATTERN_WAYPOINT = 4;
+    int PATTERN_FILE = 5;
+    int PATTERN_PLANNED = 6;
+
+    /**
+     * Advances the sink by one round.
+     * @param round The round the sink is moving into (1-based).
+     * @param x Current sink X.
+     * @param y Current sink Y.
+     * @param out Receives the new position: out[0] = x, out[1] = y.
+     */
+    void step(int round, double x, double y, double[] out);
+
+    /** Restores any internal movement state (direction, waypoint index, ...). */
+    void reset();
+
+    String getName();
+
+    /**
+     * Builds the trajectory selected by PEGASISConfig.SINK_MOVEMENT_PATTERN.
+     * @param nodes Deployed nodes; only used by the planned pattern.
+     * @param startX Initial sink X.
+     * @param startY Initial sink Y.
+     */
+    static SinkTrajectory fromConfig(List<SensorNode> nodes, double startX, double startY) {
+        switch (PEGASISConfig.SINK_MOVEMENT_PATTERN) {
+            case PATTERN_HORIZONTAL:
+                return new Linear(true);
+            case PATTERN_VERTICAL:
+                return new Linear(false);
+            case PATTERN_CIRCULAR:
+                return new Circular(PEGASISConfig.SINK_CIRCLE_CENTER_X, PEGASISConfig.SINK_CIRCLE_CENTER_Y,
+                                    PEGASISConfig.SINK_CIRCLE_RADIUS, startX, startY);
+            case PATTERN_WAYPOINT:
+                return new Waypoint(PEGASISConfig.SINK_WAYPOINTS);
+            case PATTERN_FILE:
+                return FileDriven.load(PEGASISConfig.SINK_TRAJECTORY_FILE);
+            case PATTERN_PLANNED:
+                return ThroughputAwarePlanner.forDeployment(nodes);
+            default:
+                return new Static();
+        }
+    }
+
+    /** Moves one unit of speed towards (tx, ty), stopping on the target. Returns true if reached. */
+    static boolean moveTowards(double x, double y, double tx, double ty, double speed, double[] out) {
+        double dx = tx - x, dy = ty - y;
+        double d = Math.sqrt(dx * dx + dy * dy);
+        if (d <= speed || d == 0.0) {
+            out[0] = tx; out[1] = ty;
+            return true;
+        }
+        out[0] = x + dx / d * speed;
+        out[1] = y + dy / d * speed;
+        return false;
+    }
+
+    // --- Implementations ---
+
+    class Static implements SinkTrajectory {
+        @Override public void step(int round, double x, double y, double[] out) { out[0] = x; out[1] = y; }
+        @Override public void reset() { }
+        @Override public String getName() { return "static"; }
+    }
+
+    /**
+     * Back-and-forth movement along one axis between SINK_MIN and SINK_MAX; the other coordinate
+     * stays where the sink started, so additional sinks run parallel corridors. A sink that starts
+     * outside the range (the default BS sits above the field) first travels into it at the same
+     * speed rather than jumping to the nearest bound.
+     */
+    class Linear implements SinkTrajectory {
+        private final boolean horizontal;
+        private boolean movingForward = true;
+
+        Linear(boolean horizontal) { this.horizontal = horizontal; }
+
+        @Override
+        public void step(int round, double x, double y, double[] out) {
+            double speed = PEGASISConfig.SINK_SPEED_PER_ROUND;
+            double min = horizontal ? PEGASISConfig.SINK_MIN_X : PEGASISConfig.SINK_MIN_Y;
+            double max = horizontal ? PEGASISConfig.SINK_MAX_X : PEGASISConfig.SINK_MAX_Y;
+            double pos = horizontal ? x : y;
+            if (pos > max) {
+                pos = Math.max(max, pos - speed);
+                movingForward = false;
+            } else if (pos < min) {
+                pos = Math.min(min, pos + speed);
+                movingForward = true;
+            } else if (movingForward) {
+                pos += speed;
+                if (pos >= max) { pos = max; movingForward = false; }
+            } else {
+                pos -= speed;
+                if (pos <= min) { pos = min; movingForward = true; }
+            }
+            if (horizontal) { out[0] = pos; out[1] = y; } else { out[0] = x; out[1] = pos; }
+        }
+
+        @Override public void reset() { movingForward = true; }
+        @Override public String getName() { return horizontal ? "horizontal" : "vertical"; }
+    }
+
+    /**
+     * Constant angular speed around a fixed center, starting at the sink's initial bearing. A sink
+     * that starts off the circle first travels radially onto it at SINK_SPEED_PER_ROUND, as Linear
+     * does for its range, and only then starts orbiting.
+     */
+    class Circular implements SinkTrajectory {
+        private final double centerX, centerY, radius, startAngle;
+        private final double entryX, entryY;
+        private final int initialArrivalRound;
+        private int arrivalRound; // Round the sink reached the circle, -1 while still approaching
+
+        Circular(double centerX, double centerY, double radius, double startX, double startY) {
+            this.centerX = centerX; this.centerY = centerY;
+            this.radius = radius > 0 ? radius : 1.0;
+            this.startAngle = Math.atan2(startY - centerY, startX - centerX);
+            this.entryX = centerX + this.radius * Math.cos(startAngle);
+            this.entryY = centerY + this.radius * Math.sin(startAngle);
+            this.initialArrivalRound = Math.hypot(startX - entryX, startY - entryY) < 1e-9 ? 0 : -1;
+            this.arrivalRound = initialArrivalRound;
+        }
+
+        @Override
+        public void step(int round, double x, double y, double[] out) {
+            if (arrivalRound < 0) {
+                if (moveTowards(x, y, entryX, entryY, PEGASISConfig.SINK_SPEED_PER_ROUND, out)) arrivalRound = round;
+                return;
+            }
+            double angle = startAngle + (round - arrivalRound) * (PEGASISConfig.SINK_SPEED_PER_ROUND / radius);
+            out[0] = centerX + radius * Math.cos(angle);
+            out[1] = centerY + radius * Math.sin(angle);
+        }
+
+        @Override public void reset() { arrivalRound = initialArrivalRound; }
+        @Override public String getName() { return "circular"; }
+    }
+
+    /** Visits the waypoints in order at SINK_SPEED_PER_ROUND and loops back to the first one. */
+    class Waypoint implements SinkTrajectory {
+        private final double[][] waypoints;
+        private int nextIndex = 0;
+
+        Waypoint(double[][] waypoints) { this.waypoints = waypoints == null ? new double[0][] : waypoints; }
+
+        @Override
+        public void step(int round, double x, double y, double[] out) {
+            if (waypoints.length == 0) { out[0] = x; out[1] = y; return; }
+            double[] target = waypoints[nextIndex];
+            if (moveTowards(x, y, target[0], target[1], PEGASISConfig.SINK_SPEED_PER_ROUND, out)) {
+                nextIndex = (nextIndex + 1) % waypoints.length;
+            }
+        }
+
+        @Override public void reset() { nextIndex = 0; }
+        @Override public String getName() { return "waypoint"; }
+    }
+
+    /**
+     * Replays positions from a text file, one "x,y" pair per round. Blank lines and lines
+     * starting with '#' are skipped. The sink holds its last position once the file runs out.
+     */
+    class FileDriven implements SinkTrajectory {
+        private final double[] xs, ys;
+
+        FileDriven(double[] xs, double[] ys) { this.xs = xs; this.ys = ys; }
+
+        static SinkTrajectory load(String filename) {
+            List<double[]> points = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    String[] parts = line.split(",");
+                    points.add(new double[] { Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()) });
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Warning: Could not read sink trajectory file '" + filename + "', sink stays static. " + e.getMessage());
+                return new Static();
+            }
+            double[] xs = new double[points.size()], ys = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) { xs[i] = points.get(i)[0]; ys[i] = points.get(i)[1]; }
+            return new FileDriven(xs, ys);
+        }
+
+        @Override
+        public void step(int round, double x, double y, double[] out) {
+            if (xs.length == 0) { out[0] = x; out[1] = y; return; }
+            int i = Math.min(round - 1, xs.length - 1);
+            out[0] = xs[i]; out[1] = ys[i];
+        }
+
+        @Override public void reset() { }
+        @Override public String getName() { return "file"; }
+    }
+
+    /**
+     * Moves the sink towards the point that minimizes aggregate leader transmit energy.
+     * Under the first-order radio model each leader pays E_AMP*k*d^2, so the sum over
+     * leaders is minimized at their centroid. Leaders are approximated by the centroids
+     * of the non-empty HALEM zone cells (one leader per zone per round); with a 1x1 grid
+     * this is the node centroid, which is also the optimum for a single rotating PEGASIS
+     * leader. The target is clamped to the sink's allowed SINK_MIN/MAX box.
+     */
+    class ThroughputAwarePlanner implements SinkTrajectory {
+        private final double targetX, targetY;
+
+        ThroughputAwarePlanner(double targetX, double targetY) { this.targetX = targetX; this.targetY = targetY; }
+
+        static ThroughputAwarePlanner forDeployment(List<SensorNode> nodes) {
+            int rows = Math.max(1, PEGASISConfig.HALEM_ZONE_ROWS), cols = Math.max(1, PEGASISConfig.HALEM_ZONE_COLS);
+            double zoneWidth = PEGASISConfig.AREA_WIDTH / cols, zoneHeight = PEGASISConfig.AREA_HEIGHT / rows;
+            double[] sumX = new double[rows * cols], sumY = new double[rows * cols];
+            int[] count = new int[rows * cols];
+            for (SensorNode n : nodes) {
+                int c = Math.max(0, Math.min((int) (n.getX() / zoneWidth), cols - 1));
+                int r = Math.max(0, Math.min((int) (n.getY() / zoneHeight), rows - 1));
+                sumX[r * cols + c] += n.getX(); sumY[r * cols + c] += n.getY(); count[r * cols + c]++;
+            }
+            double tx = 0, ty = 0; int leaders = 0;
+            for (int z = 0; z < count.length; z++) {
+                if (count[z] == 0) continue;
+                tx += sumX[z] / count[z]; ty += sumY[z] / count[z]; leaders++;
+            }
+            if (leaders == 0) { tx = PEGASISConfig.BS_X; ty = PEGASISConfig.BS_Y; } else { tx /= leaders; ty /= leaders; }
+            tx = Math.max(Math.min(PEGASISConfig.SINK_MIN_X, PEGASISConfig.SINK_MAX_X), Math.min(tx, Math.max(PEGASISConfig.SINK_MIN_X, PEGASISConfig.SINK_MAX_X)));
+            ty = Math.max(Math.min(PEGASISConfig.SINK_MIN_Y, PEGASISConfig.SINK_MAX_Y), Math.min(ty, Math.max(PEGASISConfig.SINK_MIN_Y, PEGASISConfig.SINK_MAX_Y)));
+            return new ThroughputAwarePlanner(tx, ty);
+        }
+
+        @Override
+        public void step(int round, double x, double y, double[] out) {
+            moveTowards(x, y, targetX, targetY, PEGASISConfig.SINK_SPEED_PER_ROUND, out);
+        }
+
+        @Override public void reset() { }
+        @Override public String getName() { return String.format("planned->(%.1f,%.1f)", targetX, targetY); }
+    }
+}
@@ -12,13 +12,23 @@ public class StandardPegasisProtocol implements Protocol {
 
     private List<SensorNode> nodes;
     private List<SensorNode> chain; // Current PEGASIS chain
-    private BaseStation baseStation;
+    private double[] chainHopDistances = new double[0]; // chainHopDistances[i] = distance(chain[i], chain[i+1])
+    private double[] chainHopPer = new double[0]; // Packet error rate of each chain hop
+    private List<BaseStation> sinks;
+    private SinkDistanceCache sinkDistances; // Nearest-sink distances and routing
     private MetricsCollector metrics;
+    private PhaseProfiler phases = PhaseProfiler.DISABLED;
+    private TraceRecorder trace = TraceRecorder.DISABLED;
+    private DrainRateEstimator drainRates;
     private Random protocolRandom; // For any internal randomization, if needed
+    private AggregationModel aggregation;
+    private LinkQualityModel linkModel;
+    private DeploymentContext deploymentContext; // Shared chains and neighbour lists, or null
 
     private SensorNode currentLeader;
     private int lastChainReformationRound;
     private double currentRoundTotalEnergyConsumed; // Accumulates energy consumed in the current round
+    private int currentRoundDelaySlots; // Transmission slots from the first chain hop to the sink delivery
 
     private static final String OP_TX_CHAIN = "tx_chain";
     private static final String OP_RX_CHAIN = "rx_chain";
@@ -32,11 +42,17 @@ public class StandardPegasisProtocol implements Protocol {
     }
 
     @Override
-    public void setup(List<SensorNode> initialNodes, BaseStation bs, MetricsCollector mc, Random protocolRandomSeed) {
+    public void setup(List<SensorNode> initialNodes, List<BaseStation> sinks, MetricsCollector mc, Random protocolRandomSeed) {
         this.nodes = initialNodes; // Expects a fresh list of nodes
-        this.baseStation = bs;
+        this.sinks = sinks;
+        this.sinkDistances = new SinkDistanceCache(initialNodes, sinks);
         this.metrics = mc;
+        this.phases = mc.getPhaseProfiler();
+        this.trace = mc.getTraceRecorder();
         this.protocolRandom = protocolRandomSeed;
+        this.aggregation = AggregationModel.fromConfig();
+        this.linkModel = LinkQualityModel.fromConfig();
+        this.drainRates = DrainRateEstimator.fromConfig(initialNodes);
         this.metrics.setCurrentProtocolName(getProtocolName());
 
         // Initial chain formation
@@ -47,6 +63,11 @@ public class StandardPegasisProtocol implements Protocol {
         System.out.println(getProtocolName() + " setup complete. Initial chain size: " + this.chain.size());
     }
 
+    @Override
+    public void setDeploymentContext(DeploymentContext context) {
+        this.deploymentContext = context;
+    }
+
     @Override
     public String getProtocolName() {
         return "Standard PEGASIS";
@@ -67,16 +88,24 @@ public class StandardPegasisProtocol implements Protocol {
         return Math.sqrt(Math.pow(n1.getX() - n2.getX(), 2) + Math.pow(n1.getY() - n2.getY(), 2));
     }
 
-    private double distance(SensorNode n, BaseStation bs) {
-        return Math.sqrt(Math.pow(n.getX() - bs.getX(), 2) + Math.pow(n.getY() - bs.getY(), 2));
+    /** Distance from the node to its nearest (cheapest) sink. */
+    private double distanceToSink(SensorNode n) {
+        return this.sinkDistances.distanceToSink(n);
+    }
+
+    /** Expected energy of one fused packet from n to its nearest sink, retransmissions included. */
+    private double expectedUplinkEnergy(SensorNode n) {
+        double d = distanceToSink(n);
+        return EnergyKernels.txEnergy(PEGASISConfig.DATA_PACKET_SIZE_BITS, d) * this.linkModel.expectedAttempts(this.linkModel.per(d));
     }
 
     // --- Core PEGASIS Logic ---
 
     /**
      * Forms the PEGASIS chain using a greedy algorithm.
-     * Starts with a node far from the BS (or a corner if BS is at 0,0).
+     * Starts with the node farthest from its nearest sink.
      * Iteratively adds the closest alive, unchained node.
+     * With STANDARD_CHAIN_BUILDER = CHAIN_BUILDER_HILBERT the chain follows a Hilbert curve instead.
      */
     private void formChain() {
         long startTime = System.nanoTime();
@@ -89,10 +118,28 @@ public class StandardPegasisProtocol implements Protocol {
             if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
             return;
         }
+        if (PEGASISConfig.STANDARD_CHAIN_BUILDER == PEGASISConfig.CHAIN_BUILDER_HILBERT) {
+            this.chain.addAll(HilbertChainBuilder.build(availableNodes, this::distanceToSink, PEGASISConfig.CHAIN_FIXUP_WINDOW));
+            cacheChainHopDistances();
+            if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
+            return;
+        }
 
         // Find starting node: farthest from Base Station
         SensorNode startNode = Collections.max(availableNodes,
-                Comparator.comparingDouble(n -> distance(n, this.baseStation)));
+                Comparator.comparingDouble(this::distanceToSink));
+
+        if (this.deploymentContext != null && this.deploymentContext.size() == this.nodes.size()) {
+            // Same chain as the scan below; shared with other runs while nobody has died
+            DeploymentContext.ChainPlan plan = availableNodes.size() == this.nodes.size()
+                    ? this.deploymentContext.fullChain(startNode.getId() - 1)
+                    : this.deploymentContext.greedyChain(availableNodes.stream().mapToInt(n -> n.getId() - 1).toArray(), startNode.getId() - 1);
+            this.chain.addAll(DeploymentContext.toNodes(plan.order, this.nodes));
+            this.chainHopDistances = plan.hopDistances;
+            cacheChainPers();
+            if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
+            return;
+        }
 
         this.chain.add(startNode);
         availableNodes.remove(startNode);
@@ -116,18 +163,50 @@ public class StandardPegasisProtocol implements Protocol {
                 break; // No more nodes can be added
             }
         }
+        cacheChainHopDistances();
         if (this.metrics != null) this.metrics.addChainFormationTime(System.nanoTime() - startTime);
     }
 
     /**
-     * Selects a leader for the current round using round-robin on alive chain members.
+     * Precomputes hop distances and packet error rates for the current chain; positions are
+     * fixed, so they stay valid until the chain is reformed.
+     */
+    private void cacheChainHopDistances() {
+        int n = this.chain.size();
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i++) { xs[i] = this.chain.get(i).getX(); ys[i] = this.chain.get(i).getY(); }
+        this.chainHopDistances = new double[Math.max(0, n - 1)];
+        EnergyKernels.hopDistances(xs, ys, n, this.chainHopDistances);
+        cacheChainPers();
+    }
+
+    private void cacheChainPers() {
+        this.chainHopPer = new double[this.chainHopDistances.length];
+        this.linkModel.pers(this.chainHopDistances, this.chainHopDistances.length, this.chainHopPer);
+        if (this.metrics != null) this.metrics.addChainCost(HilbertChainBuilder.chainCost(this.chainHopDistances));
+    }
+
+    /**
+     * Selects a leader for the current round among the alive chain members: round-robin, or with
+     * PEGASIS_LEADER_PREDICTIVE the member predicted to last longest if it pays the sink uplink
+     * (earliest in the chain on ties).
      */
     private SensorNode selectLeader(int roundNumber, List<SensorNode> aliveChainMembers) {
         if (aliveChainMembers.isEmpty()) {
             return null;
         }
-        int leaderIndex = (roundNumber -1) % aliveChainMembers.size(); // -1 for 0-based indexing with round 1
-        SensorNode leader = aliveChainMembers.get(leaderIndex);
+        SensorNode leader;
+        if (PEGASISConfig.PEGASIS_LEADER_SELECTION == PEGASISConfig.PEGASIS_LEADER_PREDICTIVE) {
+            leader = null;
+            double best = -1;
+            for (SensorNode candidate : aliveChainMembers) {
+                double rounds = this.drainRates.predictedRounds(candidate, expectedUplinkEnergy(candidate));
+                if (rounds > best) { best = rounds; leader = candidate; }
+            }
+        } else {
+            int leaderIndex = (roundNumber -1) % aliveChainMembers.size(); // -1 for 0-based indexing with round 1
+            leader = aliveChainMembers.get(leaderIndex);
+        }
         leader.setRole(SensorNode.Role.LEADER);
         leader.incrementTimesAsLeader();
         if (this.metrics != null) this.metrics.logLeaderSelection(leader.getId());
@@ -137,17 +216,25 @@ public class StandardPegasisProtocol implements Protocol {
     @Override
     public Map<String, Object> runSingleRound(int roundNumber) {
         this.currentRoundTotalEnergyConsumed = 0.0;
+        this.currentRoundDelaySlots = 0;
+        trace.beginRound(roundNumber);
         Map<String, Object> roundStats = new HashMap<>();
         roundStats.put("roundNumber", roundNumber);
 
-        // 0. Reset roles from previous round (except for newly selected leader)
+        // 0. Reset roles from previous round (except for newly selected leader); each node starts with one reading
+        phases.enter(PhaseProfiler.Phase.ROLE_RESET);
+        int readingsThisRound = 0;
         for (SensorNode node : this.nodes) {
             if (node.isAlive()) {
                 node.setRole(SensorNode.Role.FOLLOWER);
+                node.resetPayload(PEGASISConfig.DATA_PACKET_SIZE_BITS);
+                readingsThisRound++;
             }
         }
+        metrics.addReadingsGenerated(readingsThisRound);
 
         // 1. Check for Chain Reformation
+        phases.enter(PhaseProfiler.Phase.CHAIN_FORMATION);
         boolean chainReformedThisRound = false;
         if (roundNumber == 1 && this.chain.isEmpty() && getAliveNodesCount() > 0) { // Initial formation if not done in setup
             formChain();
@@ -179,12 +266,15 @@ public class StandardPegasisProtocol implements Protocol {
 
 
         // 2. Leader Selection
+        phases.enter(PhaseProfiler.Phase.LEADER_ELECTION);
         List<SensorNode> aliveChainMembers = this.chain.stream().filter(SensorNode::isAlive).collect(Collectors.toList());
         if (aliveChainMembers.isEmpty()) {
             roundStats.put("status", "No alive nodes in chain to select leader.");
             metrics.logNoLeaderForRound();
             metrics.logBSTransmissionStatus(false);
+            phases.enter(PhaseProfiler.Phase.METRICS_FINALIZATION);
             finalizeRoundMetrics(roundNumber);
+            phases.endRound();
             return roundStats;
         }
         this.currentLeader = selectLeader(roundNumber, aliveChainMembers);
@@ -192,6 +282,7 @@ public class StandardPegasisProtocol implements Protocol {
 
 
         // 3. Data Transmission along the chain to the leader
+        phases.enter(PhaseProfiler.Phase.GATHER);
         int leaderChainIndex = -1;
         for (int i = 0; i < this.chain.size(); i++) {
             if (this.chain.get(i).getId() == this.currentLeader.getId()) {
@@ -200,13 +291,22 @@ public class StandardPegasisProtocol implements Protocol {
             }
         }
 
-        if (leaderChainIndex != -1) {
+        if (leaderChainIndex != -1 && PEGASISConfig.GATHERING_MODE == PEGASISConfig.GATHERING_BINARY) {
+            // Binary combining over the alive members: O(log n) parallel levels instead of one hop per slot
+            this.currentRoundDelaySlots += BinaryCombining.gather(aliveChainMembers, aliveChainMembers.indexOf(this.currentLeader),
+                    this.aggregation, this.linkModel,
+                    (sender, receiver, dist, linkOutcome) -> transmitAndAggregate(sender, receiver, dist, linkOutcome, receiver == this.currentLeader));
+        } else if (leaderChainIndex != -1) {
+            int[] hopAttempts = this.linkModel.sampleChain(this.chainHopPer, this.chainHopDistances.length); // null if lossless
+            this.aggregation.planChainPayloads(this.chain, leaderChainIndex, this.chainHopDistances, hopAttempts);
             // Transmit from left side towards leader
             for (int i = leaderChainIndex - 1; i >= 0; i--) {
                 SensorNode sender = this.chain.get(i);
                 SensorNode receiver = this.chain.get(i + 1);
                 if (sender.isAlive() && receiver.isAlive()) {
-                    transmitAndAggregate(sender, receiver, false);
+                    int linkOutcome = hopAttempts == null ? 1 : hopAttempts[i];
+                    this.currentRoundDelaySlots += this.linkModel.attemptsUsed(linkOutcome);
+                    transmitAndAggregate(sender, receiver, this.chainHopDistances[i], linkOutcome, false);
                 } else if (sender.isAlive() && !receiver.isAlive()) {
                     break; // Path broken
                 }
@@ -216,7 +316,9 @@ public class StandardPegasisProtocol implements Protocol {
                 SensorNode sender = this.chain.get(i);
                 SensorNode receiver = this.chain.get(i - 1);
                 if (sender.isAlive() && receiver.isAlive()) {
-                    transmitAndAggregate(sender, receiver, false);
+                    int linkOutcome = hopAttempts == null ? 1 : hopAttempts[i - 1];
+                    this.currentRoundDelaySlots += this.linkModel.attemptsUsed(linkOutcome);
+                    transmitAndAggregate(sender, receiver, this.chainHopDistances[i - 1], linkOutcome, false);
                 } else if (sender.isAlive() && !receiver.isAlive()) {
                     break; // Path broken
                 }
@@ -225,68 +327,108 @@ public class StandardPegasisProtocol implements Protocol {
 
 
         // 4. Leader transmits to Base Station
+        phases.enter(PhaseProfiler.Phase.SINK_TRANSMISSION);
         boolean bsTransmissionSuccess = false;
         if (this.currentLeader != null && this.currentLeader.isAlive()) {
-            double distToBS = distance(this.currentLeader, this.baseStation);
-            double energyTxBS = (PEGASISConfig.E_ELEC * PEGASISConfig.DATA_PACKET_SIZE_BITS) +
-                                (PEGASISConfig.E_AMP * PEGASISConfig.DATA_PACKET_SIZE_BITS * distToBS * distToBS);
-
-            this.currentRoundTotalEnergyConsumed += energyTxBS;
-            metrics.logNodeEnergyConsumption(this.currentLeader.getId(), energyTxBS);
-            metrics.logNodeEnergyConsumptionAsLeader(this.currentLeader.getId(), energyTxBS); // Specifically as leader
-            metrics.logDataOperation(this.currentLeader.getId(), OP_TX_BS);
-
+            BaseStation targetSink = this.sinkDistances.nearestSink(this.currentLeader);
+            double distToBS = distanceToSink(this.currentLeader);
+            int payloadBits = this.currentLeader.getPayloadBits();
+            double energyTxBS = EnergyKernels.txEnergy(payloadBits, distToBS);
+            int outcome = this.linkModel.sampleAttempts(this.linkModel.per(distToBS));
+            int attempts = this.linkModel.attemptsUsed(outcome), made = 0;
+            boolean leaderAlive = true;
+            double leaderEnergyBefore = this.currentLeader.getEnergy();
+
+            while (made < attempts && leaderAlive) { // Every (re)transmission costs a full Tx
+                made++;
+                this.currentRoundTotalEnergyConsumed += energyTxBS;
+                metrics.logNodeEnergyConsumption(this.currentLeader.getId(), energyTxBS);
+                metrics.logNodeEnergyConsumptionAsLeader(this.currentLeader.getId(), energyTxBS); // Specifically as leader
+                metrics.logDataOperation(this.currentLeader.getId(), OP_TX_BS);
+                leaderAlive = this.currentLeader.consumeEnergy(energyTxBS);
+                if (leaderAlive) {
+                    this.currentLeader.incrementPacketsSent();
+                    metrics.logHopBits(payloadBits);
+                }
+            }
+            metrics.logLinkAttempts(made, leaderAlive && outcome > 0);
+            this.currentRoundDelaySlots += made;
 
-            if (this.currentLeader.consumeEnergy(energyTxBS)) {
-                this.currentLeader.incrementPacketsSent();
-                this.baseStation.receiveData(this.currentLeader, PEGASISConfig.DATA_PACKET_SIZE_BITS, this.metrics);
+            if (leaderAlive && outcome > 0) {
+                targetSink.receiveData(this.currentLeader, payloadBits, this.metrics);
                 bsTransmissionSuccess = true;
             } else {
-                // Leader died trying to transmit to BS
+                // Leader died trying to transmit to BS, or the sink never got the packet
                 bsTransmissionSuccess = false;
             }
+            if (trace.isEnabled()) {
+                trace.hop(TraceRecorder.Op.LEADER_TO_SINK, 0, this.currentLeader.getId(), -1 - targetSink.getId(), payloadBits, distToBS,
+                          leaderEnergyBefore - this.currentLeader.getEnergy(), 0.0, bsTransmissionSuccess);
+            }
         }
         roundStats.put("bsTransmissionSuccess", bsTransmissionSuccess);
         metrics.logBSTransmissionStatus(bsTransmissionSuccess);
 
 
         // 5. Finalize round metrics (update node states, log FND/HND/LND, etc.)
+        phases.enter(PhaseProfiler.Phase.METRICS_FINALIZATION);
         finalizeRoundMetrics(roundNumber);
+        phases.endRound();
 
         return roundStats;
     }
 
+    /** One chain hop (see chainHop), recorded in the trace when one is open. */
+    private boolean transmitAndAggregate(SensorNode sender, SensorNode receiver, double dist, int linkOutcome, boolean isReceiverTheLeader) {
+        if (!trace.isEnabled()) return chainHop(sender, receiver, dist, linkOutcome, isReceiverTheLeader);
+        double senderBefore = sender.getEnergy(), receiverBefore = receiver.getEnergy();
+        int bits = sender.getPayloadBits();
+        boolean delivered = chainHop(sender, receiver, dist, linkOutcome, isReceiverTheLeader);
+        trace.hop(TraceRecorder.Op.CHAIN_HOP, 0, sender.getId(), receiver.getId(), bits, dist,
+                  senderBefore - sender.getEnergy(), receiverBefore - receiver.getEnergy(), delivered);
+        return delivered;
+    }
+
     /**
      * Helper for intra-chain transmission and aggregation energy consumption.
      * @param sender The sending node.
      * @param receiver The receiving node.
+     * @param dist Precomputed sender-receiver distance (from the chain hop cache).
+     * @param linkOutcome ARQ outcome from LinkQualityModel: the attempt that got through, or 0 if the packet was dropped.
      * @param isReceiverTheLeader True if the receiver is the current round leader.
+     * @return True if the receiver got the packet.
      */
-    private void transmitAndAggregate(SensorNode sender, SensorNode receiver, boolean isReceiverTheLeader) {
-        double dist = distance(sender, receiver);
-        int packetSize = PEGASISConfig.DATA_PACKET_SIZE_BITS;
-
-        // Sender transmits
-        double energyTx = (PEGASISConfig.E_ELEC * packetSize) + (PEGASISConfig.E_AMP * packetSize * dist * dist);
-        if (sender.isAlive()) {
-             this.currentRoundTotalEnergyConsumed += energyTx;
-             metrics.logNodeEnergyConsumption(sender.getId(), energyTx);
-             metrics.logDataOperation(sender.getId(), OP_TX_CHAIN);
-             if (sender.consumeEnergy(energyTx)) {
-                 sender.incrementPacketsSent();
-             } else { return; } // Sender died
-        } else { return; } // Sender already dead
-
-        // Receiver receives
+    private boolean chainHop(SensorNode sender, SensorNode receiver, double dist, int linkOutcome, boolean isReceiverTheLeader) {
+        int packetSize = sender.getPayloadBits(); // Planned by AggregationModel.planChainPayloads
+        int attempts = this.linkModel.attemptsUsed(linkOutcome), made = 0;
+        double energyTx = EnergyKernels.txEnergy(packetSize, dist);
         double energyRx = PEGASISConfig.E_ELEC * packetSize;
-        if (receiver.isAlive()) {
-            this.currentRoundTotalEnergyConsumed += energyRx;
-            metrics.logNodeEnergyConsumption(receiver.getId(), energyRx);
-            metrics.logDataOperation(receiver.getId(), OP_RX_CHAIN);
-            if (receiver.consumeEnergy(energyRx)) {
-                receiver.incrementPacketsReceived();
-            } else { return; } // Receiver died
-        } else { return; } // Receiver already dead
+
+        while (made < attempts) { // Each retransmission costs the sender Tx and the receiver Rx again
+            made++;
+            // Sender transmits
+            if (sender.isAlive()) {
+                 this.currentRoundTotalEnergyConsumed += energyTx;
+                 metrics.logNodeEnergyConsumption(sender.getId(), energyTx);
+                 metrics.logDataOperation(sender.getId(), OP_TX_CHAIN);
+                 if (sender.consumeEnergy(energyTx)) {
+                     sender.incrementPacketsSent();
+                     metrics.logHopBits(packetSize);
+                 } else { metrics.logLinkAttempts(made, false); return false; } // Sender died
+            } else { metrics.logLinkAttempts(made, false); return false; } // Sender already dead
+
+            // Receiver receives
+            if (receiver.isAlive()) {
+                this.currentRoundTotalEnergyConsumed += energyRx;
+                metrics.logNodeEnergyConsumption(receiver.getId(), energyRx);
+                metrics.logDataOperation(receiver.getId(), OP_RX_CHAIN);
+                if (receiver.consumeEnergy(energyRx)) {
+                    receiver.incrementPacketsReceived();
+                } else { metrics.logLinkAttempts(made, false); return false; } // Receiver died
+            } else { metrics.logLinkAttempts(made, false); return false; } // Receiver already dead
+        }
+        metrics.logLinkAttempts(made, linkOutcome > 0);
+        if (linkOutcome == 0) return false; // Dropped after the retry limit, nothing to aggregate
 
 
         // Receiver aggregates (if it's not the leader receiving final data, or if it's leader before BS TX)
@@ -302,10 +444,12 @@ public class StandardPegasisProtocol implements Protocol {
             metrics.logDataOperation(receiver.getId(), OP_AGGREGATE);
             receiver.consumeEnergy(energyDa); // consumeEnergy handles death check
         }
+        return true;
     }
 
 
     private void finalizeRoundMetrics(int roundNumber) {
+        this.drainRates.update(this.nodes);
         // Update overall node statuses and count alive nodes
         long aliveCount = 0;
         double totalRemainingNetworkEnergy = 0;
@@ -325,6 +469,8 @@ public class StandardPegasisProtocol implements Protocol {
         metrics.logAliveNodes((int) aliveCount);
         metrics.logTotalRemainingEnergy(totalRemainingNetworkEnergy);
         metrics.logEnergyConsumedThisRound(this.currentRoundTotalEnergyConsumed);
+        metrics.logRoundDelay(this.currentRoundDelaySlots);
+        metrics.logRoundLinkStats();
 
         // Log FND, HND, LND
         if (metrics.getFndRound() == -1 && aliveCount < this.nodes.size()) {
@@ -0,0 +1,168 @@
+// File: TraceReader.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streams a trace written by TraceRecorder. Records are decoded straight out of a fixed read
+ * buffer into a callback, so traces far larger than the heap can be filtered or replayed.
+ *
+ * Usage: java TraceReader traceFile [--node id] [--zone z] [--op name] [--rounds from-to] [--summary]
+ * Without --summary the matching events are printed as CSV; with it, per-node event counts and
+ * energy spent as sender and as receiver, which shows where each node's energy went before it died.
+ * --node matches either end of a hop.
+ */
+public class TraceReader {
+
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    /** One decoded event; the fields are only valid during the callback. */
+    static final class Event {
+        int round, sender, receiver, zone, op, bits;
+        boolean delivered;
+        double distance, senderEnergy, receiverEnergy;
+    }
+
+    interface Visitor {
+        void visit(Event event, String[] opNames);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java TraceReader traceFile [--node id] [--zone z] [--op name] [--rounds from-to] [--summary]");
+            System.exit(1);
+            return;
+        }
+        Integer node = null, zone = null;
+        String opName = null;
+        int fromRound = Integer.MIN_VALUE, toRound = Integer.MAX_VALUE;
+        boolean summary = false;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--node": node = Integer.parseInt(args[++i]); break;
+                    case "--zone": zone = Integer.parseInt(args[++i]); break;
+                    case "--op": opName = args[++i]; break;
+                    case "--rounds": {
+                        String[] range = args[++i].split("-", 2);
+                        fromRound = Integer.parseInt(range[0]);
+                        toRound = range.length > 1 ? Integer.parseInt(range[1]) : fromRound;
+                        break;
+                    }
+                    case "--summary": summary = true; break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("ERROR: Bad arguments: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Map<Integer, double[]> perNode = new TreeMap<>(); // events, energy as sender, energy as receiver
+        final Integer nodeFilter = node, zoneFilter = zone;
+        final String opFilter = opName;
+        final int from = fromRound, to = toRound;
+        final boolean summarize = summary;
+        long[] matched = {0};
+        if (!summarize) System.out.println("Round,Zone,Op,Sender,Receiver,Bits,Distance_m,SenderEnergy_J,ReceiverEnergy_J,Delivered");
+        try {
+            long total = read(Paths.get(args[0]), (e, ops) -> {
+                if (e.round < from || e.round > to) return;
+                if (zoneFilter != null && e.zone != zoneFilter) return;
+                if (nodeFilter != null && e.sender != nodeFilter && e.receiver != nodeFilter) return;
+                if (opFilter != null && !opFilter.equals(ops[e.op])) return;
+                matched[0]++;
+                if (summarize) {
+                    double[] s = perNode.computeIfAbsent(e.sender, k -> new double[3]);
+                    s[0]++; s[1] += e.senderEnergy;
+                    if (e.receiver >= 0) {
+                        double[] r = perNode.computeIfAbsent(e.receiver, k -> new double[3]);
+                        r[0]++; r[2] += e.receiverEnergy;
+                    }
+                } else {
+                    System.out.printf("%d,%d,%s,%d,%s,%d,%.3f,%.9f,%.9f,%b%n", e.round, e.zone, ops[e.op], e.sender,
+                                      e.receiver >= 0 ? String.valueOf(e.receiver) : "Sink" + (-1 - e.receiver),
+                                      e.bits, e.distance, e.senderEnergy, e.receiverEnergy, e.delivered);
+                }
+            });
+            if (summarize) {
+                System.out.println("Node,Events,EnergyAsSender_J,EnergyAsReceiver_J");
+                perNode.forEach((id, s) -> System.out.printf("%d,%d,%.9f,%.9f%n", id, (long) s[0], s[1], s[2]));
+            }
+            System.err.println("Matched " + matched[0] + " of " + total + " events in " + args[0]);
+        } catch (IOException e) {
+            System.err.println("ERROR: Reading trace " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Calls the visitor for every event in file order.
+     * @return The number of events read.
+     */
+    static long read(Path file, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buf.limit(0); // Empty, in read mode
+            if (!fill(channel, buf, 20)) throw new IOException("Truncated trace header");
+            if (buf.getLong() != TraceRecorder.MAGIC) throw new IOException("Not a trace file (bad magic)");
+            int version = buf.getInt(), recordBytes = buf.getInt(), opCount = buf.getInt();
+            if (version != TraceRecorder.VERSION) throw new IOException("Unsupported trace version " + version);
+            if (recordBytes != TraceRecorder.RECORD_BYTES) throw new IOException("Unexpected record size " + recordBytes);
+            String[] opNames = new String[opCount];
+            for (int i = 0; i < opCount; i++) {
+                if (!fill(channel, buf, 2)) throw new IOException("Truncated trace header");
+                byte[] name = new byte[buf.getShort()];
+                if (!fill(channel, buf, name.length)) throw new IOException("Truncated trace header");
+                buf.get(name);
+                opNames[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            Event e = new Event();
+            long count = 0;
+            while (fill(channel, buf, recordBytes)) {
+                while (buf.remaining() >= recordBytes) {
+                    e.round = buf.getInt();
+                    e.sender = buf.getInt();
+                    e.receiver = buf.getInt();
+                    e.zone = buf.getShort();
+                    e.op = buf.get() & 0xFF;
+                    e.delivered = buf.get() != 0;
+                    e.bits = buf.getInt();
+                    e.distance = buf.getFloat();
+                    e.senderEnergy = buf.getDouble();
+                    e.receiverEnergy = buf.getDouble();
+                    if (e.op >= opCount) throw new IOException("Event " + count + " has unknown op " + e.op);
+                    visitor.visit(e, opNames);
+                    count++;
+                }
+            }
+            if (buf.hasRemaining()) throw new IOException("Truncated trace: " + buf.remaining() + " trailing bytes");
+            return count;
+        }
+    }
+
+    /**
+     * Makes at least need bytes available at the buffer's position, reading more if necessary.
+     * @return False if the file ends first (whatever was left stays in the buffer).
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buf, int need) throws IOException {
+        if (buf.remaining() >= need) return true;
+        buf.compact();
+        try {
+            while (buf.position() < need) {
+                if (channel.read(buf) < 0) return false;
+            }
+        } finally {
+            buf.flip();
+        }
+        return true;
+    }
+}
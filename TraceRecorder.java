@@ -0,0 +1,227 @@
+// File: TraceRecorder.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-hop packet trace of one run, for replay and visualization (read back with TraceReader).
+ * The protocols report every hop they attempt: chain hops, upper-chain hops and leader uplinks,
+ * with the energy each end spent on it. Events outside the sampled nodes, zones and rounds are
+ * dropped before they are encoded.
+ *
+ * The simulating thread writes fixed-size records into a single-producer/single-consumer ring
+ * and publishes them by advancing head; a writer thread copies published records to the file
+ * and advances tail. Neither side takes a lock or allocates per event. When the ring is full
+ * the producer waits for the writer rather than dropping events, so a trace is always complete
+ * (the waits are counted in {@link #getStalls}). A disabled recorder does nothing, and the
+ * protocols check {@link #isEnabled} before gathering an event's fields.
+ *
+ * File layout (little-endian): magic "PGTRACE1", int version, int record size, int op count,
+ * each op name as a short length and UTF-8 bytes, then one RECORD_BYTES record per event:
+ * int round, int sender, int receiver (a sink is -1 - sinkId), short zone (0 outside HALEM
+ * zones), byte op, byte delivered, int payload bits, float distance (m), double sender energy
+ * (J), double receiver energy (J).
+ */
+final class TraceRecorder implements AutoCloseable {
+
+    enum Op {
+        CHAIN_HOP("ChainHop"),
+        UPPER_CHAIN_HOP("UpperChainHop"),
+        LEADER_TO_SINK("LeaderToSink"),
+        SUPER_LEADER_TO_SINK("SuperLeaderToSink");
+
+        final String label;
+
+        Op(String label) { this.label = label; }
+    }
+
+    static final long MAGIC = 0x3145434152544750L; // "PGTRACE1" read as a little-endian long
+    static final int VERSION = 1;
+    static final int RECORD_BYTES = 40;
+    private static final int WRITE_CHUNK_RECORDS = 4096;
+
+    /** Shared no-op instance for untraced runs. */
+    static final TraceRecorder DISABLED = new TraceRecorder();
+
+    private final boolean enabled;
+    private final Path path;
+    private final BitSet nodes, zones; // null: no filter
+    private final int firstRound, lastRound;
+
+    // Ring: record i lives at (i % capacity) * RECORD_BYTES; [tail, head) is published and unwritten
+    private final int capacity;
+    private final ByteBuffer ring;
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+    private long producerHead = 0, cachedTail = 0; // Producer-local copies
+    private final FileChannel channel;
+    private final Thread writer;
+    private volatile boolean closing = false;
+    private volatile IOException failure = null;
+
+    private int round = 0;
+    private boolean roundSampled = false;
+    private long recorded = 0, stalls = 0;
+
+    private TraceRecorder() {
+        this.enabled = false; this.path = null; this.nodes = null; this.zones = null;
+        this.firstRound = 0; this.lastRound = -1; this.capacity = 0; this.ring = null;
+        this.channel = null; this.writer = null;
+    }
+
+    private TraceRecorder(Path path, int[] nodeIds, int[] zoneIds, int firstRound, int lastRound, int capacity) throws IOException {
+        if (capacity < 1) throw new IllegalArgumentException("Trace ring capacity must be positive, got " + capacity);
+        this.enabled = true;
+        this.path = path;
+        this.nodes = toBitSet(nodeIds);
+        this.zones = toBitSet(zoneIds);
+        this.firstRound = firstRound;
+        this.lastRound = lastRound;
+        this.capacity = capacity;
+        this.ring = ByteBuffer.allocate(capacity * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeHeader();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.writer = new Thread(this::drain, "trace-writer-" + path.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** A recorder writing to the given file with the TRACE_* sampling settings from PEGASISConfig. */
+    static TraceRecorder open(String file) throws IOException {
+        return new TraceRecorder(Paths.get(file), PEGASISConfig.TRACE_NODE_IDS, PEGASISConfig.TRACE_ZONE_IDS,
+                                 PEGASISConfig.TRACE_FIRST_ROUND, PEGASISConfig.TRACE_LAST_ROUND, PEGASISConfig.TRACE_RING_CAPACITY);
+    }
+
+    private static BitSet toBitSet(int[] ids) {
+        if (ids == null || ids.length == 0) return null;
+        BitSet set = new BitSet();
+        for (int id : ids) {
+            if (id < 0) throw new IllegalArgumentException("Trace sample ids must be non-negative, got " + id);
+            set.set(id);
+        }
+        return set;
+    }
+
+    boolean isEnabled() { return enabled; }
+
+    Path getPath() { return path; }
+
+    /** Events written (or still buffered) so far. */
+    long getRecorded() { return recorded; }
+
+    /** Events that had to wait for the writer because the ring was full. */
+    long getStalls() { return stalls; }
+
+    /** Sets the round stamped on the following events and whether it is in the sampled range. */
+    void beginRound(int round) {
+        if (!enabled) return;
+        this.round = round;
+        this.roundSampled = round >= firstRound && round <= lastRound;
+    }
+
+    /**
+     * Records one hop unless it falls outside the sample.
+     * @param receiver Receiving node id, or -1 - sinkId for a sink.
+     * @param senderEnergy Energy the sender spent on the hop, retransmissions included (J).
+     * @param receiverEnergy Energy the receiver spent on reception and aggregation (J); 0 for a sink.
+     */
+    void hop(Op op, int zone, int sender, int receiver, int bits, double distance,
+             double senderEnergy, double receiverEnergy, boolean delivered) {
+        if (!enabled || !roundSampled || failure != null) return;
+        if (zones != null && !zones.get(zone)) return;
+        if (nodes != null && !nodes.get(sender) && !(receiver >= 0 && nodes.get(receiver))) return;
+
+        if (producerHead - cachedTail == capacity) {
+            cachedTail = tail.get();
+            if (producerHead - cachedTail == capacity) {
+                stalls++;
+                LockSupport.unpark(writer);
+                while (producerHead - (cachedTail = tail.get()) == capacity) {
+                    if (failure != null) return;
+                    Thread.yield();
+                }
+            }
+        }
+        int at = (int) (producerHead % capacity) * RECORD_BYTES;
+        ring.putInt(at, round)
+            .putInt(at + 4, sender)
+            .putInt(at + 8, receiver)
+            .putShort(at + 12, (short) zone)
+            .put(at + 14, (byte) op.ordinal())
+            .put(at + 15, (byte) (delivered ? 1 : 0))
+            .putInt(at + 16, bits)
+            .putFloat(at + 20, (float) distance)
+            .putDouble(at + 24, senderEnergy)
+            .putDouble(at + 32, receiverEnergy);
+        head.lazySet(++producerHead);
+        recorded++;
+    }
+
+    private void writeHeader() throws IOException {
+        Op[] ops = Op.values();
+        int size = 8 + 4 + 4 + 4;
+        for (Op op : ops) size += 2 + op.label.getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(ops.length);
+        for (Op op : ops) {
+            byte[] name = op.label.getBytes(StandardCharsets.UTF_8);
+            header.putShort((short) name.length).put(name);
+        }
+        header.flip();
+        while (header.hasRemaining()) channel.write(header);
+    }
+
+    /** Writer thread: copies published records to the file until closed and empty. */
+    private void drain() {
+        ByteBuffer view = ring.duplicate();
+        ByteBuffer out = ByteBuffer.allocateDirect(WRITE_CHUNK_RECORDS * RECORD_BYTES);
+        try {
+            while (true) {
+                long t = tail.get(), h = head.get();
+                if (h == t) {
+                    if (closing && head.get() == t) return; // closing is set after the last publish
+                    LockSupport.parkNanos(200_000);
+                    continue;
+                }
+                int from = (int) (t % capacity);
+                int count = (int) Math.min(Math.min(h - t, capacity - from), WRITE_CHUNK_RECORDS); // Contiguous part only
+                view.limit((from + count) * RECORD_BYTES).position(from * RECORD_BYTES);
+                out.clear();
+                out.put(view).flip();
+                while (out.hasRemaining()) channel.write(out);
+                tail.lazySet(t + count);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /** Flushes the remaining events and closes the file. */
+    @Override
+    public void close() throws IOException {
+        if (!enabled) return;
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing trace " + path, e);
+        } finally {
+            channel.close();
+        }
+        if (failure != null) throw failure;
+    }
+}
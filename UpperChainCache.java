@@ -0,0 +1,146 @@
+// File: UpperChainCache.java
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * LRU cache of HALEM upper-chain orderings, keyed by the set of opting leaders (by ID) and the
+ * positions of all sinks. The greedy chain depends only on those two things, so an exact hit
+ * returns the same ordering a rebuild would. On a miss, an entry for the same sink positions
+ * that differs by at most maxIncrementalChanges leaders can be patched instead: departed
+ * leaders are spliced out and new ones are placed at their cheapest insertion point. Patched
+ * chains are not stored, so every entry (and hence every exact hit) is a full greedy rebuild.
+ */
+final class UpperChainCache {
+
+    static final int MISS = 0;
+    static final int HIT = 1;
+    static final int INCREMENTAL = 2;
+
+    private static final class Key {
+        final int[] leaderIds; // Sorted
+        final double[] sinkPositions;
+        final int hash;
+
+        Key(int[] leaderIds, double[] sinkPositions) {
+            this.leaderIds = leaderIds; this.sinkPositions = sinkPositions;
+            this.hash = 31 * Arrays.hashCode(leaderIds) + Arrays.hashCode(sinkPositions);
+        }
+
+        @Override public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && Arrays.equals(leaderIds, k.leaderIds) && Arrays.equals(sinkPositions, k.sinkPositions);
+        }
+    }
+
+    private final int capacity;
+    private final int maxIncrementalChanges;
+    private final LinkedHashMap<Key, List<SensorNode>> entries;
+    private int lastOutcome = MISS;
+
+    UpperChainCache(int capacity, int maxIncrementalChanges) {
+        this.capacity = capacity;
+        this.maxIncrementalChanges = maxIncrementalChanges;
+        this.entries = new LinkedHashMap<Key, List<SensorNode>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<SensorNode>> eldest) {
+                return size() > UpperChainCache.this.capacity;
+            }
+        };
+    }
+
+    /** @return HIT, INCREMENTAL or MISS for the most recent {@link #getOrBuild} call. */
+    int getLastOutcome() { return lastOutcome; }
+
+    int size() { return entries.size(); }
+
+    void clear() { entries.clear(); lastOutcome = MISS; }
+
+    /**
+     * Returns the upper chain for the alive leaders, from the cache if possible.
+     * @param aliveLeaders Alive opting leaders, in the order the builder expects.
+     * @param sinkPositions x0, y0, x1, y1, ... of every sink this round.
+     * @param builder Full greedy rebuild, used on a miss.
+     * @param distance Hop distance between two leaders, used for incremental insertion.
+     * @return A fresh list the caller may modify.
+     */
+    List<SensorNode> getOrBuild(List<SensorNode> aliveLeaders, double[] sinkPositions,
+                                Function<List<SensorNode>, List<SensorNode>> builder,
+                                ToDoubleBiFunction<SensorNode, SensorNode> distance) {
+        int[] ids = new int[aliveLeaders.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = aliveLeaders.get(i).getId();
+        Arrays.sort(ids);
+        Key key = new Key(ids, sinkPositions.clone());
+
+        List<SensorNode> cached = entries.get(key);
+        if (cached != null) {
+            lastOutcome = HIT;
+            return new ArrayList<>(cached);
+        }
+
+        List<SensorNode> chain = maxIncrementalChanges > 0 ? patchNearestEntry(key, aliveLeaders, distance) : null;
+        if (chain != null) {
+            lastOutcome = INCREMENTAL;
+            return chain;
+        }
+        lastOutcome = MISS;
+        chain = builder.apply(aliveLeaders);
+        entries.put(key, new ArrayList<>(chain));
+        return chain;
+    }
+
+    private List<SensorNode> patchNearestEntry(Key key, List<SensorNode> aliveLeaders, ToDoubleBiFunction<SensorNode, SensorNode> distance) {
+        Key best = null;
+        int bestChanges = Integer.MAX_VALUE;
+        for (Key k : entries.keySet()) { // Eldest first, so ties go to the most recently used entry
+            if (!Arrays.equals(k.sinkPositions, key.sinkPositions)) continue;
+            int changes = symmetricDifference(k.leaderIds, key.leaderIds, maxIncrementalChanges);
+            if (changes <= bestChanges) { bestChanges = changes; best = k; }
+        }
+        if (best == null || bestChanges > maxIncrementalChanges) return null;
+
+        List<SensorNode> chain = new ArrayList<>(entries.get(best));
+        chain.removeIf(n -> Arrays.binarySearch(key.leaderIds, n.getId()) < 0);
+        for (SensorNode n : aliveLeaders) {
+            if (Arrays.binarySearch(best.leaderIds, n.getId()) < 0) insertCheapest(chain, n, distance);
+        }
+        return chain;
+    }
+
+    /** Inserts n where it adds the least hop length: between two neighbours or at either end. */
+    private static void insertCheapest(List<SensorNode> chain, SensorNode n, ToDoubleBiFunction<SensorNode, SensorNode> distance) {
+        if (chain.isEmpty()) { chain.add(n); return; }
+        int bestPos = 0;
+        double bestCost = distance.applyAsDouble(n, chain.get(0));
+        double tailCost = distance.applyAsDouble(chain.get(chain.size() - 1), n);
+        if (tailCost < bestCost) { bestCost = tailCost; bestPos = chain.size(); }
+        for (int i = 0; i < chain.size() - 1; i++) {
+            SensorNode a = chain.get(i), b = chain.get(i + 1);
+            double cost = distance.applyAsDouble(a, n) + distance.applyAsDouble(n, b) - distance.applyAsDouble(a, b);
+            if (cost < bestCost) { bestCost = cost; bestPos = i + 1; }
+        }
+        chain.add(bestPos, n);
+    }
+
+    /** Size of the symmetric difference of two sorted ID arrays, stopping early once above limit. */
+    private static int symmetricDifference(int[] a, int[] b, int limit) {
+        if (Math.abs(a.length - b.length) > limit) return Integer.MAX_VALUE;
+        int i = 0, j = 0, diff = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) { i++; j++; }
+            else if (a[i] < b[j]) { i++; diff++; }
+            else { j++; diff++; }
+            if (diff > limit) return Integer.MAX_VALUE;
+        }
+        diff += (a.length - i) + (b.length - j);
+        return diff > limit ? Integer.MAX_VALUE : diff;
+    }
+}
@@ -0,0 +1,129 @@
+// File: ZoneDeliveryStats.java
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Per-zone delivery counters for HALEM, so a zone whose data stops reaching a sink shows up even
+ * while other zones keep the round's BS transmission successful. Every round the protocol reports
+ * each zone that still has alive nodes, with how its data left the zone (directly from its leader,
+ * through the super leader, or not at all) and the bits delivered. From that the class keeps the
+ * zone's delivery ratio and the age of its freshest delivered data: rounds since its last delivery,
+ * 0 in a round that delivered. A zone's age starts counting the round before it is first reported,
+ * so zones created by a rebalance split do not start out stale.
+ *
+ * Counters are primitive arrays indexed by zone id, grown (by doubling) only when a new zone id
+ * appears, so a round allocates nothing.
+ */
+final class ZoneDeliveryStats {
+
+    static final int PATH_NONE = 0, PATH_DIRECT = 1, PATH_SUPER_LEADER = 2;
+
+    static final String CSV_HEADER = "Protocol,ZoneID,ActiveRounds,DeliveredRounds,DeliveryRatio,DirectDeliveries,SuperLeaderDeliveries," +
+                                     "BitsDelivered,LastDeliveryRound,MeanAge,MaxAge,FinalAge";
+
+    private int[] activeRounds = new int[16], deliveredRounds = new int[16];
+    private int[] directDeliveries = new int[16], superLeaderDeliveries = new int[16];
+    private int[] lastDeliveryRound = new int[16], age = new int[16], maxAge = new int[16];
+    private long[] bitsDelivered = new long[16], ageSum = new long[16];
+    private int zoneIdLimit = 0; // 1 + highest zone id reported
+
+    // Current round
+    private int roundActive = 0, roundDelivered = 0, roundMaxAge = 0;
+
+    boolean isEmpty() { return zoneIdLimit == 0; }
+
+    /** Records one active zone's outcome for the round. */
+    void log(int zoneId, int round, int path, long bits) {
+        if (zoneId >= activeRounds.length) grow(zoneId + 1);
+        zoneIdLimit = Math.max(zoneIdLimit, zoneId + 1);
+        if (activeRounds[zoneId] == 0) lastDeliveryRound[zoneId] = round - 1;
+        activeRounds[zoneId]++;
+        if (path != PATH_NONE) {
+            deliveredRounds[zoneId]++;
+            if (path == PATH_DIRECT) directDeliveries[zoneId]++; else superLeaderDeliveries[zoneId]++;
+            bitsDelivered[zoneId] += bits;
+            lastDeliveryRound[zoneId] = round;
+            roundDelivered++;
+        }
+        int a = round - lastDeliveryRound[zoneId];
+        age[zoneId] = a;
+        ageSum[zoneId] += a;
+        maxAge[zoneId] = Math.max(maxAge[zoneId], a);
+        roundActive++;
+        roundMaxAge = Math.max(roundMaxAge, a);
+    }
+
+    private void grow(int minLength) {
+        int n = Math.max(minLength, activeRounds.length * 2);
+        activeRounds = Arrays.copyOf(activeRounds, n); deliveredRounds = Arrays.copyOf(deliveredRounds, n);
+        directDeliveries = Arrays.copyOf(directDeliveries, n); superLeaderDeliveries = Arrays.copyOf(superLeaderDeliveries, n);
+        lastDeliveryRound = Arrays.copyOf(lastDeliveryRound, n); age = Arrays.copyOf(age, n); maxAge = Arrays.copyOf(maxAge, n);
+        bitsDelivered = Arrays.copyOf(bitsDelivered, n); ageSum = Arrays.copyOf(ageSum, n);
+    }
+
+    int getRoundActive() { return roundActive; }
+    int getRoundDelivered() { return roundDelivered; }
+    int getRoundMaxAge() { return roundMaxAge; }
+
+    void startRound() { roundActive = 0; roundDelivered = 0; roundMaxAge = 0; }
+
+    int zoneCount() {
+        int count = 0;
+        for (int z = 0; z < zoneIdLimit; z++) if (activeRounds[z] > 0) count++;
+        return count;
+    }
+
+    double deliveryRatio(int zoneId) { return activeRounds[zoneId] == 0 ? 0.0 : (double) deliveredRounds[zoneId] / activeRounds[zoneId]; }
+
+    double meanDeliveryRatio() {
+        double sum = 0;
+        int count = 0;
+        for (int z = 0; z < zoneIdLimit; z++) if (activeRounds[z] > 0) { sum += deliveryRatio(z); count++; }
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /** Zone with the lowest delivery ratio (lowest id on ties), or -1 if none was reported. */
+    int worstZone() {
+        int worst = -1;
+        for (int z = 0; z < zoneIdLimit; z++) {
+            if (activeRounds[z] > 0 && (worst < 0 || deliveryRatio(z) < deliveryRatio(worst))) worst = z;
+        }
+        return worst;
+    }
+
+    /** Mean age over every active zone-round. */
+    double meanAge() {
+        long sum = 0, rounds = 0;
+        for (int z = 0; z < zoneIdLimit; z++) { sum += ageSum[z]; rounds += activeRounds[z]; }
+        return rounds == 0 ? 0.0 : (double) sum / rounds;
+    }
+
+    int maxAge() {
+        int max = 0;
+        for (int z = 0; z < zoneIdLimit; z++) max = Math.max(max, maxAge[z]);
+        return max;
+    }
+
+    void exportToCSV(String protocolName, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println(CSV_HEADER);
+            for (int z = 0; z < zoneIdLimit; z++) {
+                if (activeRounds[z] == 0) continue;
+                writer.printf("%s,%d,%d,%d,%.4f,%d,%d,%d,%s,%.2f,%d,%d%n", protocolName, z, activeRounds[z], deliveredRounds[z],
+                              deliveryRatio(z), directDeliveries[z], superLeaderDeliveries[z], bitsDelivered[z],
+                              deliveredRounds[z] == 0 ? "N/A" : String.valueOf(lastDeliveryRound[z]), (double) ageSum[z] / activeRounds[z], maxAge[z], age[z]);
+            }
+        }
+    }
+
+    void clear() {
+        for (int[] a : new int[][] { activeRounds, deliveredRounds, directDeliveries, superLeaderDeliveries, lastDeliveryRound, age, maxAge }) {
+            Arrays.fill(a, 0);
+        }
+        Arrays.fill(bitsDelivered, 0); Arrays.fill(ageSum, 0);
+        zoneIdLimit = 0;
+        startRound();
+    }
+}
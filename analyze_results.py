@@ -9,6 +9,10 @@ import numpy as np # For handling 'N/A' as NaN for numeric conversion
 STD_PEGASIS_ROUND_FILE = 'StandardPEGASIS_StandardPegasisRun_round_data.csv'
 HALEM_PEGASIS_ROUND_FILE = 'HALEM-PEGASIS_HALEMPegasisRun_round_data.csv'
 SUMMARY_FILE = 'simulation_summary.csv'
+# Bounded-size min-max series the simulator writes next to each round file (see DownsampledRoundSeries.java).
+# They already carry cumulative energy and windowed death counts, so those plots load in constant time.
+STD_PEGASIS_DOWNSAMPLED_FILE = 'StandardPEGASIS_StandardPegasisRun_round_data_downsampled.csv'
+HALEM_PEGASIS_DOWNSAMPLED_FILE = 'HALEM-PEGASIS_HALEMPegasisRun_round_data_downsampled.csv'
 
 # --- Plotting Function for Round-by-Round Data (Existing) ---
 def plot_round_by_round_comparison(df_std, df_halem, std_label='Standard PEGASIS', halem_label='HALEM-PEGASIS'):
@@ -231,11 +235,15 @@ def plot_cumulative_energy(df_std, df_halem, std_label='Standard PEGASIS', halem
     plt.figure(figsize=(10, 6))
     plt.style.use('seaborn-v0_8-whitegrid')
 
-    if not df_std.empty and 'Round' in df_std.columns and 'EnergyConsumedThisRound' in df_std.columns:
+    if not df_std.empty and 'Round' in df_std.columns and 'CumulativeEnergy' in df_std.columns: # Downsampled series
+        plt.plot(df_std['Round'], df_std['CumulativeEnergy'], label=f'{std_label} - Cumulative Energy', linestyle='--')
+    elif not df_std.empty and 'Round' in df_std.columns and 'EnergyConsumedThisRound' in df_std.columns:
         df_std['CumulativeEnergy'] = df_std['EnergyConsumedThisRound'].cumsum()
         plt.plot(df_std['Round'], df_std['CumulativeEnergy'], label=f'{std_label} - Cumulative Energy', linestyle='--')
     
-    if not df_halem.empty and 'Round' in df_halem.columns and 'EnergyConsumedThisRound' in df_halem.columns:
+    if not df_halem.empty and 'Round' in df_halem.columns and 'CumulativeEnergy' in df_halem.columns:
+        plt.plot(df_halem['Round'], df_halem['CumulativeEnergy'], label=f'{halem_label} - Cumulative Energy', linestyle='-')
+    elif not df_halem.empty and 'Round' in df_halem.columns and 'EnergyConsumedThisRound' in df_halem.columns:
         df_halem['CumulativeEnergy'] = df_halem['EnergyConsumedThisRound'].cumsum()
         plt.plot(df_halem['Round'], df_halem['CumulativeEnergy'], label=f'{halem_label} - Cumulative Energy', linestyle='-')
     
@@ -258,13 +266,17 @@ def plot_node_death_rate(df_std, df_halem, std_label='Standard PEGASIS', halem_l
     plt.figure(figsize=(10, 6))
     plt.style.use('seaborn-v0_8-whitegrid')
 
-    if not df_std.empty and 'Round' in df_std.columns and 'AliveNodes' in df_std.columns:
+    if not df_std.empty and 'Round' in df_std.columns and 'NodesDiedInWindowMax' in df_std.columns: # Downsampled series
+        plt.plot(df_std['Round'], df_std['NodesDiedInWindowMax'], label=f'{std_label} - Nodes Died / {window} Rnds', linestyle='--')
+    elif not df_std.empty and 'Round' in df_std.columns and 'AliveNodes' in df_std.columns:
         # Calculate nodes died in a sliding window
         df_std['NodesDiedInWindow'] = -df_std['AliveNodes'].diff(periods=window).fillna(0)
         df_std.loc[df_std['NodesDiedInWindow'] < 0, 'NodesDiedInWindow'] = 0 # Ensure no negative deaths if nodes revive (not in this sim)
         plt.plot(df_std['Round'], df_std['NodesDiedInWindow'], label=f'{std_label} - Nodes Died / {window} Rnds', linestyle='--')
 
-    if not df_halem.empty and 'Round' in df_halem.columns and 'AliveNodes' in df_halem.columns:
+    if not df_halem.empty and 'Round' in df_halem.columns and 'NodesDiedInWindowMax' in df_halem.columns:
+        plt.plot(df_halem['Round'], df_halem['NodesDiedInWindowMax'], label=f'{halem_label} - Nodes Died / {window} Rnds', linestyle='-')
+    elif not df_halem.empty and 'Round' in df_halem.columns and 'AliveNodes' in df_halem.columns:
         df_halem['NodesDiedInWindow'] = -df_halem['AliveNodes'].diff(periods=window).fillna(0)
         df_halem.loc[df_halem['NodesDiedInWindow'] < 0, 'NodesDiedInWindow'] = 0
         plt.plot(df_halem['Round'], df_halem['NodesDiedInWindow'], label=f'{halem_label} - Nodes Died / {window} Rnds', linestyle='-')
@@ -296,6 +308,16 @@ if __name__ == '__main__':
         print(f"Error: File not found - {HALEM_PEGASIS_ROUND_FILE}. Please check filename and path.")
         df_halem_rounds = pd.DataFrame()
 
+    # Optional downsampled series; the full round files are used where these are missing
+    try:
+        df_std_downsampled = pd.read_csv(STD_PEGASIS_DOWNSAMPLED_FILE)
+    except FileNotFoundError:
+        df_std_downsampled = pd.DataFrame()
+    try:
+        df_halem_downsampled = pd.read_csv(HALEM_PEGASIS_DOWNSAMPLED_FILE)
+    except FileNotFoundError:
+        df_halem_downsampled = pd.DataFrame()
+
     try:
         df_summary = pd.read_csv(SUMMARY_FILE)
         print(f"Successfully loaded: {SUMMARY_FILE}")
@@ -330,8 +352,10 @@ if __name__ == '__main__':
     if not df_std_rounds.empty or not df_halem_rounds.empty:
         print("\nGenerating round-by-round comparison plots...")
         plot_round_by_round_comparison(df_std_rounds, df_halem_rounds, std_label_from_summary, halem_label_from_summary)
-        plot_cumulative_energy(df_std_rounds.copy(), df_halem_rounds.copy(), std_label_from_summary, halem_label_from_summary)
-        plot_node_death_rate(df_std_rounds.copy(), df_halem_rounds.copy(), std_label_from_summary, halem_label_from_summary, window=50)
+        df_std_series = df_std_downsampled if not df_std_downsampled.empty else df_std_rounds.copy()
+        df_halem_series = df_halem_downsampled if not df_halem_downsampled.empty else df_halem_rounds.copy()
+        plot_cumulative_energy(df_std_series, df_halem_series, std_label_from_summary, halem_label_from_summary)
+        plot_node_death_rate(df_std_series, df_halem_series, std_label_from_summary, halem_label_from_summary, window=50) # METRICS_WINDOW_ROUNDS
     else:
         print("No round-by-round data loaded. Skipping these comparison plots.")
 